@@ -0,0 +1,46 @@
+package org.webdatacommons.structureddata.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with one thread and with one thread per core, with the
+ * allocation rate (gc profiler), and writes the results as JSON, e.g. for a
+ * commit:
+ * 
+ * <pre>
+ * java -cp target/benchmarks.jar org.webdatacommons.structureddata.benchmarks.BenchmarkRunner results/$(git rev-parse --short HEAD) [regex of the benchmarks]
+ * </pre>
+ * 
+ * writes results/&lt;commit&gt;-t1.json and results/&lt;commit&gt;-t&lt;cores&gt;.json. The
+ * number of threads can be set with -Dthreads=1,4,16.
+ *
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		if (args.length < 1) {
+			System.out.println("Usage: BenchmarkRunner <prefix of the result files> [regex of the benchmarks]");
+			return;
+		}
+		String prefix = args[0];
+		String include = args.length > 1 ? args[1] : "org.webdatacommons.structureddata.*Benchmark.*";
+		File parent = new File(prefix).getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		String threads = System.getProperty("threads", "1," + Runtime.getRuntime().availableProcessors());
+		for (String t : threads.split(",")) {
+			Options options = new OptionsBuilder().include(include).threads(Integer.parseInt(t.trim()))
+					.addProfiler(GCProfiler.class).resultFormat(ResultFormatType.JSON)
+					.result(prefix + "-t" + t.trim() + ".json").build();
+			new Runner(options).run();
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package org.webdatacommons.structureddata.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic fixtures for the benchmarks, which resemble the quads of the
+ * WDC extraction: Microdata (schema.org and data-vocabulary.org) with blank
+ * node subjects, RDFa (Open Graph, Dublin Core) with the page as subject,
+ * literals with (partly malformed) language tags, datatypes, escapes and
+ * non-ASCII characters, and hosts with multi-part public suffixes and
+ * blogspot. Most pages belong to a few large sites.
+ * <p>
+ * The fixtures only depend on {@link #SEED}, so results of different commits
+ * are comparable. Any change of this class changes the workload, bump
+ * {@link #VERSION} then and do not compare results across versions.
+ *
+ */
+public final class Fixtures {
+
+	public static final int VERSION = 1;
+	public static final long SEED = 0x5744434eL;
+
+	public static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+	public static final String MICRODATA_ITEM = "http://www.w3.org/1999/xhtml/microdata#item";
+
+	private static final String[] SUFFIXES = { "com", "com", "com", "de", "net", "org", "co.uk", "com.br", "fr",
+			"ru", "nl", "it", "es", "com.au", "jp", "pl", "blogspot.com", "co.jp" };
+
+	private static final String[][] SCHEMA_TYPES = {
+			{ "Product", "name", "description", "image", "sku", "brand", "offers", "aggregateRating" },
+			{ "Offer", "price", "priceCurrency", "availability", "url", "itemCondition" },
+			{ "Organization", "name", "url", "logo", "address", "telephone" },
+			{ "PostalAddress", "streetAddress", "addressLocality", "postalCode", "addressCountry" },
+			{ "BreadcrumbList", "itemListElement" }, { "ListItem", "position", "item", "name" },
+			{ "WebPage", "name", "description", "breadcrumb", "primaryImageOfPage" },
+			{ "Person", "name", "jobTitle", "sameAs" }, { "AggregateRating", "ratingValue", "reviewCount" },
+			{ "BlogPosting", "headline", "datePublished", "author", "articleBody", "publisher" },
+			{ "LocalBusiness", "name", "openingHours", "geo", "priceRange" } };
+
+	private static final String[][] DATA_VOCABULARY_TYPES = { { "Breadcrumb", "title", "url" },
+			{ "Review-aggregate", "rating", "count", "itemreviewed" } };
+
+	private static final String[] OPEN_GRAPH = { "title", "description", "type", "url", "image", "site_name",
+			"locale" };
+
+	private static final String[] DUBLIN_CORE = { "title", "creator", "date", "language" };
+
+	private static final String[] TEXTS = { "Blue cotton T-Shirt", "Größe M – 29,99 €", "Nike Air \\\"Max\\\" 90",
+			"Café & Bistro am Marktplatz", "Рюкзак туристический 40 л", "東京のホテル 予約",
+			"Free shipping on orders over $50!", "Lorem ipsum dolor sit amet, consectetur adipiscing elit",
+			"In stock", "Mon-Fr 9:00-18:00", "Line one\\nline two\\tindented", "Ça va très bien" };
+
+	private static final String[] LANGUAGES = { "en", "en", "de", "en_US", "de-DE", "fr", "ru", "ja", "pt_BR",
+			"en-gb" };
+
+	private Fixtures() {
+	}
+
+	/**
+	 * @param count
+	 *            number of pages
+	 * @return the N-Quads lines of each page, all quads of a page are
+	 *         contiguous as in the sorted input of the stats
+	 */
+	public static List<List<String>> pages(int count) {
+		Random rnd = new Random(SEED);
+		List<List<String>> pages = new ArrayList<List<String>>(count);
+		for (int p = 0; p < count; p++) {
+			pages.add(page(rnd, p));
+		}
+		return pages;
+	}
+
+	/**
+	 * @return the lines of all pages
+	 */
+	public static List<String> lines(List<List<String>> pages) {
+		List<String> lines = new ArrayList<String>();
+		for (List<String> page : pages) {
+			lines.addAll(page);
+		}
+		return lines;
+	}
+
+	/**
+	 * @return the lines, each terminated by a line break, in UTF-8
+	 */
+	public static byte[] bytes(List<String> lines) {
+		StringBuilder sb = new StringBuilder();
+		for (String line : lines) {
+			sb.append(line).append('\n');
+		}
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the graph (URL) of each page
+	 */
+	public static List<String> urls(List<List<String>> pages) {
+		List<String> urls = new ArrayList<String>(pages.size());
+		for (List<String> page : pages) {
+			String line = page.get(0);
+			int end = line.lastIndexOf('>');
+			urls.add(line.substring(line.lastIndexOf('<', end) + 1, end));
+		}
+		return urls;
+	}
+
+	/**
+	 * @return the predicate of each line
+	 */
+	public static List<String> predicates(List<String> lines) {
+		List<String> predicates = new ArrayList<String>(lines.size());
+		for (String line : lines) {
+			int start = line.indexOf(" <") + 2;
+			predicates.add(line.substring(start, line.indexOf('>', start)));
+		}
+		return predicates;
+	}
+
+	/**
+	 * @return the lines of each entity (blank node subject) of the pages
+	 */
+	public static List<List<String>> entities(List<List<String>> pages) {
+		List<List<String>> entities = new ArrayList<List<String>>();
+		for (List<String> page : pages) {
+			List<String> entity = null;
+			String subject = null;
+			for (String line : page) {
+				if (!line.startsWith("_:")) {
+					continue;
+				}
+				String s = line.substring(0, line.indexOf(' '));
+				if (!s.equals(subject)) {
+					entity = new ArrayList<String>();
+					entities.add(entity);
+					subject = s;
+				}
+				entity.add(line);
+			}
+		}
+		return entities;
+	}
+
+	private static List<String> page(Random rnd, int p) {
+		String url = (rnd.nextInt(3) == 0 ? "https://" : "http://") + host(rnd) + "/product/" + rnd.nextInt(1000000)
+				+ ".html?ref=" + p;
+		String graph = " <" + url + ">   .";
+		List<String> lines = new ArrayList<String>();
+		double kind = rnd.nextDouble();
+		if (kind < 0.35) {
+			// RDFa with the page as subject
+			for (String og : OPEN_GRAPH) {
+				if (rnd.nextInt(3) != 0) {
+					lines.add("<" + url + "> <http://ogp.me/ns#" + og + "> " + value(rnd, url) + graph);
+				}
+			}
+			if (rnd.nextBoolean()) {
+				for (String dc : DUBLIN_CORE) {
+					if (rnd.nextBoolean()) {
+						lines.add("<" + url + "> <http://purl.org/dc/terms/" + dc + "> " + value(rnd, url) + graph);
+					}
+				}
+			}
+		}
+		if (kind > 0.25) {
+			// Microdata with blank nodes, which refer to the following items
+			String prefix = "_:node" + Long.toHexString(rnd.nextLong() & 0xffffffffffL) + "x";
+			int entities = 1 + rnd.nextInt(6);
+			for (int e = 0; e < entities; e++) {
+				String subject = prefix + e;
+				boolean dataVocabulary = rnd.nextInt(10) == 0;
+				String[] type = dataVocabulary ? DATA_VOCABULARY_TYPES[rnd.nextInt(DATA_VOCABULARY_TYPES.length)]
+						: SCHEMA_TYPES[skewed(rnd, SCHEMA_TYPES.length)];
+				String ns = dataVocabulary ? "http://data-vocabulary.org/" : "http://schema.org/";
+				if (e == 0) {
+					lines.add("<" + url + "> <" + MICRODATA_ITEM + "> " + subject + graph);
+				}
+				// some items have no type
+				if (rnd.nextInt(20) != 0) {
+					lines.add(subject + " <" + RDF_TYPE + "> <" + ns + type[0] + ">" + graph);
+				}
+				int properties = 1 + rnd.nextInt(2 * (type.length - 1));
+				for (int i = 0; i < properties; i++) {
+					String property = ns + type[1 + rnd.nextInt(type.length - 1)];
+					String object = e + 1 < entities && rnd.nextInt(4) == 0
+							? prefix + (e + 1 + rnd.nextInt(entities - e - 1)) : value(rnd, url);
+					lines.add(subject + " <" + property + "> " + object + graph);
+				}
+			}
+		}
+		if (lines.isEmpty()) {
+			lines.add("<" + url + "> <http://ogp.me/ns#title> " + value(rnd, url) + graph);
+		}
+		return lines;
+	}
+
+	private static String host(Random rnd) {
+		// most pages belong to a few large sites
+		int site = (int) (Math.pow(rnd.nextDouble(), 4) * 50000);
+		String suffix = SUFFIXES[site % SUFFIXES.length];
+		if (suffix.equals("blogspot.com")) {
+			return "blog" + site + "." + suffix;
+		}
+		int sub = rnd.nextInt(10);
+		return (sub < 7 ? "www." : sub < 8 ? "shop." : sub < 9 ? "m." : "") + "site" + site + "." + suffix;
+	}
+
+	private static String value(Random rnd, String url) {
+		switch (rnd.nextInt(6)) {
+		case 0:
+			return "<" + url.substring(0, url.indexOf('/', 8)) + "/img/" + rnd.nextInt(100000) + ".jpg>";
+		case 1:
+			return "\"" + (rnd.nextInt(100000) / 100.0) + "\"";
+		case 2:
+			return "\"2016-0" + (1 + rnd.nextInt(9)) + "-1" + rnd.nextInt(10)
+					+ "\"^^<http://www.w3.org/2001/XMLSchema#date>";
+		default:
+			StringBuilder text = new StringBuilder(TEXTS[skewed(rnd, TEXTS.length)]);
+			// some long descriptions
+			if (rnd.nextInt(5) == 0) {
+				for (int i = rnd.nextInt(8); i >= 0; i--) {
+					text.append(' ').append(TEXTS[rnd.nextInt(TEXTS.length)]);
+				}
+			}
+			return "\"" + text + "\"" + (rnd.nextBoolean() ? "@" + LANGUAGES[rnd.nextInt(LANGUAGES.length)] : "");
+		}
+	}
+
+	// index in [0, n), small ones are more likely
+	private static int skewed(Random rnd, int n) {
+		return (int) (rnd.nextDouble() * rnd.nextDouble() * n);
+	}
+}
@@ -0,0 +1,90 @@
+package org.webdatacommons.structureddata.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.webdatacommons.structureddata.benchmarks.Fixtures;
+import org.webdatacommons.structureddata.util.LineSanitizer;
+
+import ldif.local.datasources.dump.QuadFileLoader;
+
+/**
+ * Parsing of single lines into quads, including the cleaning of the lines:
+ * the byte-level tokenizer (-fastParse) and the ldif QuadFileLoader.
+ * Throughput in lines per second.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class ParseBenchmark {
+
+	static final int LINES = 10000;
+
+	private String[] lines;
+	private byte[] bytes;
+	private int[] lineStarts;
+	// the sanitizer changes the line, so each line is copied first
+	private byte[] scratch;
+
+	private final LineSanitizer sanitizer = new LineSanitizer();
+	private final NQuadsTokenizer tokenizer = new NQuadsTokenizer();
+	private final QuadView view = new QuadView();
+	private final QuadFileLoader loader = new QuadFileLoader();
+
+	@Setup
+	public void setup() {
+		List<String> all = Fixtures.lines(Fixtures.pages(LINES)).subList(0, LINES);
+		lines = all.toArray(new String[all.size()]);
+		bytes = Fixtures.bytes(all);
+		lineStarts = new int[lines.length + 1];
+		int pos = 0;
+		for (int i = 0; i < lines.length; i++) {
+			lineStarts[i] = pos;
+			pos += lines[i].getBytes(StandardCharsets.UTF_8).length + 1;
+		}
+		lineStarts[lines.length] = pos;
+		scratch = new byte[bytes.length];
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public void tokenizer(Blackhole bh) {
+		for (int i = 0; i < lines.length; i++) {
+			int length = lineStarts[i + 1] - lineStarts[i] - 1;
+			System.arraycopy(bytes, lineStarts[i], scratch, 0, length);
+			int end = sanitizer.sanitize(scratch, 0, length);
+			if (tokenizer.tokenize(scratch, 0, end, view)) {
+				bh.consume(view.toQuad());
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public void quadFileLoader(Blackhole bh) {
+		for (String line : lines) {
+			try {
+				bh.consume(loader.parseQuadLine(sanitizer.sanitize(line)));
+			} catch (Exception e) {
+				bh.consume(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.webdatacommons.structureddata.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.webdatacommons.structureddata.benchmarks.Fixtures;
+import org.webdatacommons.structureddata.util.LineSanitizer;
+
+/**
+ * Writing entities back into N-Quads lines ({@link Entity#toLines()} and
+ * {@link Entity#writeTo(Appendable)} into a reused buffer, as done for the
+ * subsets). Throughput in entities per second.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class EntityBenchmark {
+
+	static final int ENTITIES = 5000;
+
+	private Entity[] entities;
+
+	private StringBuilder buffer = new StringBuilder(64 * 1024);
+
+	@Setup
+	public void setup() throws Exception {
+		LineSanitizer sanitizer = new LineSanitizer();
+		EntityFileLoader loader = new EntityFileLoader();
+		List<Entity> all = new ArrayList<Entity>();
+		for (List<String> lines : Fixtures.entities(Fixtures.pages(ENTITIES))) {
+			List<String> clean = new ArrayList<String>();
+			for (String line : lines) {
+				clean.add(sanitizer.sanitize(line));
+			}
+			all.add(loader.loadEntityFromLines(clean));
+		}
+		entities = all.subList(0, ENTITIES).toArray(new Entity[ENTITIES]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ENTITIES)
+	public void toLines(Blackhole bh) {
+		for (Entity e : entities) {
+			bh.consume(e.toLines());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ENTITIES)
+	public void writeTo(Blackhole bh) throws IOException {
+		for (Entity e : entities) {
+			buffer.setLength(0);
+			e.writeTo(buffer);
+			bh.consume(buffer.length());
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package org.webdatacommons.structureddata.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.webdatacommons.structureddata.benchmarks.Fixtures;
+import org.webdatacommons.structureddata.model.EntityFileLoader;
+import org.webdatacommons.structureddata.model.ShallowEntity;
+import org.webdatacommons.structureddata.util.LineSanitizer;
+
+import ldif.local.datasources.dump.QuadFileLoader;
+import ldif.runtime.Quad;
+
+/**
+ * JSON output of the converter ({@link WDCQuadConverter}) for single
+ * entities. Throughput in entities per second.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class ConverterJsonBenchmark {
+
+	static final int ENTITIES = 5000;
+
+	private ShallowEntity[] entities;
+	private final WDCQuadConverter converter = new WDCQuadConverter();
+
+	@Setup
+	public void setup() throws Exception {
+		LineSanitizer sanitizer = new LineSanitizer();
+		QuadFileLoader loader = new QuadFileLoader();
+		EntityFileLoader entityLoader = new EntityFileLoader();
+		List<ShallowEntity> all = new ArrayList<ShallowEntity>();
+		for (List<String> lines : Fixtures.entities(Fixtures.pages(ENTITIES))) {
+			List<Quad> quads = new ArrayList<Quad>();
+			for (String line : lines) {
+				quads.add(loader.parseQuadLine(sanitizer.sanitize(line)));
+			}
+			all.add(entityLoader.loadEntityFromQuadsForConversion(quads));
+		}
+		entities = all.subList(0, ENTITIES).toArray(new ShallowEntity[ENTITIES]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ENTITIES)
+	public void convertToJSON(Blackhole bh) {
+		for (ShallowEntity e : entities) {
+			bh.consume(converter.convertToJSON(e));
+		}
+	}
+}
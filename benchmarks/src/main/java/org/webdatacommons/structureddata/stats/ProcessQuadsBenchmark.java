@@ -0,0 +1,108 @@
+package org.webdatacommons.structureddata.stats;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.webdatacommons.structureddata.benchmarks.Fixtures;
+import org.webdatacommons.structureddata.util.LineSanitizer;
+
+import com.beust.jcommander.JCommander;
+
+import ldif.local.datasources.dump.QuadFileLoader;
+import ldif.runtime.Quad;
+
+/**
+ * Stats of the quads of single pages (processQuadsOfURL of
+ * {@link WDCQuadStatsCalculator}), with exact domains and with sketches. The
+ * dictionaries of the terms and domains are shared by all threads as in the
+ * stats, each thread collects its own stats. Throughput in pages per second.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class ProcessQuadsBenchmark {
+
+	static final int PAGES = 2000;
+
+	@Param({ "false", "true" })
+	public boolean approxDomains;
+
+	private WDCQuadStatsCalculator calculator;
+	private List<List<Quad>> quads;
+	private List<String> urls;
+
+	@Setup
+	public void setup() throws Exception {
+		File tmp = Files.createTempDirectory("benchmark").toFile();
+		tmp.deleteOnExit();
+		calculator = new WDCQuadStatsCalculator();
+		List<String> args = new ArrayList<String>();
+		for (String arg : new String[] { "-in", tmp.getPath(), "-out", tmp.getPath(), "-threads", "1", "-tp",
+				Fixtures.RDF_TYPE }) {
+			args.add(arg);
+		}
+		if (approxDomains) {
+			args.add("-approxDomains");
+		}
+		new JCommander(calculator, args.toArray(new String[args.size()]));
+		calculator.beforeProcess();
+
+		// parsed as by the stats
+		LineSanitizer sanitizer = new LineSanitizer();
+		QuadFileLoader loader = new QuadFileLoader();
+		List<List<String>> pages = Fixtures.pages(PAGES);
+		urls = Fixtures.urls(pages);
+		quads = new ArrayList<List<Quad>>();
+		for (List<String> page : pages) {
+			List<Quad> pageQuads = new ArrayList<Quad>();
+			for (String line : page) {
+				try {
+					pageQuads.add(loader.parseQuadLine(sanitizer.sanitize(line)));
+				} catch (Exception e) {
+					// skipped like in the stats
+				}
+			}
+			quads.add(pageQuads);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadStats {
+		WDCQuadStatsCalculator.PageStats stats;
+
+		// new stats per iteration, so they do not grow over the whole run
+		@Setup(Level.Iteration)
+		public void setup(ProcessQuadsBenchmark benchmark) {
+			stats = benchmark.calculator.new PageStats();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PAGES)
+	public int processQuadsOfURL(ThreadStats thread) {
+		for (int i = 0; i < PAGES; i++) {
+			thread.stats.add(quads.get(i), urls.get(i));
+		}
+		return thread.stats.size();
+	}
+}
@@ -0,0 +1,56 @@
+package org.webdatacommons.structureddata.util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.webdatacommons.structureddata.benchmarks.Fixtures;
+
+/**
+ * Pay level domains of the URLs of the pages, with and without the cache of
+ * the domains of the hosts (which is shared by all threads). Throughput in
+ * URLs per second.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class DomainUtilBenchmark {
+
+	static final int URLS = 10000;
+
+	@Param({ "0", "262144" })
+	public int cacheSize;
+
+	private String[] urls;
+
+	@Setup
+	public void setup() {
+		DomainUtil.setCacheSize(cacheSize);
+		List<String> all = Fixtures.urls(Fixtures.pages(URLS));
+		urls = all.toArray(new String[URLS]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(URLS)
+	public void payLevelDomain(Blackhole bh) {
+		for (String url : urls) {
+			bh.consume(DomainUtil.getPayLevelDomainFromWholeURL(url));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package org.webdatacommons.structureddata.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.webdatacommons.structureddata.benchmarks.Fixtures;
+
+/**
+ * Cleaning of the lines before they are parsed (cleanLine of the stats), on
+ * strings and in place on bytes. Throughput in lines per second.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class LineSanitizerBenchmark {
+
+	static final int LINES = 10000;
+
+	private String[] lines;
+	private byte[][] bytes;
+	private byte[] scratch = new byte[0];
+
+	private final LineSanitizer sanitizer = new LineSanitizer();
+
+	@Setup
+	public void setup() {
+		List<String> all = Fixtures.lines(Fixtures.pages(LINES)).subList(0, LINES);
+		lines = all.toArray(new String[LINES]);
+		bytes = new byte[LINES][];
+		for (int i = 0; i < LINES; i++) {
+			bytes[i] = lines[i].getBytes(StandardCharsets.UTF_8);
+			if (bytes[i].length > scratch.length) {
+				scratch = new byte[bytes[i].length];
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public void strings(Blackhole bh) {
+		for (String line : lines) {
+			bh.consume(sanitizer.sanitize(line));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public void bytes(Blackhole bh) {
+		for (byte[] line : bytes) {
+			// the bytes are changed in place
+			System.arraycopy(line, 0, scratch, 0, line.length);
+			bh.consume(sanitizer.sanitize(scratch, 0, line.length));
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package org.webdatacommons.structureddata.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.webdatacommons.structureddata.benchmarks.Fixtures;
+
+/**
+ * Decision if the predicates of the quads are type properties (isType), with
+ * exact IRIs and with regular expressions. The matcher is shared by all
+ * threads as in the stats. Throughput in predicates per second.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class TypePredicateMatcherBenchmark {
+
+	static final int PREDICATES = 10000;
+
+	@Param({ "false", "true" })
+	public boolean regex;
+
+	private String[] predicates;
+	private TypePredicateMatcher matcher;
+
+	@Setup
+	public void setup() {
+		List<String> all = Fixtures.predicates(Fixtures.lines(Fixtures.pages(PREDICATES)));
+		predicates = all.subList(0, PREDICATES).toArray(new String[PREDICATES]);
+		matcher = new TypePredicateMatcher(regex ? Arrays.asList(".*[/#]type", "http://ogp\\.me/ns#type")
+				: Arrays.asList(Fixtures.RDF_TYPE, "http://ogp.me/ns#type"), regex);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PREDICATES)
+	public void isType(Blackhole bh) {
+		for (String predicate : predicates) {
+			bh.consume(matcher.isType(predicate));
+		}
+	}
+}
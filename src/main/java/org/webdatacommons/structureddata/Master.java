@@ -1,17 +1,55 @@
 package org.webdatacommons.structureddata;
 
+import java.io.File;
+
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+import org.webdatacommons.structureddata.io.OutputCodec;
+import org.webdatacommons.structureddata.io.OutputStreamFactory;
 import org.webdatacommons.structureddata.stats.CCUrlStatsCalculator;
+import org.webdatacommons.structureddata.stats.StatsMerger;
 import org.webdatacommons.structureddata.stats.WDCQuadStatsCalculator;
 import org.webdatacommons.structureddata.stats.WDCSubsetStatsCalculator;
 import org.webdatacommons.structureddata.stats.WDCSubsetStatsCleaner;
 import org.webdatacommons.structureddata.stats.WDCUrlStatsCalculator;
+import org.webdatacommons.structureddata.util.CorpusGenerator;
+import org.webdatacommons.structureddata.util.DomainUtil;
+import org.webdatacommons.structureddata.util.PipelineMetrics;
 import org.webdatacommons.structureddata.util.QuadSorter;
 import org.webdatacommons.structureddata.util.SubsetCreator;
 
 import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.converters.FileConverter;
 
 public class Master {
 
+	@Parameter(names = "-inflateThreads", required = false, description = "Number of threads shared by all input files to inflate multi-member gzip files in parallel (0 = disabled).")
+	private int inflateThreads = 0;
+
+	@Parameter(names = "-deflateThreads", required = false, description = "Number of threads shared by all output files to compress blocks of the gzip output in parallel (0 = disabled).")
+	private int deflateThreads = 0;
+
+	@Parameter(names = "-codec", required = false, description = "Codec of the output files: plain, gzip[:level] or xz[:level].")
+	private String codec = OutputCodec.GZIP.toString();
+
+	@Parameter(names = "-tmpCodec", required = false, description = "Codec of the intermediate files, which are read again by the same command: plain, gzip[:level] or xz[:level].")
+	private String tmpCodec = OutputStreamFactory.getIntermediateCodec().toString();
+
+	@Parameter(names = "-noReadAhead", required = false, description = "Disables the decompression of the input files on a dedicated read-ahead thread.")
+	private boolean noReadAhead = false;
+
+	@Parameter(names = "-pldCacheSize", required = false, description = "Number of hosts whose pay level domain is cached (0 = disabled).")
+	private int pldCacheSize = DomainUtil.DEFAULT_CACHE_SIZE;
+
+	@Parameter(names = "-metricsInterval", required = false, description = "Seconds between two reports of the progress, throughput and ETA (0 = disabled).")
+	private int metricsInterval = 60;
+
+	@Parameter(names = "-metricsFile", required = false, description = "File the metrics (counters and time per stage) are written to in the Prometheus text format at each report.", converter = FileConverter.class)
+	private File metricsFile = null;
+
+	@Parameter(names = "-jmx", required = false, description = "Publishes the metrics as MXBean (org.webdatacommons.structureddata:type=PipelineMetrics).")
+	private boolean jmx = false;
+
 	public static void main(String[] args) {
 		// init
 		Master master = new Master();
@@ -27,6 +65,9 @@ public class Master {
 		WDCQuadStatsCalculator wdcquads = new WDCQuadStatsCalculator();
 		jc.addCommand("wdcquadstats", wdcquads);
 
+		StatsMerger mergeStats = new StatsMerger();
+		jc.addCommand("mergestats", mergeStats);
+
 		QuadSorter sort = new QuadSorter();
 		jc.addCommand("sortquads", sort);
 
@@ -38,11 +79,22 @@ public class Master {
 		
 		WDCSubsetStatsCleaner subsetClean = new WDCSubsetStatsCleaner();
 		jc.addCommand("cleansubset", subsetClean);
+
+		CorpusGenerator generator = new CorpusGenerator();
+		jc.addCommand("gencorpus", generator);
 		
 
 
 		try {
 			jc.parse(args);
+			InputStreamFactory.setReadAhead(!master.noReadAhead);
+			InputStreamFactory.setInflateThreads(master.inflateThreads);
+			OutputStreamFactory.setDeflateThreads(master.deflateThreads);
+			OutputStreamFactory.setCodec(OutputCodec.parse(master.codec));
+			OutputStreamFactory.setIntermediateCodec(OutputCodec.parse(master.tmpCodec));
+			DomainUtil.setCacheSize(master.pldCacheSize);
+			PipelineMetrics.startReporting(jc.getParsedCommand(), master.metricsFile, master.metricsInterval,
+					master.jmx);
 			switch (jc.getParsedCommand()) {
 			case "ccurlstats":
 				ccurls.process();
@@ -53,6 +105,9 @@ public class Master {
 			case "wdcquadstats":
 				wdcquads.process();
 				break;
+			case "mergestats":
+				mergeStats.process();
+				break;
 			case "sortquads":
 				sort.process();
 				break;
@@ -65,8 +120,12 @@ public class Master {
 			case "cleansubset":
 				subsetClean.process();
 				break;
+			case "gencorpus":
+				generator.process();
+				break;
 
 			}
+			PipelineMetrics.stopReporting();
 		} catch (Exception pex) {
 			if (jc.getParsedCommand() == null) {
 				jc.usage();
@@ -81,6 +140,9 @@ public class Master {
 				case "wdcquadstats":
 					new JCommander(wdcquads).usage();
 					break;
+				case "mergestats":
+					new JCommander(mergeStats).usage();
+					break;
 				case "sortquads":
 					new JCommander(sort).usage();
 					break;
@@ -93,6 +155,9 @@ public class Master {
 				case "subsetstats":
 					new JCommander(subsetStats).usage();
 					break;
+				case "gencorpus":
+					new JCommander(generator).usage();
+					break;
 
 				default:
 					jc.usage();
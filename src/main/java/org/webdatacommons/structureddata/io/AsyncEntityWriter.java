@@ -1,94 +1,257 @@
 package org.webdatacommons.structureddata.io;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
-import java.util.zip.GZIPOutputStream;
 
 import org.webdatacommons.structureddata.model.Entity;
+import org.webdatacommons.structureddata.util.PipelineMetrics;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Stage;
 
 /**
- * Based on Stackoverflow:
- * (http://stackoverflow.com/questions/6206472/what-is-the-best-way-to-write-to-
- * a-file-in-a-parallel-thread-in-java)
- * 
+ * Writes entities to a gzipped file on a dedicated thread, so the producers
+ * do not wait for the compression. The queue between them is bounded: if the
+ * file cannot be written as fast as the entities are produced, append()
+ * blocks until there is space again, instead of filling the memory.
+ * <p>
+ * The writer thread sleeps while the queue is empty, takes all queued
+ * entities at once and serializes them into a buffer, which is reused for
+ * each batch. The entities of one {@link #append(Collection)} call stay
+ * together in the file. {@link #close()} writes all queued entities before
+ * it closes the file and throws the first error of the writer thread, also
+ * if an entity could not be serialized. After such an error, append() fails
+ * as well.
+ *
  * @author Robert Meusel (robert@dwslab.de)
  *
  */
-public class AsyncEntityWriter implements EntityWriter, Runnable {
+public class AsyncEntityWriter implements EntityWriter {
+
+	/**
+	 * Default number of entities which can be queued.
+	 */
+	public static final int DEFAULT_CAPACITY = 16 * 1024;
+
+	// maximal number of entities serialized at once
+	private static final int BATCH_SIZE = 1024;
+	private static final int BUFFER_SIZE = 8 * 1024 * 1024;
+
+	// put after the last entity
+	private static final Entity END = new Entity(null, null, null);
 
-	// private final File file;
-	private final Writer out;
-	private final BlockingQueue<Entity> queue = new LinkedBlockingQueue<Entity>();
+	private final String name;
+	private final OutputStream out;
+	private final BlockingQueue<Entity> queue;
+	private Thread thread;
 	private volatile boolean started = false;
-	private volatile boolean stopped = false;
+	private volatile boolean closed = false;
+	private volatile IOException error;
 
 	public AsyncEntityWriter(File file) throws IOException {
-		// this.file = file;
-//		this.out = OutputUtil.getGZIPBufferedWriter(file);
-		int buffer = 1024 * 8 * 1024;
-		this.out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(
-				new FileOutputStream(file)), "UTF-8"), buffer); 
+		this(file, DEFAULT_CAPACITY);
 	}
 
-	public EntityWriter append(Entity e) {
-		if (!started) {
-			throw new IllegalStateException("open() call expected before append()");
+	/**
+	 * @param capacity
+	 *            number of entities which can be queued before append()
+	 *            blocks
+	 */
+	public AsyncEntityWriter(File file, int capacity) throws IOException {
+		this(OutputStreamFactory.open(file, OutputStreamFactory.getCodec()), file.getName(), capacity);
+	}
+
+	/**
+	 * @param out
+	 *            receives the UTF-8 encoded lines of the entities, closed by
+	 *            {@link #close()}
+	 */
+	public AsyncEntityWriter(OutputStream out, String name, int capacity) {
+		this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+		this.name = name;
+		this.queue = new ArrayBlockingQueue<Entity>(capacity);
+	}
+
+	/**
+	 * Starts the writer thread.
+	 */
+	public synchronized void open() {
+		if (started) {
+			return;
 		}
+		started = true;
+		thread = new Thread(this::run, "entity-writer-" + name);
+		thread.start();
+	}
+
+	@Override
+	public EntityWriter append(Entity e) {
+		checkOpen();
 		try {
 			queue.put(e);
-		} catch (InterruptedException ignored) {
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(new InterruptedIOException("Interrupted while queueing an entity"));
 		}
 		return this;
 	}
 
 	@Override
 	public EntityWriter append(Collection<Entity> es) {
-		if (!started) {
-			throw new IllegalStateException("open() call expected before append()");
-		}
-		try {
-			for (Entity e : es) {
-				queue.put(e);
+		checkOpen();
+		// the entities of different producers do not interleave
+		synchronized (queue) {
+			try {
+				for (Entity e : es) {
+					queue.put(e);
+				}
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new UncheckedIOException(new InterruptedIOException("Interrupted while queueing entities"));
 			}
-		} catch (InterruptedException ignored) {
 		}
 		return this;
 	}
 
-	public void open() {
-		this.started = true;
-		new Thread(this).start();
+	private void checkOpen() {
+		if (!started) {
+			throw new IllegalStateException("open() call expected before append()");
+		}
+		if (closed) {
+			throw new IllegalStateException("append() after close()");
+		}
+		if (error != null) {
+			throw new UncheckedIOException("Could not write the entities to " + name, error);
+		}
 	}
 
-	public void run() {
-		while (!stopped) {
+	// runs on the writer thread until the end marker is taken
+	private void run() {
+		List<Entity> batch = new ArrayList<Entity>(BATCH_SIZE);
+		StringBuilder sb = new StringBuilder(64 * 1024);
+		CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer bytes = ByteBuffer.allocate(64 * 1024);
+		boolean end = false;
+		while (!end) {
 			try {
-				Entity e = queue.poll(100, TimeUnit.MICROSECONDS);
-				if (e != null) {
+				// sleeps until there is something to write
+				batch.add(queue.take());
+				queue.drainTo(batch, BATCH_SIZE - 1);
+			} catch (InterruptedException e) {
+				// only close() ends the thread
+				continue;
+			}
+			long start = System.nanoTime();
+			sb.setLength(0);
+			for (Entity e : batch) {
+				if (e == END) {
+					end = true;
+					break;
+				}
+				// after an error the entities are only taken, so the
+				// producers and close() do not block
+				if (error == null) {
 					try {
-						out.write(e.toLines());
-					} catch (IOException logme) {
+						e.writeTo(sb);
+					} catch (IOException ex) {
+						error = ex;
+					} catch (RuntimeException ex) {
+						// e.g. an entity without subject, the thread has to
+						// keep taking the entities until the end
+						error = new IOException("Could not serialize an entity", ex);
 					}
 				}
-			} catch (InterruptedException e) {
 			}
+			if (error == null && sb.length() > 0) {
+				try {
+					encode(sb, encoder, bytes);
+				} catch (IOException e) {
+					error = e;
+				}
+			}
+			batch.clear();
+			PipelineMetrics.addTime(Stage.WRITE, System.nanoTime() - start);
 		}
 		try {
 			out.close();
-		} catch (IOException ignore) {
+		} catch (IOException e) {
+			if (error == null) {
+				error = e;
+			}
 		}
 	}
 
-	public void close() {
-		this.stopped = true;
+	// writes the characters UTF-8 encoded, through the reused byte buffer
+	private void encode(CharSequence chars, CharsetEncoder encoder, ByteBuffer bytes) throws IOException {
+		CharBuffer in = CharBuffer.wrap(chars);
+		encoder.reset();
+		CoderResult result;
+		do {
+			result = encoder.encode(in, bytes, true);
+			if (result.isOverflow() || !in.hasRemaining()) {
+				if (!in.hasRemaining()) {
+					encoder.flush(bytes);
+				}
+				out.write(bytes.array(), 0, bytes.position());
+				bytes.clear();
+			}
+		} while (in.hasRemaining() || result.isOverflow());
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Writes all queued entities and closes the file.
+	 *
+	 * @throws IOException
+	 *             the first error while writing the entities
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		if (!started) {
+			out.close();
+			return;
+		}
+		boolean interrupted = false;
+		while (true) {
+			try {
+				// waits for space, the writer thread keeps taking entities
+				queue.put(END);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (error != null) {
+			throw new IOException("Could not write the entities to " + name, error);
+		}
+	}
+}
@@ -1,13 +1,15 @@
 package org.webdatacommons.structureddata.io;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Collection;
 
 import org.webdatacommons.structureddata.model.Entity;
 
-public interface EntityWriter {
+public interface EntityWriter extends Closeable {
 	EntityWriter append(Entity e);
 
 	EntityWriter append(Collection<Entity> es);
 
-	void close();
+	void close() throws IOException;
 }
\ No newline at end of file
@@ -0,0 +1,273 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * One independently readable part of an input file, created by
+ * {@link InputSplitter}. A split of a gzip file covers complete gzip members, a
+ * split of an uncompressed file starts at the beginning of a line.
+ * <p>
+ * Gzip members may end within a line, e.g. in block compressed (bgzip) files.
+ * Like the line reader of Hadoop, all gzip splits but the first one skip the
+ * data up to the first line break, and each split reads the data after its
+ * end up to the first line break, so every line is read by exactly one split.
+ *
+ */
+public class InputSplit {
+
+	public enum Type {
+		// the whole file, read with the usual decompression
+		WHOLE_FILE,
+		// a range of complete gzip members
+		GZIP,
+		// a range of an uncompressed file
+		PLAIN
+	}
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private final File file;
+	private final long start;
+	private final long end;
+	private final int index;
+	private final Type type;
+
+	public InputSplit(File file, long start, long end, int index, Type type) {
+		this.file = file;
+		this.start = start;
+		this.end = end;
+		this.index = index;
+		this.type = type;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long getLength() {
+		return end - start;
+	}
+
+	/**
+	 * @return the position of the split within the file, starting at 0
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public boolean isLast() {
+		return end >= file.length();
+	}
+
+	/**
+	 * @return the decompressed content of this split.
+	 * @throws IOException
+	 */
+	public InputStream openStream() throws IOException {
+		if (type == Type.WHOLE_FILE) {
+			return InputStreamFactory.getInputStream(file);
+		}
+		if (type == Type.GZIP) {
+			return new LineAlignedInputStream(open(start, end));
+		}
+		return open(start, end);
+	}
+
+	/**
+	 * @return the decompressed content of the file after this split, which is
+	 *         needed to complete the last page of the split.
+	 * @throws IOException
+	 */
+	public InputStream openContinuation() throws IOException {
+		// only the start of the next split is read, which is counted there
+		InputStream in = open(new RangeInputStream(file, end, file.length()));
+		if (type == Type.GZIP) {
+			// the rest of the line at the end is already read by openStream()
+			skipLine(in);
+		}
+		return in;
+	}
+
+	private InputStream open(long from, long to) throws IOException {
+		return open(MeteredInputStream.counting(new RangeInputStream(file, from, to)));
+	}
+
+	private InputStream open(InputStream in) throws IOException {
+		if (type == Type.GZIP) {
+			// reads all members of the range one after another
+			return MeteredInputStream.timed(new GZIPInputStream(in, BUFFER_SIZE));
+		}
+		return MeteredInputStream.timed(in);
+	}
+
+	// skips the bytes up to and including the next line break, returns false
+	// if there is none
+	private static boolean skipLine(InputStream in) throws IOException {
+		int b;
+		while ((b = in.read()) >= 0) {
+			if (b == '\n') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return file.getName() + "[" + index + ": " + start + "-" + end + "]";
+	}
+
+	/**
+	 * The members of a gzip split, starting after the first line break (but in
+	 * the first split) and completed by the data after the split up to the
+	 * first line break.
+	 */
+	private class LineAlignedInputStream extends InputStream {
+		private final InputStream in;
+		// reads the data after the split
+		private InputStream tail;
+		private boolean aligned;
+		private boolean done = false;
+
+		LineAlignedInputStream(InputStream in) {
+			this.in = in;
+			this.aligned = index == 0;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (done) {
+				return -1;
+			}
+			if (len == 0) {
+				return 0;
+			}
+			if (!aligned) {
+				aligned = true;
+				if (!skipLine(in)) {
+					// the split lies within a line of the previous split
+					done = true;
+					return -1;
+				}
+			}
+			if (tail == null) {
+				int read = in.read(b, off, len);
+				if (read >= 0) {
+					return read;
+				}
+				if (isLast()) {
+					done = true;
+					return -1;
+				}
+				tail = open(new RangeInputStream(file, end, file.length()));
+			}
+			// the last line of the split ends after it
+			int read = 0;
+			while (read < len) {
+				int c = tail.read();
+				if (c < 0) {
+					done = true;
+					break;
+				}
+				b[off + read++] = (byte) c;
+				if (c == '\n') {
+					done = true;
+					break;
+				}
+			}
+			return read > 0 ? read : -1;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+			if (tail != null) {
+				tail.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the bytes of a file between two positions.
+	 */
+	static class RangeInputStream extends FilterInputStream {
+		private long remaining;
+
+		RangeInputStream(File file, long from, long to) throws IOException {
+			super(new FileInputStream(file));
+			long skipped = 0;
+			while (skipped < from) {
+				long s = in.skip(from - skipped);
+				if (s <= 0) {
+					break;
+				}
+				skipped += s;
+			}
+			this.remaining = to - from;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int b = in.read();
+			if (b >= 0) {
+				remaining--;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int read = in.read(b, off, (int) Math.min(len, remaining));
+			if (read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = in.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(in.available(), remaining);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+}
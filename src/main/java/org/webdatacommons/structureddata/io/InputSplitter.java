@@ -0,0 +1,266 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Splits one input file into several parts, which can be processed in
+ * parallel. Multi-member gzip files are split at member boundaries (which do
+ * not need to be line boundaries, see {@link InputSplit}), uncompressed files
+ * at line boundaries. All other files (single member gzip,
+ * xz, zip) are returned as one split.
+ * <p>
+ * The splits do not know anything about the graphs of the quads. Use
+ * {@link SplitLineReader} to read the lines of a split, which makes sure that
+ * all lines of one graph are read by exactly one split.
+ *
+ */
+public class InputSplitter {
+
+	/**
+	 * Splits smaller than this are not worth the overhead.
+	 */
+	public static final long MIN_SPLIT_LENGTH = 16L * 1024 * 1024;
+
+	// bytes of compressed data and bytes of output used to verify that a gzip
+	// header candidate really is the start of a member
+	private static final int PROBE_INPUT = 256 * 1024;
+	private static final int PROBE_OUTPUT = 16 * 1024;
+
+	/**
+	 * Task executed for one split.
+	 */
+	public interface SplitTask {
+		void process(InputSplit split) throws Exception;
+	}
+
+	/**
+	 * Splits a file into at most maxSplits parts.
+	 *
+	 * @param file
+	 *            the file
+	 * @param maxSplits
+	 *            maximal number of splits
+	 * @return the splits in file order
+	 * @throws IOException
+	 */
+	public static List<InputSplit> split(File file, int maxSplits) throws IOException {
+		List<InputSplit> splits = new ArrayList<InputSplit>();
+		long length = file.length();
+		int n = (int) Math.min(maxSplits, Math.max(1, length / MIN_SPLIT_LENGTH));
+		if (n <= 1) {
+			splits.add(new InputSplit(file, 0, length, 0, InputSplit.Type.WHOLE_FILE));
+			return splits;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			InputSplit.Type type;
+			int b1 = raf.read();
+			int b2 = raf.read();
+			if (b1 == 0x1f && b2 == 0x8b) {
+				type = InputSplit.Type.GZIP;
+			} else if (isText(raf)) {
+				type = InputSplit.Type.PLAIN;
+			} else {
+				splits.add(new InputSplit(file, 0, length, 0, InputSplit.Type.WHOLE_FILE));
+				return splits;
+			}
+			long start = 0;
+			for (int i = 1; i < n; i++) {
+				long target = Math.max(start + 1, length * i / n);
+				long next = type == InputSplit.Type.GZIP ? findMemberStart(raf, target, length)
+						: findLineStart(raf, target, length);
+				if (next < 0) {
+					break;
+				}
+				splits.add(new InputSplit(file, start, next, splits.size(), type));
+				start = next;
+			}
+			if (splits.isEmpty()) {
+				// no member boundary found, e.g. a single member gzip file
+				splits.add(new InputSplit(file, 0, length, 0, InputSplit.Type.WHOLE_FILE));
+			} else {
+				splits.add(new InputSplit(file, start, length, splits.size(), type));
+			}
+			return splits;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Processes all splits in parallel. The calling thread processes the first
+	 * split itself, all others are handed to the pool. Returns when all splits
+	 * are processed.
+	 *
+	 * @throws Exception
+	 *             the first exception thrown by one of the tasks
+	 */
+	public static void run(List<InputSplit> splits, ExecutorService pool, final SplitTask task) throws Exception {
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i = 1; i < splits.size(); i++) {
+			final InputSplit split = splits.get(i);
+			futures.add(pool.submit(() -> {
+				task.process(split);
+				return null;
+			}));
+		}
+		task.process(splits.get(0));
+		for (Future<Void> f : futures) {
+			f.get();
+		}
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads
+	 * @return a pool of daemon threads to process splits
+	 */
+	public static ExecutorService newSplitPool(int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "split-" + count++);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Searches the first gzip member starting at or after a position.
+	 *
+	 * @return the position or -1 if there is none before to
+	 */
+	public static long findMemberStart(RandomAccessFile raf, long from, long to) throws IOException {
+		byte[] buffer = new byte[1024 * 1024];
+		long pos = from;
+		while (pos < to - 2) {
+			raf.seek(pos);
+			int read = raf.read(buffer, 0, (int) Math.min(buffer.length, to - pos));
+			if (read < 3) {
+				return -1;
+			}
+			for (int i = 0; i < read - 2; i++) {
+				if (buffer[i] == (byte) 0x1f && buffer[i + 1] == (byte) 0x8b && buffer[i + 2] == 8
+						&& isMemberStart(raf, pos + i)) {
+					return pos + i;
+				}
+			}
+			pos += read - 2;
+		}
+		return -1;
+	}
+
+	// checks the header at the given position and tries to inflate the
+	// beginning of the member, which has to look like text
+	private static boolean isMemberStart(RandomAccessFile raf, long pos) throws IOException {
+		byte[] data = new byte[PROBE_INPUT];
+		raf.seek(pos);
+		int read = raf.read(data);
+		if (read < 18) {
+			return false;
+		}
+		int flags = data[3] & 0xff;
+		if ((flags & 0xe0) != 0) {
+			return false;
+		}
+		int offset = 10;
+		if ((flags & 4) != 0) {
+			// FEXTRA
+			offset += 2 + ((data[offset] & 0xff) | ((data[offset + 1] & 0xff) << 8));
+		}
+		if ((flags & 8) != 0) {
+			// FNAME
+			while (offset < read && data[offset] != 0) {
+				offset++;
+			}
+			offset++;
+		}
+		if ((flags & 16) != 0) {
+			// FCOMMENT
+			while (offset < read && data[offset] != 0) {
+				offset++;
+			}
+			offset++;
+		}
+		if ((flags & 2) != 0) {
+			// FHCRC
+			offset += 2;
+		}
+		if (offset >= read) {
+			return false;
+		}
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(data, offset, read - offset);
+			byte[] out = new byte[PROBE_OUTPUT];
+			int produced = 0;
+			while (produced < out.length && !inflater.finished() && !inflater.needsInput()) {
+				int n = inflater.inflate(out, produced, out.length - produced);
+				if (n == 0 && inflater.needsDictionary()) {
+					return false;
+				}
+				produced += n;
+			}
+			if (produced == 0) {
+				return false;
+			}
+			for (int i = 0; i < produced; i++) {
+				if (out[i] == 0) {
+					return false;
+				}
+			}
+			return true;
+		} catch (DataFormatException e) {
+			return false;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	// position after the first line break at or after from
+	private static long findLineStart(RandomAccessFile raf, long from, long to) throws IOException {
+		byte[] buffer = new byte[64 * 1024];
+		long pos = from;
+		while (pos < to) {
+			raf.seek(pos);
+			int read = raf.read(buffer, 0, (int) Math.min(buffer.length, to - pos));
+			if (read <= 0) {
+				return -1;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer[i] == '\n') {
+					long next = pos + i + 1;
+					return next < to ? next : -1;
+				}
+			}
+			pos += read;
+		}
+		return -1;
+	}
+
+	// checks if the beginning of the file looks like N-Quads
+	private static boolean isText(RandomAccessFile raf) throws IOException {
+		raf.seek(0);
+		byte[] buffer = new byte[4096];
+		int read = raf.read(buffer);
+		for (int i = 0; i < read; i++) {
+			if (buffer[i] == 0) {
+				return false;
+			}
+		}
+		return read > 0 && (buffer[0] == '<' || buffer[0] == '_');
+	}
+}
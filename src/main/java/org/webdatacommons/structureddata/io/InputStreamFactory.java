@@ -0,0 +1,155 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+
+/**
+ * Opens the input files of all commands. The format is detected by the magic
+ * bytes of the file, not by its extension:
+ * <ul>
+ * <li>gzip: multi-member files are inflated in parallel (see
+ * {@link #setInflateThreads(int)}), all others on a read-ahead thread</li>
+ * <li>zip: the first entry of the archive</li>
+ * <li>xz</li>
+ * <li>everything else is read as it is</li>
+ * </ul>
+ * The decompressed data is always read ahead on a dedicated thread (see
+ * {@link ReadAheadInputStream}), unless this is disabled. The compressed bytes
+ * and the time of reading and decompressing them are added to the
+ * {@link org.webdatacommons.structureddata.util.PipelineMetrics}.
+ *
+ */
+public class InputStreamFactory {
+
+	public enum Format {
+		GZIP, ZIP, XZ, PLAIN
+	}
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private static volatile boolean readAhead = true;
+	private static volatile int inflateThreads = 0;
+	private static ExecutorService inflatePool;
+
+	/**
+	 * @param enabled
+	 *            if true (the default), files are decompressed on a dedicated
+	 *            thread
+	 */
+	public static void setReadAhead(boolean enabled) {
+		readAhead = enabled;
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads shared by all files to inflate the members
+	 *            of multi-member gzip files in parallel. 0 (the default)
+	 *            disables the parallel inflation.
+	 */
+	public static synchronized void setInflateThreads(int threads) {
+		inflateThreads = threads;
+		if (inflatePool != null) {
+			inflatePool.shutdown();
+			inflatePool = null;
+		}
+	}
+
+	private static synchronized ExecutorService getInflatePool() {
+		if (inflatePool == null) {
+			inflatePool = InputSplitter.newSplitPool(inflateThreads);
+		}
+		return inflatePool;
+	}
+
+	/**
+	 * Detects the format of a file by its first bytes.
+	 */
+	public static Format detect(File file) throws IOException {
+		byte[] magic = new byte[6];
+		int read = 0;
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int n;
+			while (read < magic.length && (n = in.read(magic, read, magic.length - read)) > 0) {
+				read += n;
+			}
+		} finally {
+			in.close();
+		}
+		return detect(magic, read);
+	}
+
+	private static Format detect(byte[] magic, int length) {
+		if (length >= 2 && magic[0] == (byte) 0x1f && magic[1] == (byte) 0x8b) {
+			return Format.GZIP;
+		}
+		if (length >= 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+			return Format.ZIP;
+		}
+		if (length >= 6 && magic[0] == (byte) 0xfd && magic[1] == '7' && magic[2] == 'z' && magic[3] == 'X'
+				&& magic[4] == 'Z' && magic[5] == 0) {
+			return Format.XZ;
+		}
+		return Format.PLAIN;
+	}
+
+	/**
+	 * @return the decompressed content of the file
+	 * @throws IOException
+	 */
+	public static InputStream getInputStream(File file) throws IOException {
+		if (!file.isFile()) {
+			throw new IOException("Inputfile is not a file but a directory.");
+		}
+		Format format = detect(file);
+		InputStream in;
+		switch (format) {
+		case GZIP:
+			if (inflateThreads > 1 && ParallelGzipInputStream.isMultiMember(file)) {
+				// already decompressed by other threads
+				return new ParallelGzipInputStream(file, getInflatePool(), inflateThreads);
+			}
+			in = new GZIPInputStream(MeteredInputStream.counting(new FileInputStream(file)), BUFFER_SIZE);
+			break;
+		case ZIP:
+			ZipInputStream zip = new ZipInputStream(
+					new BufferedInputStream(MeteredInputStream.counting(new FileInputStream(file)), BUFFER_SIZE));
+			if (zip.getNextEntry() == null) {
+				zip.close();
+				throw new IOException("Empty zip archive: " + file);
+			}
+			in = zip;
+			break;
+		case XZ:
+			in = new XZCompressorInputStream(
+					new BufferedInputStream(MeteredInputStream.counting(new FileInputStream(file)), BUFFER_SIZE), true);
+			break;
+		default:
+			in = MeteredInputStream.counting(new FileInputStream(file));
+		}
+		in = MeteredInputStream.timed(in);
+		if (readAhead) {
+			return new ReadAheadInputStream(in);
+		}
+		return new BufferedInputStream(in, BUFFER_SIZE);
+	}
+
+	/**
+	 * @return a reader for the decompressed content of the file (UTF-8)
+	 * @throws IOException
+	 */
+	public static BufferedReader getBufferedReader(File file) throws IOException {
+		return new BufferedReader(new InputStreamReader(getInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+}
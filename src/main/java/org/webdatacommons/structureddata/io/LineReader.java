@@ -0,0 +1,120 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads raw lines from an {@link InputStream} without decoding them into
+ * {@link String}s. The bytes of the current line are only valid until the next
+ * call of {@link #next()}, as the internal buffer is reused.
+ *
+ */
+public class LineReader implements LineSource {
+
+	private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+	private final InputStream in;
+	private byte[] buffer;
+	// first byte of the current line
+	private int lineStart;
+	// exclusive end of the current line (without \r\n)
+	private int lineEnd;
+	// position where the next line starts
+	private int pos;
+	// number of valid bytes in the buffer
+	private int limit;
+	private boolean eof = false;
+	private long lineCount = 0;
+
+	public LineReader(InputStream in) {
+		this(in, DEFAULT_BUFFER_SIZE);
+	}
+
+	public LineReader(InputStream in, int bufferSize) {
+		this.in = in;
+		this.buffer = new byte[bufferSize];
+	}
+
+	/**
+	 * Moves to the next line.
+	 *
+	 * @return false if the end of the stream is reached.
+	 * @throws IOException
+	 */
+	@Override
+	public boolean next() throws IOException {
+		while (true) {
+			for (int i = pos; i < limit; i++) {
+				if (buffer[i] == '\n') {
+					setLine(pos, i);
+					pos = i + 1;
+					return true;
+				}
+			}
+			if (eof) {
+				if (pos < limit) {
+					// last line without line break
+					setLine(pos, limit);
+					pos = limit;
+					return true;
+				}
+				return false;
+			}
+			fill();
+		}
+	}
+
+	private void setLine(int start, int end) {
+		if (end > start && buffer[end - 1] == '\r') {
+			end--;
+		}
+		lineStart = start;
+		lineEnd = end;
+		lineCount++;
+	}
+
+	// moves the unread bytes to the front of the buffer (growing it if a
+	// single line does not fit) and reads more data
+	private void fill() throws IOException {
+		int remaining = limit - pos;
+		if (pos == 0 && limit == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		} else if (remaining > 0) {
+			System.arraycopy(buffer, pos, buffer, 0, remaining);
+		}
+		pos = 0;
+		limit = remaining;
+		int read = in.read(buffer, limit, buffer.length - limit);
+		if (read < 0) {
+			eof = true;
+		} else {
+			limit += read;
+		}
+	}
+
+	@Override
+	public byte[] buffer() {
+		return buffer;
+	}
+
+	@Override
+	public int start() {
+		return lineStart;
+	}
+
+	@Override
+	public int end() {
+		return lineEnd;
+	}
+
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
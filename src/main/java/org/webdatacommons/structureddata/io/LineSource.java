@@ -0,0 +1,32 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of raw (not decoded) lines. The bytes of the current line are only
+ * valid until {@link #next()} is called again.
+ *
+ */
+public interface LineSource extends Closeable {
+
+	/**
+	 * Moves to the next line.
+	 *
+	 * @return false if there are no more lines.
+	 * @throws IOException
+	 */
+	boolean next() throws IOException;
+
+	byte[] buffer();
+
+	/**
+	 * @return the first byte of the current line
+	 */
+	int start();
+
+	/**
+	 * @return the exclusive end of the current line (without line break)
+	 */
+	int end();
+}
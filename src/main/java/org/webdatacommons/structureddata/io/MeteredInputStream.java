@@ -0,0 +1,95 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.webdatacommons.structureddata.util.PipelineMetrics;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Counter;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Stage;
+
+/**
+ * Adds the bytes read from another stream and/or the time spent reading them
+ * to the {@link PipelineMetrics}. Wrapped around the file, it counts the
+ * compressed input, wrapped around the decompression, it measures the time of
+ * reading and decompressing. The streams are read in large blocks, so the
+ * overhead per call does not matter. The bytes are added to the tally of the
+ * thread which opened the stream (see {@link PipelineMetrics#startTally()}).
+ *
+ */
+public class MeteredInputStream extends FilterInputStream {
+
+	private final Counter counter;
+	private final Stage stage;
+	private final PipelineMetrics.Tally tally;
+
+	/**
+	 * @param counter
+	 *            counts the bytes, may be null
+	 * @param stage
+	 *            gets the time of the reads, may be null
+	 */
+	public MeteredInputStream(InputStream in, Counter counter, Stage stage) {
+		this(in, counter, stage, PipelineMetrics.currentTally());
+	}
+
+	/**
+	 * @param tally
+	 *            gets the bytes as well, may be null
+	 */
+	public MeteredInputStream(InputStream in, Counter counter, Stage stage, PipelineMetrics.Tally tally) {
+		super(in);
+		this.counter = counter;
+		this.stage = stage;
+		this.tally = tally;
+	}
+
+	/**
+	 * @return the stream, which counts the bytes read as input bytes
+	 */
+	public static InputStream counting(InputStream in) {
+		return new MeteredInputStream(in, Counter.INPUT_BYTES, null);
+	}
+
+	/**
+	 * @return the stream, which adds the time of the reads to the read stage
+	 */
+	public static InputStream timed(InputStream in) {
+		return new MeteredInputStream(in, null, Stage.READ);
+	}
+
+	@Override
+	public int read() throws IOException {
+		long start = stage != null ? System.nanoTime() : 0;
+		int b = in.read();
+		if (stage != null) {
+			PipelineMetrics.addTime(stage, System.nanoTime() - start);
+		}
+		if (b >= 0 && counter != null) {
+			PipelineMetrics.add(counter, 1, tally);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		long start = stage != null ? System.nanoTime() : 0;
+		int read = in.read(b, off, len);
+		if (stage != null) {
+			PipelineMetrics.addTime(stage, System.nanoTime() - start);
+		}
+		if (read > 0 && counter != null) {
+			PipelineMetrics.add(counter, read, tally);
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = in.skip(n);
+		if (skipped > 0 && counter != null) {
+			PipelineMetrics.add(counter, skipped, tally);
+		}
+		return skipped;
+	}
+}
@@ -0,0 +1,180 @@
+package org.webdatacommons.structureddata.io;
+
+/**
+ * Tokenizes N-Quads lines directly on their UTF-8 bytes. Instead of creating
+ * {@link ldif.runtime.Quad}s like the
+ * {@link ldif.local.datasources.dump.QuadFileLoader} the tokenizer only
+ * records the offsets of subject, predicate, object, graph, datatype and
+ * language tag in a reusable {@link QuadView}. No objects are allocated per
+ * line.
+ * <p>
+ * The tokenizer is more lenient than the ldif parser concerning language tags
+ * (e.g. en_US is accepted) and non-ASCII characters, which both occur
+ * frequently in the WDC extraction.
+ *
+ */
+public class NQuadsTokenizer {
+
+	/**
+	 * Tokenizes one line.
+	 *
+	 * @param buffer
+	 *            the bytes
+	 * @param from
+	 *            first byte of the line
+	 * @param to
+	 *            exclusive end of the line
+	 * @param view
+	 *            the view which is filled
+	 * @return true if the line is a valid quad (or triple), false if not.
+	 */
+	public boolean tokenize(byte[] buffer, int from, int to, QuadView view) {
+		view.reset(buffer, from, to);
+		int pos = skipWhitespace(buffer, from, to);
+		// subject
+		pos = term(buffer, pos, to, view, QuadView.SUBJECT, false);
+		if (pos < 0) {
+			return false;
+		}
+		// predicate
+		pos = skipWhitespace(buffer, pos, to);
+		if (pos >= to || buffer[pos] != '<') {
+			return false;
+		}
+		pos = term(buffer, pos, to, view, QuadView.PREDICATE, false);
+		if (pos < 0) {
+			return false;
+		}
+		// object
+		pos = skipWhitespace(buffer, pos, to);
+		pos = term(buffer, pos, to, view, QuadView.OBJECT, true);
+		if (pos < 0) {
+			return false;
+		}
+		// graph (optional)
+		pos = skipWhitespace(buffer, pos, to);
+		if (pos < to && buffer[pos] != '.') {
+			pos = term(buffer, pos, to, view, QuadView.GRAPH, false);
+			if (pos < 0) {
+				return false;
+			}
+			pos = skipWhitespace(buffer, pos, to);
+		}
+		// final dot
+		if (pos >= to || buffer[pos] != '.') {
+			return false;
+		}
+		pos = skipWhitespace(buffer, pos + 1, to);
+		return pos == to;
+	}
+
+	/**
+	 * Convenience method to tokenize the current line of a {@link LineSource}.
+	 */
+	public boolean tokenize(LineSource reader, QuadView view) {
+		return tokenize(reader.buffer(), reader.start(), reader.end(), view);
+	}
+
+	// reads one term starting at pos, returns the position after the term or
+	// -1 if the term is invalid
+	private int term(byte[] b, int pos, int to, QuadView view, int term, boolean allowLiteral) {
+		if (pos >= to) {
+			return -1;
+		}
+		byte c = b[pos];
+		if (c == '<') {
+			int s = pos + 1;
+			int e = indexOf(b, s, to, (byte) '>');
+			if (e < 0) {
+				return -1;
+			}
+			view.start[term] = s;
+			view.end[term] = e;
+			view.kind[term] = QuadView.IRI;
+			return e + 1;
+		}
+		if (c == '_' && pos + 1 < to && b[pos + 1] == ':') {
+			int s = pos + 2;
+			int e = s;
+			while (e < to && !isWhitespace(b[e])) {
+				e++;
+			}
+			if (e == s) {
+				return -1;
+			}
+			view.start[term] = s;
+			view.end[term] = e;
+			view.kind[term] = QuadView.BLANK;
+			return e;
+		}
+		if (c == '"' && allowLiteral) {
+			int s = pos + 1;
+			int e = s;
+			boolean escaped = false;
+			while (e < to && b[e] != '"') {
+				if (b[e] == '\\') {
+					escaped = true;
+					e++;
+				}
+				e++;
+			}
+			if (e >= to) {
+				return -1;
+			}
+			view.start[term] = s;
+			view.end[term] = e;
+			view.kind[term] = QuadView.LITERAL;
+			view.escaped = escaped;
+			pos = e + 1;
+			if (pos < to && b[pos] == '@') {
+				int ls = pos + 1;
+				int le = ls;
+				while (le < to && isLanguageChar(b[le])) {
+					le++;
+				}
+				if (le == ls) {
+					return -1;
+				}
+				view.languageStart = ls;
+				view.languageEnd = le;
+				return le;
+			}
+			if (pos + 2 < to && b[pos] == '^' && b[pos + 1] == '^' && b[pos + 2] == '<') {
+				int ds = pos + 3;
+				int de = indexOf(b, ds, to, (byte) '>');
+				if (de < 0) {
+					return -1;
+				}
+				view.datatypeStart = ds;
+				view.datatypeEnd = de;
+				return de + 1;
+			}
+			return pos;
+		}
+		return -1;
+	}
+
+	private static int indexOf(byte[] b, int from, int to, byte c) {
+		for (int i = from; i < to; i++) {
+			if (b[i] == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int skipWhitespace(byte[] b, int pos, int to) {
+		while (pos < to && isWhitespace(b[pos])) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static boolean isWhitespace(byte c) {
+		return c == ' ' || c == '\t' || c == '\r';
+	}
+
+	private static boolean isLanguageChar(byte c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+	}
+}
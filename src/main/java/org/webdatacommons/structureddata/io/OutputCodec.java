@@ -0,0 +1,150 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.webdatacommons.structureddata.io.InputStreamFactory.Format;
+
+/**
+ * Compression of an output file: none, gzip or xz, each with a level. The
+ * files are read by {@link InputStreamFactory}, which detects the codec by the
+ * magic bytes, so every codec can be used for files which are read again.
+ * <p>
+ * Codecs are given on the command line as <code>plain</code>,
+ * <code>gzip</code>, <code>gzip:1</code>, <code>xz</code> or
+ * <code>xz:9</code>.
+ *
+ */
+public class OutputCodec {
+
+	public static final OutputCodec PLAIN = new OutputCodec(Format.PLAIN, 0);
+
+	public static final OutputCodec GZIP = new OutputCodec(Format.GZIP, Deflater.DEFAULT_COMPRESSION);
+
+	public static final OutputCodec XZ = new OutputCodec(Format.XZ, 6);
+
+	private final Format format;
+	private final int level;
+
+	/**
+	 * @param level
+	 *            0-9, -1 is the default level of gzip
+	 */
+	public OutputCodec(Format format, int level) {
+		if (format == Format.ZIP) {
+			throw new IllegalArgumentException("Zip archives cannot be written.");
+		}
+		if (level < (format == Format.GZIP ? -1 : 0) || level > 9) {
+			throw new IllegalArgumentException("Illegal level " + level + " for " + format);
+		}
+		this.format = format;
+		this.level = level;
+	}
+
+	/**
+	 * @param codec
+	 *            e.g. <code>gzip:1</code>
+	 */
+	public static OutputCodec parse(String codec) {
+		String[] tok = codec.trim().toLowerCase().split(":");
+		if (tok.length > 2) {
+			throw new IllegalArgumentException("Unknown codec " + codec);
+		}
+		OutputCodec base;
+		switch (tok[0]) {
+		case "plain":
+		case "none":
+			base = PLAIN;
+			break;
+		case "gzip":
+		case "gz":
+			base = GZIP;
+			break;
+		case "xz":
+			base = XZ;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown codec " + codec);
+		}
+		if (tok.length == 1) {
+			return base;
+		}
+		return new OutputCodec(base.format, Integer.parseInt(tok[1]));
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @return the file extension including the dot, empty for plain files
+	 */
+	public String getExtension() {
+		switch (format) {
+		case GZIP:
+			return ".gz";
+		case XZ:
+			return ".xz";
+		default:
+			return "";
+		}
+	}
+
+	/**
+	 * @return the file in the directory, the name is extended by
+	 *         {@link #getExtension()}
+	 */
+	public File file(File directory, String name) {
+		return new File(directory, name + getExtension());
+	}
+
+	/**
+	 * Removes the extension of a compressed file (.gz, .xz) from its name.
+	 */
+	public static String stripExtension(String name) {
+		if (name.endsWith(".gz") || name.endsWith(".xz")) {
+			return name.substring(0, name.length() - 3);
+		}
+		return name;
+	}
+
+	/**
+	 * Compresses on the calling thread.
+	 *
+	 * @param out
+	 *            receives the compressed bytes, closed with the returned
+	 *            stream
+	 */
+	public OutputStream open(OutputStream out) throws IOException {
+		switch (format) {
+		case GZIP:
+			return new GZIPOutputStream(out, 64 * 1024) {
+				{
+					def.setLevel(level);
+				}
+			};
+		case XZ:
+			return new XZCompressorOutputStream(new BufferedOutputStream(out, 64 * 1024), level);
+		default:
+			return out;
+		}
+	}
+
+	@Override
+	public String toString() {
+		String name = format.name().toLowerCase();
+		if (format == Format.PLAIN || (format == Format.GZIP && level < 0)) {
+			return name;
+		}
+		return name + ":" + level;
+	}
+}
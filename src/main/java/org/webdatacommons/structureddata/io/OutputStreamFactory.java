@@ -0,0 +1,136 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
+
+import org.webdatacommons.structureddata.io.InputStreamFactory.Format;
+
+/**
+ * Opens the output files of all commands. The files are compressed by the
+ * {@link OutputCodec} of the command (see {@link #setCodec(OutputCodec)}),
+ * intermediate files, which are read again by the same command, by a cheaper
+ * one (see {@link #setIntermediateCodec(OutputCodec)}). Gzip files are
+ * compressed on the writing thread, or in parallel by threads shared by all
+ * files (see {@link #setDeflateThreads(int)} and
+ * {@link ParallelGzipOutputStream}).
+ *
+ */
+public class OutputStreamFactory {
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private static volatile OutputCodec codec = OutputCodec.GZIP;
+	private static volatile OutputCodec intermediateCodec = new OutputCodec(Format.GZIP, Deflater.BEST_SPEED);
+
+	private static volatile int deflateThreads = 0;
+	private static ExecutorService deflatePool;
+
+	/**
+	 * @param codec
+	 *            codec of the output files (default: gzip)
+	 */
+	public static void setCodec(OutputCodec codec) {
+		OutputStreamFactory.codec = codec;
+	}
+
+	public static OutputCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * @param codec
+	 *            codec of the intermediate files (default: gzip:1)
+	 */
+	public static void setIntermediateCodec(OutputCodec codec) {
+		intermediateCodec = codec;
+	}
+
+	public static OutputCodec getIntermediateCodec() {
+		return intermediateCodec;
+	}
+
+	/**
+	 * @param threads
+	 *            number of threads shared by all files to deflate blocks of
+	 *            the output in parallel. 0 (the default) disables the parallel
+	 *            compression.
+	 */
+	public static synchronized void setDeflateThreads(int threads) {
+		deflateThreads = threads;
+		if (deflatePool != null) {
+			deflatePool.shutdown();
+			deflatePool = null;
+		}
+	}
+
+	private static synchronized ExecutorService getDeflatePool() {
+		if (deflatePool == null) {
+			deflatePool = InputSplitter.newSplitPool(deflateThreads);
+		}
+		return deflatePool;
+	}
+
+	/**
+	 * @return the output file with the extension of the codec of the command,
+	 *         e.g. <code>name.gz</code>
+	 */
+	public static File getFile(File directory, String name) {
+		return codec.file(directory, name);
+	}
+
+	/**
+	 * @return an unbuffered stream, which writes the compressed bytes to the
+	 *         file
+	 * @throws IOException
+	 */
+	public static OutputStream open(File file, OutputCodec codec) throws IOException {
+		if (codec.getFormat() == Format.GZIP && deflateThreads > 1) {
+			return new ParallelGzipOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024),
+					getDeflatePool(), 2 * deflateThreads, codec.getLevel());
+		}
+		return codec.open(new FileOutputStream(file));
+	}
+
+	/**
+	 * @return a buffered stream, which writes the bytes compressed by the codec
+	 *         of the command to the file
+	 * @throws IOException
+	 */
+	public static OutputStream getOutputStream(File file) throws IOException {
+		return getOutputStream(file, codec);
+	}
+
+	public static OutputStream getOutputStream(File file, OutputCodec codec) throws IOException {
+		return new BufferedOutputStream(open(file, codec), BUFFER_SIZE);
+	}
+
+	/**
+	 * @return a writer for the file compressed by the codec of the command
+	 *         (UTF-8)
+	 * @throws IOException
+	 */
+	public static BufferedWriter getBufferedWriter(File file) throws IOException {
+		return getBufferedWriter(file, codec);
+	}
+
+	/**
+	 * @return a writer for the file <code>name</code> with the extension of the
+	 *         codec of the command (UTF-8)
+	 * @throws IOException
+	 */
+	public static BufferedWriter getBufferedWriter(File directory, String name) throws IOException {
+		return getBufferedWriter(getFile(directory, name), codec);
+	}
+
+	public static BufferedWriter getBufferedWriter(File file, OutputCodec codec) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(open(file, codec), StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+}
@@ -0,0 +1,251 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.webdatacommons.structureddata.util.PipelineMetrics;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Counter;
+
+/**
+ * Decompresses a multi-member gzip file with several threads. The file is cut
+ * into chunks of complete members, which are inflated in parallel. The
+ * decompressed data is returned in file order.
+ * <p>
+ * At most {@link #maxInFlight} chunks are inflated at the same time, each of
+ * them buffers at most {@link #CHUNK_BUFFERS} blocks, so the memory use is
+ * bounded independently of the file size.
+ *
+ */
+public class ParallelGzipInputStream extends InputStream {
+
+	/**
+	 * Compressed bytes per chunk.
+	 */
+	public static final long CHUNK_LENGTH = 8L * 1024 * 1024;
+
+	private static final int BLOCK_SIZE = 1024 * 1024;
+	private static final int CHUNK_BUFFERS = 4;
+
+	private static final byte[] END = new byte[0];
+
+	private final File file;
+	private final long length;
+	private final ExecutorService pool;
+	private final int maxInFlight;
+	private final RandomAccessFile raf;
+	// the chunks are inflated by the pool, their bytes belong to the pass of
+	// the thread which opened the stream
+	private final PipelineMetrics.Tally tally = PipelineMetrics.currentTally();
+
+	// start of the next chunk to submit, -1 if all are submitted
+	private long next = 0;
+	private final ArrayDeque<Chunk> chunks = new ArrayDeque<Chunk>();
+	private volatile boolean closed = false;
+
+	private byte[] current;
+	private int currentLength;
+	private int pos;
+	private boolean eof = false;
+
+	/**
+	 * @param file
+	 *            the multi-member gzip file
+	 * @param pool
+	 *            the threads used to inflate the chunks, may be shared
+	 * @param maxInFlight
+	 *            maximal number of chunks inflated at the same time
+	 */
+	public ParallelGzipInputStream(File file, ExecutorService pool, int maxInFlight) throws IOException {
+		this.file = file;
+		this.length = file.length();
+		this.pool = pool;
+		this.maxInFlight = Math.max(1, maxInFlight);
+		this.raf = new RandomAccessFile(file, "r");
+	}
+
+	/**
+	 * @return true if the file contains at least two gzip members within the
+	 *         first {@link #CHUNK_LENGTH} bytes, i.e. the file can be inflated
+	 *         in parallel
+	 */
+	public static boolean isMultiMember(File file) throws IOException {
+		if (file.length() < 2 * CHUNK_LENGTH) {
+			return false;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return InputSplitter.findMemberStart(raf, 1, Math.min(file.length(), CHUNK_LENGTH)) > 0;
+		} finally {
+			raf.close();
+		}
+	}
+
+	// submits chunks until maxInFlight are inflated or read
+	private void submit() throws IOException {
+		while (next >= 0 && chunks.size() < maxInFlight) {
+			long start = next;
+			long end = start + CHUNK_LENGTH < length ? InputSplitter.findMemberStart(raf, start + CHUNK_LENGTH, length)
+					: -1;
+			if (end < 0) {
+				end = length;
+				next = -1;
+			} else {
+				next = end;
+			}
+			Chunk chunk = new Chunk(start, end);
+			chunks.add(chunk);
+			pool.execute(chunk);
+		}
+	}
+
+	private boolean ensureData() throws IOException {
+		while (!eof && (current == null || pos >= currentLength)) {
+			submit();
+			Chunk chunk = chunks.peek();
+			if (chunk == null) {
+				eof = true;
+				break;
+			}
+			byte[] block = chunk.take();
+			if (block == END) {
+				chunks.poll();
+				current = null;
+			} else {
+				current = block;
+				currentLength = block.length;
+				pos = 0;
+			}
+		}
+		return !eof;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureData()) {
+			return -1;
+		}
+		return current[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!ensureData()) {
+			return -1;
+		}
+		int n = Math.min(len, currentLength - pos);
+		System.arraycopy(current, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() throws IOException {
+		if (eof) {
+			return 0;
+		}
+		if (current != null && pos < currentLength) {
+			return currentLength - pos;
+		}
+		return 1;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		for (Chunk chunk : chunks) {
+			// unblock a chunk which waits for its blocks to be read
+			chunk.blocks.clear();
+		}
+		chunks.clear();
+		raf.close();
+	}
+
+	/**
+	 * Inflates the members between two positions of the file.
+	 */
+	private class Chunk implements Runnable {
+		final long start;
+		final long end;
+		final BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<byte[]>(CHUNK_BUFFERS);
+		volatile IOException error;
+
+		Chunk(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public void run() {
+			InputStream in = null;
+			try {
+				in = MeteredInputStream.timed(new GZIPInputStream(
+						new MeteredInputStream(new InputSplit.RangeInputStream(file, start, end), Counter.INPUT_BYTES,
+								null, tally),
+						64 * 1024));
+				byte[] block = new byte[BLOCK_SIZE];
+				int filled = 0;
+				int read;
+				while (!closed && (read = in.read(block, filled, block.length - filled)) >= 0) {
+					filled += read;
+					if (filled == block.length) {
+						put(block);
+						block = new byte[BLOCK_SIZE];
+						filled = 0;
+					}
+				}
+				if (filled > 0) {
+					put(Arrays.copyOf(block, filled));
+				}
+			} catch (IOException e) {
+				error = new IOException("Could not inflate " + file + " [" + start + "-" + end + "]", e);
+			} catch (InterruptedException e) {
+				error = new IOException(e);
+			} finally {
+				if (in != null) {
+					try {
+						in.close();
+					} catch (IOException e) {
+						// ignore
+					}
+				}
+				try {
+					put(END);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		private void put(byte[] block) throws InterruptedException {
+			while (!closed) {
+				if (blocks.offer(block, 100, TimeUnit.MILLISECONDS)) {
+					return;
+				}
+			}
+		}
+
+		byte[] take() throws IOException {
+			try {
+				byte[] block = blocks.take();
+				if (block == END && error != null) {
+					throw error;
+				}
+				return block;
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+}
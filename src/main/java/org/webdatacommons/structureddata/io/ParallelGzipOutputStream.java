@@ -0,0 +1,236 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses a stream into a gzip file with several threads, like pigz. The
+ * bytes are cut into blocks of {@link #BLOCK_SIZE}, which are deflated in
+ * parallel. Each block uses the last 32 KB of the previous one as dictionary,
+ * so the compression ratio is close to the one of a single
+ * {@link java.util.zip.GZIPOutputStream}. The blocks are written in order as
+ * one gzip member, which can be read by every gzip implementation.
+ * <p>
+ * At most {@link #maxInFlight} blocks are deflated at the same time, writing
+ * blocks while all of them are busy waits for the oldest one, so the memory
+ * use is bounded independently of the file size.
+ *
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	/**
+	 * Uncompressed bytes per block.
+	 */
+	public static final int BLOCK_SIZE = 128 * 1024;
+
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	// one deflater per thread of the pool, reset for each block
+	private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+		@Override
+		protected Deflater initialValue() {
+			return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		}
+	};
+
+	private final OutputStream out;
+	private final ExecutorService pool;
+	private final int maxInFlight;
+	private final int level;
+	private final CRC32 crc = new CRC32();
+	private long size = 0;
+
+	private final ArrayDeque<Future<Block>> blocks = new ArrayDeque<Future<Block>>();
+	private byte[] current = new byte[BLOCK_SIZE];
+	private int currentLength = 0;
+	// the previous block, its end is the dictionary of the next one
+	private byte[] previous;
+	private int previousLength;
+	private boolean closed = false;
+
+	/**
+	 * @param out
+	 *            receives the gzip file, closed by {@link #close()}
+	 * @param pool
+	 *            the threads used to deflate the blocks, may be shared
+	 * @param maxInFlight
+	 *            maximal number of blocks deflated at the same time
+	 * @param level
+	 *            the compression level (0-9, or -1 for the default)
+	 */
+	public ParallelGzipOutputStream(OutputStream out, ExecutorService pool, int maxInFlight, int level)
+			throws IOException {
+		this.out = out;
+		this.pool = pool;
+		this.maxInFlight = Math.max(1, maxInFlight);
+		this.level = level;
+		out.write(HEADER);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (currentLength == BLOCK_SIZE) {
+			submit(false);
+		}
+		current[currentLength++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (currentLength == BLOCK_SIZE) {
+				submit(false);
+			}
+			int n = Math.min(len, BLOCK_SIZE - currentLength);
+			System.arraycopy(b, off, current, currentLength, n);
+			currentLength += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	// hands the current block to the pool
+	private void submit(boolean last) throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		crc.update(current, 0, currentLength);
+		size += currentLength;
+		blocks.add(pool.submit(new Block(current, currentLength, previous, previousLength, level, last)));
+		previous = current;
+		previousLength = currentLength;
+		current = new byte[BLOCK_SIZE];
+		currentLength = 0;
+		while (blocks.size() >= maxInFlight) {
+			writeNext();
+		}
+	}
+
+	// waits for the oldest block and writes it
+	private void writeNext() throws IOException {
+		Block block;
+		try {
+			block = blocks.poll().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while deflating");
+		} catch (ExecutionException e) {
+			throw new IOException("Could not deflate block", e.getCause());
+		}
+		out.write(block.output, 0, block.outputLength);
+	}
+
+	/**
+	 * Deflates and writes everything written so far. Ends the current block,
+	 * i.e. frequent calls reduce the compression ratio.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (currentLength > 0) {
+			submit(false);
+		}
+		while (!blocks.isEmpty()) {
+			writeNext();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			// the last block ends the deflate stream, even if it is empty
+			submit(true);
+			while (!blocks.isEmpty()) {
+				writeNext();
+			}
+			writeInt((int) crc.getValue());
+			writeInt((int) size);
+		} finally {
+			closed = true;
+			blocks.clear();
+			out.close();
+		}
+	}
+
+	private void writeInt(int i) throws IOException {
+		out.write(i & 0xff);
+		out.write((i >> 8) & 0xff);
+		out.write((i >> 16) & 0xff);
+		out.write((i >> 24) & 0xff);
+	}
+
+	/**
+	 * One block, deflated on a thread of the pool. All but the last block end
+	 * with a sync flush, so the raw deflate data of the blocks can be
+	 * concatenated.
+	 */
+	private static class Block implements Callable<Block> {
+
+		private final byte[] input;
+		private final int inputLength;
+		private final byte[] dictionary;
+		private final int dictionaryLength;
+		private final int level;
+		private final boolean last;
+
+		private byte[] output;
+		private int outputLength;
+
+		Block(byte[] input, int inputLength, byte[] dictionary, int dictionaryLength, int level, boolean last) {
+			this.input = input;
+			this.inputLength = inputLength;
+			this.dictionary = dictionary;
+			this.dictionaryLength = dictionaryLength;
+			this.level = level;
+			this.last = last;
+		}
+
+		@Override
+		public Block call() {
+			Deflater deflater = DEFLATER.get();
+			deflater.reset();
+			deflater.setLevel(level);
+			if (dictionary != null) {
+				int length = Math.min(DICTIONARY_SIZE, dictionaryLength);
+				deflater.setDictionary(dictionary, dictionaryLength - length, length);
+			}
+			deflater.setInput(input, 0, inputLength);
+			output = new byte[inputLength / 2 + 1024];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					deflate(deflater, Deflater.NO_FLUSH);
+				}
+			} else {
+				// the flush is complete, if the deflater took all input and did
+				// not fill the output. A changed level is applied by a call
+				// which does not take input.
+				do {
+					deflate(deflater, Deflater.SYNC_FLUSH);
+				} while (outputLength == output.length || !deflater.needsInput());
+			}
+			return this;
+		}
+
+		private void deflate(Deflater deflater, int flush) {
+			if (outputLength == output.length) {
+				output = Arrays.copyOf(output, output.length * 2);
+			}
+			outputLength += deflater.deflate(output, outputLength, output.length - outputLength, flush);
+		}
+	}
+}
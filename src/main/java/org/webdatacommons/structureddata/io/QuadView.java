@@ -0,0 +1,293 @@
+package org.webdatacommons.structureddata.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import ldif.entity.Node;
+import ldif.entity.NodeTrait;
+import ldif.runtime.Quad;
+
+/**
+ * Reusable view on one quad parsed by {@link NQuadsTokenizer}. The view only
+ * stores offsets into the buffer of the line, {@link String}s are created when
+ * one of the accessors is called. A view is only valid until the underlying
+ * buffer is reused (e.g. by {@link LineReader#next()}).
+ *
+ */
+public class QuadView {
+
+	public static final int SUBJECT = 0;
+	public static final int PREDICATE = 1;
+	public static final int OBJECT = 2;
+	public static final int GRAPH = 3;
+
+	public static final int IRI = 0;
+	public static final int BLANK = 1;
+	public static final int LITERAL = 2;
+
+	byte[] buffer;
+	int lineStart;
+	int lineEnd;
+	// content offsets of the terms without the delimiters (<>, _:, "")
+	final int[] start = new int[4];
+	final int[] end = new int[4];
+	final int[] kind = new int[4];
+	// datatype and language tag of a literal object, -1 if not present
+	int datatypeStart = -1;
+	int datatypeEnd = -1;
+	int languageStart = -1;
+	int languageEnd = -1;
+	// true if the literal contains escape sequences
+	boolean escaped;
+
+	void reset(byte[] buffer, int lineStart, int lineEnd) {
+		this.buffer = buffer;
+		this.lineStart = lineStart;
+		this.lineEnd = lineEnd;
+		this.datatypeStart = -1;
+		this.datatypeEnd = -1;
+		this.languageStart = -1;
+		this.languageEnd = -1;
+		this.escaped = false;
+		this.start[GRAPH] = -1;
+		this.end[GRAPH] = -1;
+	}
+
+	public byte[] buffer() {
+		return buffer;
+	}
+
+	public int lineStart() {
+		return lineStart;
+	}
+
+	public int lineEnd() {
+		return lineEnd;
+	}
+
+	public int start(int term) {
+		return start[term];
+	}
+
+	public int end(int term) {
+		return end[term];
+	}
+
+	public int length(int term) {
+		return end[term] - start[term];
+	}
+
+	/**
+	 * @param term
+	 *            one of {@link #SUBJECT}, {@link #PREDICATE}, {@link #OBJECT},
+	 *            {@link #GRAPH}
+	 * @return {@link #IRI}, {@link #BLANK} or {@link #LITERAL}
+	 */
+	public int kind(int term) {
+		return kind[term];
+	}
+
+	public boolean hasGraph() {
+		return start[GRAPH] >= 0;
+	}
+
+	public boolean hasLanguage() {
+		return languageStart >= 0;
+	}
+
+	public boolean hasDatatype() {
+		return datatypeStart >= 0;
+	}
+
+	public String subject() {
+		return decode(start[SUBJECT], end[SUBJECT]);
+	}
+
+	public String predicate() {
+		return decode(start[PREDICATE], end[PREDICATE]);
+	}
+
+	/**
+	 * @return the IRI, the blank node label or the (unescaped) lexical form of
+	 *         the object.
+	 */
+	public String object() {
+		if (kind[OBJECT] == LITERAL && escaped) {
+			return unescape(buffer, start[OBJECT], end[OBJECT]);
+		}
+		return decode(start[OBJECT], end[OBJECT]);
+	}
+
+	public String graph() {
+		return hasGraph() ? decode(start[GRAPH], end[GRAPH]) : null;
+	}
+
+	public String datatype() {
+		return hasDatatype() ? decode(datatypeStart, datatypeEnd) : null;
+	}
+
+	public String language() {
+		return hasLanguage() ? decode(languageStart, languageEnd) : null;
+	}
+
+	/**
+	 * @return the complete line the quad was parsed from.
+	 */
+	public String line() {
+		return decode(lineStart, lineEnd);
+	}
+
+	/**
+	 * Compares the content of a term with the given bytes without creating a
+	 * {@link String}.
+	 */
+	public boolean termEquals(int term, byte[] other, int otherLength) {
+		int len = end[term] - start[term];
+		if (len != otherLength) {
+			return false;
+		}
+		int s = start[term];
+		for (int i = 0; i < len; i++) {
+			if (buffer[s + i] != other[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the content of a term with an ASCII {@link String} without
+	 * creating a new {@link String}.
+	 */
+	public boolean termEquals(int term, String ascii) {
+		int len = end[term] - start[term];
+		if (len != ascii.length()) {
+			return false;
+		}
+		int s = start[term];
+		for (int i = 0; i < len; i++) {
+			if (buffer[s + i] != ascii.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Converts the view into a ldif {@link Quad}, for code which still works on
+	 * the ldif model.
+	 *
+	 * @return the {@link Quad}
+	 */
+	public Quad toQuad() {
+		String graph = graph();
+		NodeTrait subject = kind[SUBJECT] == BLANK ? Node.createBlankNode(subject(), graph)
+				: Node.createUriNode(subject(), graph);
+		NodeTrait object;
+		switch (kind[OBJECT]) {
+		case BLANK:
+			object = Node.createBlankNode(object(), graph);
+			break;
+		case LITERAL:
+			if (hasLanguage()) {
+				object = Node.createLanguageLiteral(object(), language(), graph);
+			} else if (hasDatatype()) {
+				object = Node.createTypedLiteral(object(), datatype(), graph);
+			} else {
+				object = Node.createLiteral(object(), graph);
+			}
+			break;
+		default:
+			object = Node.createUriNode(object(), graph);
+		}
+		return new Quad(subject, predicate(), object, graph);
+	}
+
+	private String decode(int from, int to) {
+		return new String(buffer, from, to - from, StandardCharsets.UTF_8);
+	}
+
+	// resolves the N-Triples escape sequences of a literal
+	static String unescape(byte[] buffer, int from, int to) {
+		String raw = new String(buffer, from, to - from, StandardCharsets.UTF_8);
+		StringBuilder sb = new StringBuilder(raw.length());
+		for (int i = 0; i < raw.length(); i++) {
+			char c = raw.charAt(i);
+			if (c != '\\' || i + 1 == raw.length()) {
+				sb.append(c);
+				continue;
+			}
+			char n = raw.charAt(++i);
+			switch (n) {
+			case 't':
+				sb.append('\t');
+				break;
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'u':
+			case 'U':
+				int digits = n == 'u' ? 4 : 8;
+				if (i + digits < raw.length()) {
+					try {
+						sb.appendCodePoint(Integer.parseInt(raw.substring(i + 1, i + 1 + digits), 16));
+						i += digits;
+						break;
+					} catch (IllegalArgumentException e) {
+						// keep the sequence as it is
+					}
+				}
+				sb.append('\\').append(n);
+				break;
+			default:
+				// \" \' \\ and unknown escapes
+				sb.append(n);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Reusable copy of the bytes of one term, e.g. to remember the graph of the
+	 * last line and detect when it changes.
+	 */
+	public static class Key {
+		private byte[] bytes = new byte[256];
+		private int length = -1;
+
+		public void set(QuadView view, int term) {
+			int len = view.length(term);
+			if (bytes.length < len) {
+				bytes = Arrays.copyOf(bytes, Math.max(len, bytes.length * 2));
+			}
+			System.arraycopy(view.buffer, view.start[term], bytes, 0, len);
+			length = len;
+		}
+
+		public boolean matches(QuadView view, int term) {
+			return length >= 0 && view.termEquals(term, bytes, length);
+		}
+
+		public boolean isSet() {
+			return length >= 0;
+		}
+
+		public void clear() {
+			length = -1;
+		}
+
+		@Override
+		public String toString() {
+			return length < 0 ? null : new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+	}
+}
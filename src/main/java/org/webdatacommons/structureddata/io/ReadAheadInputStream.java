@@ -0,0 +1,168 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads (and thereby decompresses) another {@link InputStream} on a dedicated
+ * thread into a bounded ring of large buffers, so that decompression overlaps
+ * with the parsing of the data.
+ *
+ */
+public class ReadAheadInputStream extends InputStream {
+
+	public static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+	public static final int DEFAULT_BUFFERS = 4;
+
+	private static final Chunk EOF = new Chunk(new byte[0]);
+
+	private static class Chunk {
+		final byte[] data;
+		int length;
+
+		Chunk(byte[] data) {
+			this.data = data;
+		}
+	}
+
+	private final InputStream source;
+	private final BlockingQueue<Chunk> free;
+	private final BlockingQueue<Chunk> filled;
+	private final Thread thread;
+	private volatile boolean closed = false;
+	private volatile IOException error;
+
+	private Chunk current;
+	private int pos;
+	private boolean eof = false;
+
+	public ReadAheadInputStream(InputStream source) {
+		this(source, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFERS);
+	}
+
+	public ReadAheadInputStream(InputStream source, int bufferSize, int buffers) {
+		this.source = source;
+		this.free = new ArrayBlockingQueue<Chunk>(buffers);
+		// one additional slot for the EOF marker
+		this.filled = new ArrayBlockingQueue<Chunk>(buffers + 1);
+		for (int i = 0; i < buffers; i++) {
+			free.add(new Chunk(new byte[bufferSize]));
+		}
+		this.thread = new Thread(this::fill, "read-ahead");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	// runs on the read-ahead thread
+	private void fill() {
+		try {
+			while (!closed) {
+				Chunk c = free.poll(100, TimeUnit.MILLISECONDS);
+				if (c == null) {
+					continue;
+				}
+				// fill the buffer as far as possible, to keep the number of
+				// hand-overs small
+				int length = 0;
+				int read = 0;
+				while (length < c.data.length && (read = source.read(c.data, length, c.data.length - length)) >= 0) {
+					length += read;
+				}
+				if (length > 0) {
+					c.length = length;
+					filled.put(c);
+				}
+				if (read < 0) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			error = e;
+		} catch (InterruptedException e) {
+			error = new IOException(e);
+		} finally {
+			filled.offer(EOF);
+		}
+	}
+
+	// makes sure there is a current chunk with unread data, returns false at
+	// the end of the stream
+	private boolean ensureData() throws IOException {
+		while (!eof && (current == null || pos >= current.length)) {
+			if (current != null) {
+				free.offer(current);
+				current = null;
+			}
+			try {
+				Chunk c = filled.take();
+				if (c == EOF) {
+					eof = true;
+					if (error != null) {
+						throw error;
+					}
+				} else {
+					current = c;
+					pos = 0;
+				}
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+		}
+		return !eof;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureData()) {
+			return -1;
+		}
+		return current.data[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!ensureData()) {
+			return -1;
+		}
+		int n = Math.min(len, current.length - pos);
+		System.arraycopy(current.data, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	/**
+	 * Like {@link java.util.zip.InflaterInputStream} this returns at least 1
+	 * until the end of the stream is reached, as the data may still be
+	 * decompressed.
+	 */
+	@Override
+	public int available() throws IOException {
+		if (eof) {
+			return 0;
+		}
+		if (current != null && pos < current.length) {
+			return current.length - pos;
+		}
+		return 1;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		// unblock the read-ahead thread
+		filled.clear();
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		source.close();
+	}
+}
@@ -0,0 +1,147 @@
+package org.webdatacommons.structureddata.io;
+
+import java.io.IOException;
+
+/**
+ * Reads the lines of one {@link InputSplit}, so that the quads of one graph are
+ * read by exactly one split, as long as the quads of a graph are contiguous in
+ * the file:
+ * <ul>
+ * <li>all splits but the first one skip the lines of the graph they start
+ * with</li>
+ * <li>after its own lines, a split continues to read the following data as
+ * long as the lines belong to the graph the next split starts with</li>
+ * </ul>
+ * Lines which cannot be tokenized are kept with the surrounding graph.
+ *
+ */
+public class SplitLineReader implements LineSource {
+
+	private final InputSplit split;
+	private final NQuadsTokenizer tokenizer = new NQuadsTokenizer();
+	private final QuadView view = new QuadView();
+	// graph of the run of lines at the boundary to the next split
+	private final QuadView.Key runGraph = new QuadView.Key();
+
+	private LineReader reader;
+	private boolean started = false;
+	private boolean continuation = false;
+	private boolean done = false;
+	// the current line of the reader was not returned yet
+	private boolean pending = false;
+
+	public SplitLineReader(InputSplit split) {
+		this.split = split;
+	}
+
+	@Override
+	public boolean next() throws IOException {
+		if (done) {
+			return false;
+		}
+		if (!started) {
+			started = true;
+			reader = new LineReader(split.openStream());
+			if (split.getIndex() > 0 && !skipRun() && (split.isLast() || !continueAfterRun())) {
+				// the whole split belongs to a graph of the previous split
+				return finish();
+			}
+		}
+		if (pending) {
+			pending = false;
+			return true;
+		}
+		if (!continuation) {
+			if (reader.next()) {
+				return true;
+			}
+			if (split.isLast()) {
+				return finish();
+			}
+			reader.close();
+			reader = new LineReader(split.openContinuation());
+			continuation = true;
+			runGraph.clear();
+		}
+		if (reader.next() && inRun()) {
+			return true;
+		}
+		return finish();
+	}
+
+	// skips the run of lines at the beginning, returns false if the split
+	// ends before the end of the run
+	private boolean skipRun() throws IOException {
+		while (reader.next()) {
+			if (!inRun()) {
+				pending = true;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// called if the split lies completely within the run it starts with. If
+	// the next split starts with the same graph, the previous split reads
+	// its run as well, otherwise this split is responsible for it.
+	private boolean continueAfterRun() throws IOException {
+		reader.close();
+		reader = new LineReader(split.openContinuation());
+		continuation = true;
+		while (reader.next()) {
+			if (tokenizer.tokenize(reader, view) && view.hasGraph()) {
+				if (runGraph.matches(view, QuadView.GRAPH)) {
+					return false;
+				}
+				runGraph.set(view, QuadView.GRAPH);
+				pending = true;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean inRun() {
+		if (!tokenizer.tokenize(reader, view) || !view.hasGraph()) {
+			return true;
+		}
+		if (!runGraph.isSet()) {
+			runGraph.set(view, QuadView.GRAPH);
+			return true;
+		}
+		return runGraph.matches(view, QuadView.GRAPH);
+	}
+
+	private boolean finish() throws IOException {
+		done = true;
+		reader.close();
+		return false;
+	}
+
+	public InputSplit getSplit() {
+		return split;
+	}
+
+	@Override
+	public byte[] buffer() {
+		return reader.buffer();
+	}
+
+	@Override
+	public int start() {
+		return reader.start();
+	}
+
+	@Override
+	public int end() {
+		return reader.end();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (reader != null && !done) {
+			done = true;
+			reader.close();
+		}
+	}
+}
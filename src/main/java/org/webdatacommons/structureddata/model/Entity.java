@@ -1,5 +1,6 @@
 package org.webdatacommons.structureddata.model;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -105,24 +106,72 @@ public class Entity {
 
 	/**
 	 * Writes an entity back into lines representing quads. Internally makes use
-	 * of {@link Entity#toQuads()}.
+	 * of {@link Entity#writeTo(Appendable)}.
 	 * 
 	 * @return String with all quads representing the Entity separated by \n.
 	 */
 	public String toLines() {
-		String output = "";
-		for (Quad q : toQuads()) {
-			output += q.toLine();
+		StringBuilder sb = new StringBuilder(128 * (getPropertyCount() + 1));
+		try {
+			writeTo(sb);
+		} catch (IOException e) {
+			// not thrown by a StringBuilder
+			throw new IllegalStateException(e);
 		}
-		return output;
+		return sb.toString();
 	}
 
 	public String toTripleLines() {
-		String output = "";
-		for (Quad q : toQuads()) {
-			output += q.toNTripleFormat() + " .\n";
+		StringBuilder sb = new StringBuilder(96 * (getPropertyCount() + 1));
+		try {
+			writeTriplesTo(sb);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
 		}
-		return output;
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the quads of the entity as N-Quads lines, straight from the
+	 * properties without creating {@link Quad}s. The order is the one of
+	 * {@link #toQuads()}.
+	 * 
+	 * @param out
+	 *            e.g. a {@link StringBuilder} or {@link java.io.Writer}
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		write(out, true);
+	}
+
+	/**
+	 * Writes the quads of the entity as N-Triples lines, without the graph.
+	 */
+	public void writeTriplesTo(Appendable out) throws IOException {
+		write(out, false);
+	}
+
+	private void write(Appendable out, boolean withGraph) throws IOException {
+		if (type != null) {
+			writeLine(out, EntityFileLoader.TYPEPROP, type, withGraph);
+		}
+		for (Map.Entry<String, List<NodeTrait>> property : properties.entrySet()) {
+			for (NodeTrait n : property.getValue()) {
+				writeLine(out, property.getKey(), n, withGraph);
+			}
+		}
+	}
+
+	private void writeLine(Appendable out, String property, NodeTrait value, boolean withGraph) throws IOException {
+		NTriples.appendNode(out, subject);
+		out.append(' ');
+		NTriples.appendIri(out, property);
+		out.append(' ');
+		NTriples.appendNode(out, value);
+		if (withGraph && graph != null) {
+			out.append(' ');
+			NTriples.appendIri(out, graph);
+		}
+		out.append(" .\n");
 	}
 
 	@SuppressWarnings("unused")
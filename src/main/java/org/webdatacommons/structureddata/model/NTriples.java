@@ -0,0 +1,107 @@
+package org.webdatacommons.structureddata.model;
+
+import java.io.IOException;
+
+import ldif.entity.Node;
+import ldif.entity.NodeTrait;
+
+/**
+ * Appends the terms of quads in N-Triples syntax to an {@link Appendable},
+ * without creating intermediate {@link String}s.
+ *
+ */
+class NTriples {
+
+	private NTriples() {
+	}
+
+	static void appendIri(Appendable out, CharSequence iri) throws IOException {
+		out.append('<').append(iri).append('>');
+	}
+
+	static void appendNode(Appendable out, NodeTrait node) throws IOException {
+		Node.NodeType type = node.nodeType();
+		if (type == null) {
+			appendUntypedNode(out, node);
+			return;
+		}
+		switch (type) {
+		case UriNode:
+			appendIri(out, node.value());
+			break;
+		case BlankNode:
+			out.append("_:").append(node.value());
+			break;
+		case TypedLiteral:
+			appendLiteral(out, node.value());
+			out.append("^^");
+			appendIri(out, node.datatypeOrLanguage());
+			break;
+		case LanguageLiteral:
+			appendLiteral(out, node.value());
+			out.append('@').append(node.datatypeOrLanguage());
+			break;
+		default:
+			appendLiteral(out, node.value());
+		}
+	}
+
+	// fallback for nodes without a type: whether the suffix of a literal is a
+	// datatype or a language is guessed, datatypes are IRIs and language tags
+	// never contain a colon
+	private static void appendUntypedNode(Appendable out, NodeTrait node) throws IOException {
+		if (node.isUriNode()) {
+			appendIri(out, node.value());
+		} else if (node.isBlankNode()) {
+			out.append("_:").append(node.value());
+		} else {
+			appendLiteral(out, node.value());
+			String dl = node.datatypeOrLanguage();
+			if (dl != null && dl.length() > 0) {
+				if (dl.indexOf(':') >= 0) {
+					out.append("^^");
+					appendIri(out, dl);
+				} else {
+					out.append('@').append(dl);
+				}
+			}
+		}
+	}
+
+	private static void appendLiteral(Appendable out, CharSequence value) throws IOException {
+		out.append('"');
+		appendEscaped(out, value);
+		out.append('"');
+	}
+
+	// the escape sequences resolved by the parsers
+	static void appendEscaped(Appendable out, CharSequence value) throws IOException {
+		int from = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			String escape;
+			switch (c) {
+			case '\\':
+				escape = "\\\\";
+				break;
+			case '"':
+				escape = "\\\"";
+				break;
+			case '\n':
+				escape = "\\n";
+				break;
+			case '\r':
+				escape = "\\r";
+				break;
+			case '\t':
+				escape = "\\t";
+				break;
+			default:
+				continue;
+			}
+			out.append(value, from, i).append(escape);
+			from = i + 1;
+		}
+		out.append(value, from, value.length());
+	}
+}
@@ -1,5 +1,6 @@
 package org.webdatacommons.structureddata.model;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -92,4 +93,59 @@ public class ShallowEntity {
 		return properties;
 	}
 
+	/**
+	 * Writes the entity as N-Quads lines. The values of the properties are
+	 * written as they are, i.e. they are expected in N-Triples syntax, as
+	 * created by {@link EntityFileLoader#loadEntityFromQuadsForConversion}.
+	 * 
+	 * @param out
+	 *            e.g. a {@link StringBuilder} or {@link java.io.Writer}
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		write(out, true);
+	}
+
+	/**
+	 * Writes the entity as N-Triples lines, without the graph.
+	 */
+	public void writeTriplesTo(Appendable out) throws IOException {
+		write(out, false);
+	}
+
+	private void write(Appendable out, boolean withGraph) throws IOException {
+		if (type != null) {
+			writeLine(out, EntityFileLoader.TYPEPROP, type, true, withGraph);
+		}
+		for (Map.Entry<String, List<String>> property : properties.entrySet()) {
+			for (String n : property.getValue()) {
+				writeLine(out, property.getKey(), n, false, withGraph);
+			}
+		}
+	}
+
+	// the type is stored without the delimiters of its IRI
+	private void writeLine(Appendable out, String property, String value, boolean iri, boolean withGraph)
+			throws IOException {
+		// the subject is stored without its N-Triples delimiters, blank node
+		// labels do not contain a colon
+		if (subject.indexOf(':') >= 0) {
+			NTriples.appendIri(out, subject);
+		} else {
+			out.append("_:").append(subject);
+		}
+		out.append(' ');
+		NTriples.appendIri(out, property);
+		out.append(' ');
+		if (iri) {
+			NTriples.appendIri(out, value);
+		} else {
+			out.append(value);
+		}
+		if (withGraph && graph != null) {
+			out.append(' ');
+			NTriples.appendIri(out, graph);
+		}
+		out.append(" .\n");
+	}
+
 }
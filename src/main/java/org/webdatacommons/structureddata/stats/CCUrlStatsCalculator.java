@@ -3,13 +3,19 @@ package org.webdatacommons.structureddata.stats;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+import org.webdatacommons.structureddata.io.OutputStreamFactory;
 import org.webdatacommons.structureddata.util.DomainUtil;
+import org.webdatacommons.structureddata.util.PartialAccumulator;
+import org.webdatacommons.structureddata.util.PipelineMetrics;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Counter;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Stage;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -20,8 +26,6 @@ import com.beust.jcommander.converters.FileConverter;
 import de.dwslab.dwslib.collections.MapUtils;
 import de.dwslab.dwslib.framework.Processor;
 import de.dwslab.dwslib.models.SortingOrderTypes;
-import de.dwslab.dwslib.util.io.InputUtil;
-import de.dwslab.dwslib.util.io.OutputUtil;
 
 /**
  * This class calculates the statistics which are necessary for the WDC
@@ -40,8 +44,9 @@ import de.dwslab.dwslib.util.io.OutputUtil;
 public class CCUrlStatsCalculator extends Processor<File> {
 
 	//TODO think about more useful stats for CC (e.g., TLD distribution)
-	private HashMap<String, Integer> domainUrlCountMap = new HashMap<String, Integer>();
-	private long urlCount = 0;
+	// the domain URL counts of the files, merged after all files are processed
+	private PartialAccumulator<HashMap<String, Integer>> domainUrlCounts;
+	private LongAdder urlCount = new LongAdder();
 
 	@Parameter(names = { "-out",
 			"-outputDir" }, required = true, description = "Folder where the outputfile(s) are written to.", converter = FileConverter.class)
@@ -62,6 +67,7 @@ public class CCUrlStatsCalculator extends Processor<File> {
 				files.add(f);
 			}
 		}
+		PipelineMetrics.addExpectedInput(files);
 		return files;
 	}
 
@@ -70,35 +76,56 @@ public class CCUrlStatsCalculator extends Processor<File> {
 		return threads;
 	}
 
+	@Override
+	protected void beforeProcess() {
+		domainUrlCounts = new PartialAccumulator<HashMap<String, Integer>>(CCUrlStatsCalculator::addDomainCounts,
+				threads);
+	}
+
 	@Override
 	protected void afterProcess() {
 		System.out.println("Writing output ...");
-		File outputFile = new File(outputDirectory, "ccDomainUrl.stats.gz");
+		File outputFile = OutputStreamFactory.getFile(outputDirectory, "ccDomainUrl.stats");
 		try {
-			BufferedWriter bw = OutputUtil.getGZIPBufferedWriter(outputFile);
+			long start = System.nanoTime();
+			HashMap<String, Integer> domainUrlCountMap = domainUrlCounts.finish(threads);
+			if (domainUrlCountMap == null) {
+				domainUrlCountMap = new HashMap<String, Integer>();
+			}
+			long merged = System.nanoTime();
+			PipelineMetrics.addTime(Stage.MERGE, merged - start);
+			BufferedWriter bw = OutputStreamFactory.getBufferedWriter(outputFile);
 			Map<String, Integer> sortedMap = MapUtils.sortByValue(domainUrlCountMap, SortingOrderTypes.DESCENDING);
 			for (String domain : sortedMap.keySet()) {
 				bw.write(domain + "\t" + sortedMap.get(domain) + "\n");
 			}
 
 			bw.close();
-		} catch (IOException e) {
+			PipelineMetrics.addTime(Stage.WRITE, System.nanoTime() - merged);
+		} catch (Exception e) {
 			e.printStackTrace();
 		}
 		System.out.println("... done writing.");
-		System.out.println("Found " + urlCount + " URLs within the files.");
+		System.out.println("Found " + urlCount.sum() + " URLs within the files.");
+		System.out.println("PLD cache: " + DomainUtil.getCacheStats());
 	}
 
 	@Override
 	protected void process(File object) throws Exception {
-		BufferedReader br = InputUtil.getBufferedReader(object);
+		BufferedReader br = InputStreamFactory.getBufferedReader(object);
 		HashMap<String, Integer> domainUrlCountMap = new HashMap<String, Integer>();
 		long urlCount = 0;
 		String line ="";
+		// only the PLDs of some URLs are timed
+		PipelineMetrics.Sampler sampler = new PipelineMetrics.Sampler(Stage.PLD, Counter.LINES);
 		while ((line=br.readLine())!=null) {
 			String url = line.trim();
 			urlCount++;
+			boolean timed = sampler.start();
 			String domain = DomainUtil.getPayLevelDomainFromWholeURL(url);
+			if (timed) {
+				sampler.stop();
+			}
 			// domain should never be null, as during the extraction this is
 			// already handled.
 			if (domain != null) {
@@ -111,37 +138,37 @@ public class CCUrlStatsCalculator extends Processor<File> {
 			}
 		}
 		br.close();
+		sampler.flush();
+		PipelineMetrics.add(Counter.PAGES, urlCount);
 		// now we add the local stats to the global stats
-		increaseUrlCount(urlCount);
-		addDomainCounts(domainUrlCountMap);
+		this.urlCount.add(urlCount);
+		long start = System.nanoTime();
+		domainUrlCounts.add(domainUrlCountMap);
+		PipelineMetrics.addTime(Stage.MERGE, System.nanoTime() - start);
+		PipelineMetrics.increment(Counter.INPUT_FILES);
 	}
 
 	/**
-	 * Increases the URL Count by the given count. Makes sure that this is
-	 * synchronized over all threads.
+	 * Adds the domains and counts of one thread to those of another thread.
+	 * The smaller map is added to the larger one.
 	 * 
-	 * @param count
-	 *            which should be added.
+	 * @return the map containing the counts of both
 	 */
-	private synchronized void increaseUrlCount(long count) {
-		this.urlCount += count;
-	}
-
-	/**
-	 * Adds the domains and counts from a thread to the global domain URL count.
-	 * 
-	 * @param domainUrlCountMap
-	 *            the local/thread-based domain url counts
-	 */
-	private synchronized void addDomainCounts(HashMap<String, Integer> domainUrlCountMap) {
-		for (String domain : domainUrlCountMap.keySet()) {
-			Integer count = this.domainUrlCountMap.get(domain);
+	private static HashMap<String, Integer> addDomainCounts(HashMap<String, Integer> a, HashMap<String, Integer> b) {
+		if (a.size() < b.size()) {
+			HashMap<String, Integer> tmp = a;
+			a = b;
+			b = tmp;
+		}
+		for (String domain : b.keySet()) {
+			Integer count = a.get(domain);
 			if (count == null) {
 				count = 0;
 			}
-			count += domainUrlCountMap.get(domain);
-			this.domainUrlCountMap.put(domain, count);
+			count += b.get(domain);
+			a.put(domain, count);
 		}
+		return a;
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,209 @@
+package org.webdatacommons.structureddata.stats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.webdatacommons.structureddata.io.MeteredInputStream;
+import org.webdatacommons.structureddata.util.CheckpointStore;
+
+/**
+ * Binary file with the complete, mergeable stats of a run (counts and the
+ * domains or their sketches), written with -partial. The records are sorted
+ * by their key (e.g. the class or the domain), so the files of several runs
+ * can be merged by reading each of them once, see {@link StatsMerger}.
+ * <p>
+ * A file consists of a header (kind and configuration of the stats), a
+ * preamble of the kind and the records, each a key followed by its payload.
+ * Lists of sorted strings (e.g. the domains of a class) share the prefix with
+ * the previous string.
+ *
+ */
+public class PartialStatsFile {
+
+	public static final String SUFFIX = ".partial";
+
+	private static final int MAGIC = 0x57444350;
+	private static final int VERSION = 2;
+
+	/**
+	 * Writes the records of a file in the order of their keys.
+	 */
+	public static class Writer implements Closeable {
+		private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		private final DataOutputStream out;
+		private String lastKey = null;
+
+		/**
+		 * Writes the header, the preamble follows directly.
+		 */
+		public Writer(File file, String kind, String config) throws IOException {
+			out = new DataOutputStream(new BufferedOutputStream(
+					new DeflaterOutputStream(new FileOutputStream(file), deflater, 64 * 1024), 64 * 1024));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			CheckpointStore.writeString(out, kind);
+			CheckpointStore.writeString(out, config);
+		}
+
+		public DataOutputStream out() {
+			return out;
+		}
+
+		/**
+		 * Starts the next record, its payload follows.
+		 */
+		public void key(String key) throws IOException {
+			if (lastKey != null && lastKey.compareTo(key) >= 0) {
+				throw new IllegalArgumentException("Keys not sorted: " + lastKey + ", " + key);
+			}
+			lastKey = key;
+			out.writeBoolean(true);
+			CheckpointStore.writeString(out, key);
+		}
+
+		/**
+		 * Writes strings in ascending order.
+		 */
+		public void sortedStrings(String[] strings) throws IOException {
+			CheckpointStore.writeVarInt(out, strings.length);
+			String last = "";
+			for (String s : strings) {
+				int shared = 0;
+				int max = Math.min(last.length(), s.length());
+				while (shared < max && last.charAt(shared) == s.charAt(shared)) {
+					shared++;
+				}
+				CheckpointStore.writeVarInt(out, shared);
+				CheckpointStore.writeString(out, s.substring(shared));
+				last = s;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				out.writeBoolean(false);
+				out.close();
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+
+	/**
+	 * Reads the records of a file one after another.
+	 */
+	public static class Reader implements Closeable {
+		private final File file;
+		private final DataInputStream in;
+		private final String kind;
+		private final String config;
+		private String key = null;
+
+		/**
+		 * Reads the header, the preamble follows directly.
+		 */
+		public Reader(File file) throws IOException {
+			this.file = file;
+			in = new DataInputStream(new BufferedInputStream(
+					new InflaterInputStream(MeteredInputStream.counting(new FileInputStream(file))), 64 * 1024));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				in.close();
+				throw new IOException(file + " is no partial stats file of this version.");
+			}
+			kind = CheckpointStore.readString(in);
+			config = CheckpointStore.readString(in);
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public String getKind() {
+			return kind;
+		}
+
+		public String getConfig() {
+			return config;
+		}
+
+		public DataInputStream in() {
+			return in;
+		}
+
+		/**
+		 * Moves to the next record, the payload of the current one has to be
+		 * read completely before.
+		 *
+		 * @return false if there is no further record
+		 */
+		public boolean next() throws IOException {
+			key = in.readBoolean() ? CheckpointStore.readString(in) : null;
+			return key != null;
+		}
+
+		/**
+		 * @return the key of the current record, null after the last one
+		 */
+		public String key() {
+			return key;
+		}
+
+		/**
+		 * @return the strings written with {@link Writer#sortedStrings}, which
+		 *         are read while iterating them
+		 */
+		public SortedStrings sortedStrings() throws IOException {
+			return new SortedStrings(in, CheckpointStore.readVarInt(in));
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/**
+	 * Lazily read list of sorted strings.
+	 */
+	public static class SortedStrings {
+		private final DataInputStream in;
+		private int remaining;
+		private String current = "";
+
+		SortedStrings(DataInputStream in, int size) {
+			this.in = in;
+			this.remaining = size;
+		}
+
+		/**
+		 * @return the next string or null after the last one
+		 */
+		public String next() throws IOException {
+			if (remaining == 0) {
+				return null;
+			}
+			remaining--;
+			int shared = CheckpointStore.readVarInt(in);
+			if (shared > current.length()) {
+				throw new IOException("Malformed string list");
+			}
+			current = current.substring(0, shared) + CheckpointStore.readString(in);
+			return current;
+		}
+
+		public String current() {
+			return current;
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package org.webdatacommons.structureddata.stats;
+
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.webdatacommons.structureddata.io.OutputStreamFactory;
+import org.webdatacommons.structureddata.stats.WDCUrlStatsCalculator.UrlStats;
+import org.webdatacommons.structureddata.util.CheckpointStore;
+import org.webdatacommons.structureddata.util.HyperLogLog;
+import org.webdatacommons.structureddata.util.PipelineMetrics;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Counter;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Stage;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.Parameters;
+import com.beust.jcommander.converters.CommaParameterSplitter;
+import com.beust.jcommander.converters.FileConverter;
+
+import de.dwslab.dwslib.framework.Processor;
+
+/**
+ * Merges the partial stats of several runs of {@link WDCQuadStatsCalculator}
+ * and {@link WDCUrlStatsCalculator} (written with -partial), e.g. of runs on
+ * different machines with different parts of an extraction, into the usual
+ * stats files. The result is the same as of one run over all parts.
+ * <p>
+ * Each partial file (e.g. class.partial) is merged with the files of the same
+ * name of the other runs. As the records of all files are sorted, the files
+ * are read at the same time and each record is merged as soon as all files
+ * moved past its key. For the vocabularies, classes and properties, only the
+ * counts of the merged records are kept until they are sorted and written,
+ * the domains are merged record by record.
+ *
+ */
+@Parameters(commandDescription = "Merges the partial stats (-partial) of several runs of wdcquadstats or wdcurlstats.")
+public class StatsMerger extends Processor<File> {
+
+	@Parameter(names = { "-out",
+			"-outputDir" }, required = true, description = "Folder where the outputfile(s) are written to.", converter = FileConverter.class)
+	private File outputDirectory;
+
+	@Parameter(names = { "-in",
+			"-inputDirs" }, required = true, description = "Folders with the partial stats of the runs (separated by \",\").", splitter = CommaParameterSplitter.class, converter = FileConverter.class)
+	private List<File> inputDirectories = new ArrayList<File>();
+
+	@Parameter(names = "-threads", required = true, description = "Number of threads.")
+	private Integer threads;
+
+	public StatsMerger() {
+	}
+
+	/**
+	 * Merges the partial stats of the given folders into the output folder.
+	 */
+	public StatsMerger(List<File> inputDirectories, File outputDirectory, int threads) {
+		this.inputDirectories = inputDirectories;
+		this.outputDirectory = outputDirectory;
+		this.threads = threads;
+	}
+
+	@Override
+	protected List<File> fillListToProcess() {
+		List<File> files = new ArrayList<File>();
+		for (File f : inputDirectories.get(0).listFiles()) {
+			if (f.isFile() && f.getName().endsWith(PartialStatsFile.SUFFIX)) {
+				files.add(f);
+			}
+		}
+		for (File dir : inputDirectories) {
+			for (File f : files) {
+				File partial = new File(dir, f.getName());
+				if (partial.isFile()) {
+					PipelineMetrics.addExpectedInput(Collections.singletonList(partial));
+				}
+			}
+		}
+		return files;
+	}
+
+	@Override
+	protected int getNumberOfThreads() {
+		return this.threads;
+	}
+
+	@Override
+	protected void process(File object) throws Exception {
+		String name = object.getName();
+		List<PartialStatsFile.Reader> readers = new ArrayList<PartialStatsFile.Reader>();
+		try {
+			for (File dir : inputDirectories) {
+				File f = new File(dir, name);
+				if (!f.isFile()) {
+					System.out.println("No " + name + " in " + dir + ", cannot merge " + name + ".");
+					return;
+				}
+				PartialStatsFile.Reader reader = new PartialStatsFile.Reader(f);
+				readers.add(reader);
+				if (!reader.getKind().equals(readers.get(0).getKind())
+						|| !reader.getConfig().equals(readers.get(0).getConfig())) {
+					System.out.println(f + " was written with a different configuration (" + reader.getConfig()
+							+ ") than " + readers.get(0).getFile() + " (" + readers.get(0).getConfig()
+							+ "), cannot merge " + name + ".");
+					return;
+				}
+			}
+			long startTime = System.currentTimeMillis();
+			String kind = readers.get(0).getKind();
+			String baseName = name.substring(0, name.length() - PartialStatsFile.SUFFIX.length());
+			if (kind.equals("url")) {
+				mergeUrls(readers);
+			} else {
+				mergeTerms(readers, kind, baseName);
+			}
+			// includes the writing of the merged stats
+			PipelineMetrics.addTime(Stage.MERGE, (System.currentTimeMillis() - startTime) * 1000000L);
+			PipelineMetrics.increment(Counter.INPUT_FILES);
+			System.out.println("Merged " + name + " of " + readers.size() + " runs in "
+					+ (System.currentTimeMillis() - startTime) + " ms.");
+		} finally {
+			for (PartialStatsFile.Reader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Merged counts of a vocabulary, class or property.
+	 */
+	private static class TermStats {
+		final String term;
+		long numEntities = 0;
+		long numUrls = 0;
+		long numDomains = 0;
+		// error bound of the estimated domains, -1 if exact
+		long numDomainsError = -1;
+
+		TermStats(String term) {
+			this.term = term;
+		}
+	}
+
+	// returns the readers at the smallest key and removes them from the queue
+	private static List<PartialStatsFile.Reader> nextGroup(PriorityQueue<PartialStatsFile.Reader> queue) {
+		List<PartialStatsFile.Reader> group = new ArrayList<PartialStatsFile.Reader>();
+		String key = queue.peek().key();
+		while (!queue.isEmpty() && queue.peek().key().equals(key)) {
+			group.add(queue.poll());
+		}
+		return group;
+	}
+
+	private static PriorityQueue<PartialStatsFile.Reader> startQueue(List<PartialStatsFile.Reader> readers)
+			throws IOException {
+		PriorityQueue<PartialStatsFile.Reader> queue = new PriorityQueue<PartialStatsFile.Reader>(readers.size(),
+				Comparator.comparing(PartialStatsFile.Reader::key));
+		for (PartialStatsFile.Reader reader : readers) {
+			if (reader.next()) {
+				queue.add(reader);
+			}
+		}
+		return queue;
+	}
+
+	private static void advance(List<PartialStatsFile.Reader> group, PriorityQueue<PartialStatsFile.Reader> queue)
+			throws IOException {
+		for (PartialStatsFile.Reader reader : group) {
+			if (reader.next()) {
+				queue.add(reader);
+			}
+		}
+	}
+
+	private void mergeTerms(List<PartialStatsFile.Reader> readers, String kind, String baseName)
+			throws IOException {
+		boolean approxDomains = false;
+		long untypedSubjects = 0;
+		for (int i = 0; i < readers.size(); i++) {
+			boolean approx = readers.get(i).in().readBoolean();
+			if (i == 0) {
+				approxDomains = approx;
+			} else if (approx != approxDomains) {
+				throw new IOException("Cannot merge exact and approximate domains of " + readers.get(i).getFile());
+			}
+			untypedSubjects += readers.get(i).in().readLong();
+		}
+		// the domains of the classes are written while they are merged, in
+		// the order of the classes
+		BufferedWriter domainWriter = null;
+		if (kind.equals("class") && !approxDomains) {
+			domainWriter = OutputStreamFactory.getBufferedWriter(outputDirectory, baseName + ".domains");
+		}
+		List<TermStats> merged = new ArrayList<TermStats>();
+		PriorityQueue<PartialStatsFile.Reader> queue = startQueue(readers);
+		PriorityQueue<PartialStatsFile.SortedStrings> domainQueue = new PriorityQueue<PartialStatsFile.SortedStrings>(
+				readers.size(), Comparator.comparing(PartialStatsFile.SortedStrings::current));
+		while (!queue.isEmpty()) {
+			List<PartialStatsFile.Reader> group = nextGroup(queue);
+			TermStats ts = new TermStats(group.get(0).key());
+			HyperLogLog sketch = null;
+			for (PartialStatsFile.Reader reader : group) {
+				DataInputStream in = reader.in();
+				ts.numEntities += in.readLong();
+				ts.numUrls += in.readLong();
+				if (approxDomains) {
+					HyperLogLog other = HyperLogLog.read(in);
+					if (sketch == null) {
+						sketch = other;
+					} else {
+						sketch.merge(other);
+					}
+				} else {
+					PartialStatsFile.SortedStrings domains = reader.sortedStrings();
+					if (domains.next() != null) {
+						domainQueue.add(domains);
+					}
+				}
+			}
+			if (approxDomains) {
+				ts.numDomains = sketch.cardinality();
+				ts.numDomainsError = (long) Math.ceil(2 * ts.numDomains * sketch.relativeError());
+			} else {
+				// the union of the sorted domains of all runs
+				if (domainWriter != null) {
+					domainWriter.write(ts.term);
+				}
+				String last = null;
+				while (!domainQueue.isEmpty()) {
+					PartialStatsFile.SortedStrings domains = domainQueue.poll();
+					String domain = domains.current();
+					if (!domain.equals(last)) {
+						ts.numDomains++;
+						if (domainWriter != null) {
+							domainWriter.write("\t" + domain);
+						}
+						last = domain;
+					}
+					if (domains.next() != null) {
+						domainQueue.add(domains);
+					}
+				}
+				if (domainWriter != null) {
+					domainWriter.write("\n");
+				}
+			}
+			merged.add(ts);
+			advance(group, queue);
+		}
+		if (domainWriter != null) {
+			domainWriter.close();
+		}
+
+		// the same order as of the stats of a single run
+		Collections.sort(merged, (a, b) -> Long.compare(b.numDomains, a.numDomains));
+		BufferedWriter writer = OutputStreamFactory.getBufferedWriter(outputDirectory, baseName + ".stats");
+		writer.write(kind + "\tnumEntities\tnumUrls\tnumDomains" + (approxDomains ? "\tnumDomainsError" : "") + "\n");
+		for (TermStats ts : merged) {
+			writer.write(ts.term + "\t" + ts.numEntities + "\t" + ts.numUrls + "\t" + ts.numDomains
+					+ (approxDomains ? "\t" + ts.numDomainsError : "") + "\n");
+		}
+		writer.close();
+		// every file of the terms has the count, it is reported once
+		if (kind.equals("class")) {
+			System.out.println("Subject without a type: " + untypedSubjects);
+		}
+	}
+
+	// the stats files are sorted by the counts of the domains, so all counts
+	// are collected like in a single run
+	private void mergeUrls(List<PartialStatsFile.Reader> readers) throws IOException {
+		UrlStats stats = new UrlStats();
+		HashMap<PartialStatsFile.Reader, String[]> formatsOfReader = new HashMap<PartialStatsFile.Reader, String[]>();
+		for (PartialStatsFile.Reader reader : readers) {
+			DataInputStream in = reader.in();
+			stats.urlCount += in.readLong();
+			String[] formats = new String[CheckpointStore.readVarInt(in)];
+			for (int i = 0; i < formats.length; i++) {
+				formats[i] = CheckpointStore.readString(in);
+				if (!stats.formatDomainTripleMap.containsKey(formats[i])) {
+					stats.formatDomainUrlWTripleMap.put(formats[i], new HashMap<String, Integer>());
+					stats.formatDomainTripleMap.put(formats[i], new HashMap<String, Integer>());
+				}
+			}
+			formatsOfReader.put(reader, formats);
+		}
+		PriorityQueue<PartialStatsFile.Reader> queue = startQueue(readers);
+		while (!queue.isEmpty()) {
+			List<PartialStatsFile.Reader> group = nextGroup(queue);
+			String domain = group.get(0).key();
+			for (PartialStatsFile.Reader reader : group) {
+				DataInputStream in = reader.in();
+				add(stats.domainUrlMap, domain, in.readInt());
+				for (String format : formatsOfReader.get(reader)) {
+					add(stats.formatDomainUrlWTripleMap.get(format), domain, in.readInt());
+					add(stats.formatDomainTripleMap.get(format), domain, in.readInt());
+				}
+			}
+			advance(group, queue);
+		}
+		WDCUrlStatsCalculator.writeStats(stats, outputDirectory);
+	}
+
+	private static void add(HashMap<String, Integer> map, String domain, int count) {
+		if (count > 0) {
+			Integer c = map.get(domain);
+			map.put(domain, c == null ? count : c + count);
+		}
+	}
+
+	public static void main(String[] args) {
+		StatsMerger merger = new StatsMerger();
+		try {
+			new JCommander(merger, args);
+			merger.process();
+		} catch (ParameterException pe) {
+			pe.printStackTrace();
+			new JCommander(merger).usage();
+		}
+	}
+}
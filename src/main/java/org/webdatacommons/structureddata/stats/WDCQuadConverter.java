@@ -5,11 +5,10 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -26,13 +25,15 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 import java.util.PriorityQueue;
 import java.util.Scanner;
 import java.util.Set;
 
 import org.json.JSONObject;
 import org.webdatacommons.structureddata.Master;
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+import org.webdatacommons.structureddata.io.OutputCodec;
+import org.webdatacommons.structureddata.io.OutputStreamFactory;
 import org.webdatacommons.structureddata.model.Entity;
 import org.webdatacommons.structureddata.model.EntityFileLoader;
 import org.webdatacommons.structureddata.model.ShallowEntity;
@@ -52,8 +53,6 @@ import com.opencsv.CSVWriter;
 import de.dwslab.dwslib.collections.MapUtils;
 import de.dwslab.dwslib.framework.Processor;
 import de.dwslab.dwslib.models.SortingOrderTypes;
-import de.dwslab.dwslib.util.io.InputUtil;
-import de.dwslab.dwslib.util.io.OutputUtil;
 import ldif.entity.NodeTrait;
 import ldif.local.datasources.dump.QuadFileLoader;
 import ldif.runtime.Quad;
@@ -100,6 +99,9 @@ public class WDCQuadConverter extends Processor<File> {
 	@Parameter(names = { "-multiplePropValues",
 	"-multiplePropertyValues" }, required = false, description = "Indicates if the converted result will contain all property values (true) for a certain subject or if one value per property is enough (false). ", arity = 1)
 	private boolean multiplePropValues = true;
+
+	@Parameter(names = "-fastParse", required = false, description = "Sorts the input with the byte-level tokenizer instead of the ldif QuadFileLoader.")
+	private boolean fastParse = false;
 	
 
 
@@ -144,7 +146,7 @@ public class WDCQuadConverter extends Processor<File> {
 
 		QuadFileLoader qfl = new QuadFileLoader();
 		EntityFileLoader etl = new EntityFileLoader();
-		BufferedReader br = InputUtil.getBufferedReader(object);
+		BufferedReader br = InputStreamFactory.getBufferedReader(object);
 		
 		String currentURL = "";
 		NodeTrait currentSubject = null;
@@ -316,7 +318,7 @@ public class WDCQuadConverter extends Processor<File> {
 			File file = new File (outputDirectory,"SORTED_"+fileName);
 			file.delete();
 			
-			convertedWriter = OutputUtil.getGZIPBufferedWriter(new File(outputDirectory,
+			convertedWriter = OutputStreamFactory.getBufferedWriter(new File(outputDirectory,
 					(filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + outputFile));
 			
 			if (convertType.equalsIgnoreCase("JSON")){
@@ -402,7 +404,7 @@ public class WDCQuadConverter extends Processor<File> {
 	}
 
 
-	private String convertToJSON(ShallowEntity e)  {
+	String convertToJSON(ShallowEntity e)  {
 		
 		try{
 			
@@ -421,11 +423,19 @@ public class WDCQuadConverter extends Processor<File> {
 	private File sortFile(File object) throws FileNotFoundException, IOException{
 		
 		File output = new File(this.outputDirectory, "SORTED_"+object.getName());
-		BufferedWriter bw = OutputUtil.getGZIPBufferedWriter(output);
+		// only read by this command
+		OutputCodec codec = OutputStreamFactory.getIntermediateCodec();
+		if (fastParse) {
+			OutputStream os = OutputStreamFactory.getOutputStream(output, codec);
+			QuadSorter.sortGraphBlocks(InputStreamFactory.getInputStream(object), os, null);
+			os.close();
+			return output;
+		}
+		BufferedWriter bw = OutputStreamFactory.getBufferedWriter(output, codec);
 		QuadFileLoader qfl = new QuadFileLoader();
 
 
-		BufferedReader br = InputUtil.getBufferedReader(object);
+		BufferedReader br = InputStreamFactory.getBufferedReader(object);
 		String currentURL = "";
 		Map<String, ArrayList<Quad>> quadList = new HashMap<String, ArrayList<Quad>>();
 		String line = "";
@@ -474,27 +484,6 @@ public class WDCQuadConverter extends Processor<File> {
 		bw.close();
 		return output;
 	}
-	/**
-	 * Checks if the predicate is a type predicate
-	 * 
-	 * @param predicate
-	 *            the predicate
-	 * @return true if its a type predicate, false if not.
-	 */
-	private boolean isType(String predicate) {
-		if (useRegex) {
-			for (String pattern : typeProperties) {
-				if (predicate.matches(pattern)) {
-					return true;
-				}
-			}
-		} else {
-			if (typeProperties.contains(predicate)) {
-				return true;
-			}
-		}
-		return false;
-	}
 	
 	@Override
 	protected void beforeProcess(){
@@ -1,23 +1,50 @@
 package org.webdatacommons.structureddata.stats;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.ZipInputStream;
-import java.text.Normalizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.webdatacommons.structureddata.io.InputSplit;
+import org.webdatacommons.structureddata.io.InputSplitter;
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+import org.webdatacommons.structureddata.io.LineReader;
+import org.webdatacommons.structureddata.io.LineSource;
+import org.webdatacommons.structureddata.io.NQuadsTokenizer;
+import org.webdatacommons.structureddata.io.OutputStreamFactory;
+import org.webdatacommons.structureddata.io.QuadView;
+import org.webdatacommons.structureddata.io.SplitLineReader;
+import org.webdatacommons.structureddata.util.CheckpointStore;
+import org.webdatacommons.structureddata.util.ExternalQuadSorter;
 import org.webdatacommons.structureddata.util.DomainUtil;
+import org.webdatacommons.structureddata.util.FileTaskQueue;
+import org.webdatacommons.structureddata.util.HyperLogLog;
+import org.webdatacommons.structureddata.util.IntObjectHashMap;
+import org.webdatacommons.structureddata.util.LineSanitizer;
+import org.webdatacommons.structureddata.util.LongIntHashMap;
+import org.webdatacommons.structureddata.util.PartialAccumulator;
+import org.webdatacommons.structureddata.util.PipelineMetrics;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Counter;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Stage;
+import org.webdatacommons.structureddata.util.RoaringBitmap;
+import org.webdatacommons.structureddata.util.TermDictionary;
+import org.webdatacommons.structureddata.util.TypePredicateMatcher;
+import org.webdatacommons.structureddata.util.VocabularyResolver;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -29,12 +56,8 @@ import com.beust.jcommander.converters.FileConverter;
 import de.dwslab.dwslib.collections.MapUtils;
 import de.dwslab.dwslib.framework.Processor;
 import de.dwslab.dwslib.models.SortingOrderTypes;
-import de.dwslab.dwslib.util.io.InputUtil;
-import de.dwslab.dwslib.util.io.OutputUtil;
-import de.wbsg.loddesc.util.VocabularyUtils;
 import ldif.local.datasources.dump.QuadFileLoader;
 import ldif.runtime.Quad;
-import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
 /**
 * This class calculates, for a given set of quads the basic deployment
  * statistics, namely:
@@ -83,6 +106,46 @@ public class WDCQuadStatsCalculator extends Processor<File> {
 			"-typeAsRegex" }, required = false, description = "Indicates if the type properties should be handled as regex.")
 	private boolean useRegex = false;
 
+	// compiled type properties, shared by all threads
+	private TypePredicateMatcher typeMatcher;
+
+	@Parameter(names = "-fastParse", required = false, description = "Parses the quads with the byte-level tokenizer instead of the ldif QuadFileLoader.")
+	private boolean fastParse = false;
+
+	@Parameter(names = "-splits", required = false, description = "Maximal number of parts a single large input file is split into, which are processed in parallel. Requires the quads of one URL to be contiguous.")
+	private int splits = 1;
+
+	@Parameter(names = "-langTagTable", required = false, description = "File with additional language tag normalizations (tab separated tag and replacement per line).", converter = FileConverter.class)
+	private File langTagTable = null;
+
+	@Parameter(names = "-streaming", required = false, description = "Processes the quads of a URL as soon as the next URL starts, instead of reading the whole file first. Falls back to sorting the quads by URL on disk if the quads of a URL are not contiguous.")
+	private boolean streaming = false;
+
+	@Parameter(names = "-spillMemory", required = false, description = "Memory (in MB) used to sort the quads of a file by URL if the streaming mode falls back to sorting.")
+	private int spillMemory = 256;
+
+	@Parameter(names = "-spillDir", required = false, description = "Folder for the temporary files of the streaming mode (default: system temp folder).", converter = FileConverter.class)
+	private File spillDirectory = null;
+
+	@Parameter(names = "-approxDomains", required = false, description = "Estimates the number of domains per vocabulary, class and property with a HyperLogLog sketch instead of keeping all domains. Adds an error bound of the estimate (two standard errors) to the stats files and does not write class.domains.gz.")
+	private boolean approxDomains = false;
+
+	@Parameter(names = "-hllPrecision", required = false, description = "Precision of the HyperLogLog sketches (4-18). A sketch needs up to 2^precision bytes, the relative standard error is 1.04/sqrt(2^precision).")
+	private int hllPrecision = 12;
+
+	@Parameter(names = "-checkpoint", required = false, description = "Writes the stats of each input file to a checkpoint in the output folder. A restarted run skips the files with a valid checkpoint and reads their stats instead. With -workDir, the checkpoints are written to the output folder of the merged stats and shared by all processes.")
+	private boolean checkpoint = false;
+
+	@Parameter(names = "-partial", required = false, description = "Additionally writes the complete stats (with the domains or their sketches) to vocab.partial, class.partial and prop.partial, which can be merged with the stats of other runs (mergestats).")
+	private boolean partial = false;
+
+	@Parameter(names = "-workDir", required = false, description = "Shared folder of several processes working on the same input files. Each process claims input files and writes the stats of its files to this folder, the last one to finish merges them into the output folder.", converter = FileConverter.class)
+	private File workDirectory = null;
+
+	private LineSanitizer sanitizer = new LineSanitizer();
+
+	private ExecutorService splitPool;
+
 	@Override
 	protected List<File> fillListToProcess() {
 		List<File> files = new ArrayList<File>();
@@ -96,9 +159,78 @@ public class WDCQuadStatsCalculator extends Processor<File> {
 				files.add(f);
 			}
 		}
+		inputFiles = new ArrayList<File>(files);
+		if (checkpoint) {
+			CheckpointStore store = getCheckpoints();
+			for (File f : new ArrayList<File>(files)) {
+				if (store.hasCheckpoint(f)) {
+					files.remove(f);
+					resumed.add(f);
+				}
+			}
+			System.out.println("Found checkpoints of " + resumed.size() + " files, processing " + files.size()
+					+ " files.");
+		}
+		PipelineMetrics.addExpectedInput(files);
 		return files;
 	}
 
+	// input files shared with other processes, null if working alone
+	private FileTaskQueue taskQueue;
+	// all input files and the folder of the merged stats of all processes
+	private List<File> inputFiles;
+	private File mergedOutputDirectory;
+
+	// joins the other processes, the stats of this one are only a part of
+	// the stats and are written to its own folder
+	private void joinTaskQueue() {
+		try {
+			taskQueue = new FileTaskQueue(workDirectory);
+		} catch (IOException e) {
+			System.out.println("Could not join the processes of " + workDirectory);
+			e.printStackTrace();
+			System.exit(0);
+		}
+		mergedOutputDirectory = outputDirectory;
+		outputDirectory = taskQueue.getWorkerDirectory();
+		partial = true;
+		System.out.println("Working as " + taskQueue.getWorkerId() + " with the processes of " + workDirectory + ".");
+	}
+
+	// marks the files of this process as done, the last process to finish
+	// merges the stats of all processes
+	private void finishTask() throws Exception {
+		taskQueue.finish();
+		if (taskQueue.isDone(inputFiles) && taskQueue.claimMerge()) {
+			List<File> workers = taskQueue.getCompleteWorkers();
+			System.out.println("All input files are done, merging the stats of " + workers.size() + " processes.");
+			new StatsMerger(workers, mergedOutputDirectory, threads).process();
+		} else {
+			System.out.println("Done with the claimed files, the last process will merge the stats.");
+		}
+	}
+
+	// files with a valid checkpoint, which are not processed again
+	private List<File> resumed = new ArrayList<File>();
+	private CheckpointStore checkpoints;
+
+	// the worker folder of a process with -workDir is new in each run, the
+	// checkpoints are kept with the merged stats
+	private File getCheckpointParent() {
+		return mergedOutputDirectory != null ? mergedOutputDirectory : outputDirectory;
+	}
+
+	private synchronized CheckpointStore getCheckpoints() {
+		if (checkpoints == null) {
+			// the options which change the stats of a file
+			String config = "wdcquadstats types=" + typeProperties + " regex=" + useRegex + " fastParse=" + fastParse
+					+ " approxDomains=" + approxDomains + (approxDomains ? " hllPrecision=" + hllPrecision : "")
+					+ " langTagTable=" + (langTagTable != null ? langTagTable.getAbsolutePath() : "");
+			checkpoints = new CheckpointStore(new File(getCheckpointParent(), "checkpoints"), config);
+		}
+		return checkpoints;
+	}
+
 	/**
 	 * Temporary wrapper for statistics to reduce number of {@link HashMap}s in
 	 * RAM.
@@ -109,11 +241,54 @@ public class WDCQuadStatsCalculator extends Processor<File> {
 	private class StatHolder implements Comparable<StatHolder> {
 		long numEntities;
 		int numUrls;
-		HashSet<String> domains = new HashSet<String>();
+		// ids of the domains in the domain dictionary (exact mode)
+		RoaringBitmap domains;
+		// estimated domains (approximate mode)
+		HyperLogLog domainSketch;
+
+		StatHolder() {
+			if (approxDomains) {
+				domainSketch = new HyperLogLog(hllPrecision);
+			} else {
+				domains = new RoaringBitmap();
+			}
+		}
+
+		void addDomain(int domainId, long domainHash) {
+			if (domainSketch != null) {
+				domainSketch.offer(domainHash);
+			} else {
+				domains.add(domainId);
+			}
+		}
+
+		void merge(StatHolder o) {
+			if (domainSketch != null) {
+				domainSketch.merge(o.domainSketch);
+			} else {
+				domains.or(o.domains);
+			}
+			numEntities += o.numEntities;
+			numUrls += o.numUrls;
+		}
+
+		long numDomains() {
+			return domainSketch != null ? domainSketch.cardinality() : domains.cardinality();
+		}
+
+		// number of domains for the stats files, in the approximate mode with
+		// the error bound of the estimate (two standard errors, ~95%)
+		String domainColumns() {
+			if (domainSketch == null) {
+				return String.valueOf(domains.cardinality());
+			}
+			long estimate = domainSketch.cardinality();
+			return estimate + "\t" + (long) Math.ceil(2 * estimate * domainSketch.relativeError());
+		}
 
 		@Override
 		public int compareTo(StatHolder o) {
-			return  this.domains.size() - o.domains.size();
+			return Long.compare(numDomains(), o.numDomains());
 		}
 	}
 
@@ -122,339 +297,947 @@ public class WDCQuadStatsCalculator extends Processor<File> {
 		return this.threads;
 	}
 
-	private HashMap<String, StatHolder> vocabStatsMap = new HashMap<>();
-	private HashMap<String, StatHolder> classStatsMap = new HashMap<>();
-	private HashMap<String, StatHolder> propStatsMap = new HashMap<>();
-	private long errorCount = 0;
-	private long parsedLines = 0;
+	private synchronized ExecutorService getSplitPool() {
+		if (splitPool == null) {
+			splitPool = InputSplitter.newSplitPool(threads);
+		}
+		return splitPool;
+	}
+
+	@Override
+	protected void beforeProcess() {
+		if (workDirectory != null) {
+			joinTaskQueue();
+		}
+		typeMatcher = new TypePredicateMatcher(typeProperties, useRegex);
+		accumulator = new PartialAccumulator<LocalStats>((a, b) -> a.merge(b), threads);
+		if (approxDomains && (hllPrecision < HyperLogLog.MIN_PRECISION || hllPrecision > HyperLogLog.MAX_PRECISION)) {
+			System.out.println("The precision of the sketches has to be between " + HyperLogLog.MIN_PRECISION
+					+ " and " + HyperLogLog.MAX_PRECISION + ".");
+			System.exit(0);
+		}
+		if (langTagTable != null) {
+			try {
+				sanitizer = LineSanitizer.fromFile(langTagTable);
+			} catch (IOException e) {
+				System.out.println("Could not read language tag table");
+				e.printStackTrace();
+				System.exit(0);
+			}
+		}
+	}
+
+	// dictionaries of the vocabularies, classes and properties and of the pay
+	// level domains, shared by all threads
+	private final TermDictionary terms = new TermDictionary();
+	private final TermDictionary domains = new TermDictionary();
+	// vocabularies of the classes and properties by their id
+	private final VocabularyResolver vocabularies = new VocabularyResolver(terms);
+	// microdata item property, which is no hint of an untyped subject
+	private final int microdataItem = terms.getId("http://www.w3.org/1999/xhtml/microdata#item");
+
+	// maximal number of cached (class, predicate) rewrites per thread
+	private static final int MAX_REWRITES = 1 << 20;
+
+	// per-URL working state of each thread
+	private final ThreadLocal<PageScratch> scratch = ThreadLocal.withInitial(PageScratch::new);
+
+	// collects the stats of the files, which are merged after all files are
+	// processed
+	private PartialAccumulator<LocalStats> accumulator;
 
-	private HashSet<String> notype= new HashSet<String>();
-	
 	@Override
 	protected void process(File object) throws Exception {
+		if (taskQueue != null && !taskQueue.claim(object)) {
+			PipelineMetrics.removeExpectedInput(object);
+			return;
+		}
+		processFile(object);
+	}
+
+	// processes a file, which is already claimed if working with other
+	// processes
+	private void processFile(File object) throws Exception {
 		System.out.println(object.toString());
+		if (splits > 1) {
+			List<InputSplit> fileSplits = InputSplitter.split(object, splits);
+			if (fileSplits.size() > 1) {
+				System.out.println("Processing " + object.getName() + " in " + fileSplits.size() + " splits.");
+				ConcurrentLinkedQueue<LocalStats> splitStats = new ConcurrentLinkedQueue<LocalStats>();
+				InputSplitter.run(fileSplits, getSplitPool(),
+						split -> splitStats.add(processLines(() -> new SplitLineReader(split))));
+				long start = System.nanoTime();
+				LocalStats stats = splitStats.poll();
+				LocalStats other;
+				while ((other = splitStats.poll()) != null) {
+					stats = stats.merge(other);
+				}
+				PipelineMetrics.addTime(Stage.MERGE, System.nanoTime() - start);
+				finish(object, stats);
+				return;
+			}
+		}
+		finish(object, processLines(() -> new LineReader(InputStreamFactory.getInputStream(object))));
+	}
+
+	// hands over the stats of a file, they are merged without blocking the
+	// other threads
+	private void finish(File object, LocalStats stats) throws IOException {
+		long start = System.nanoTime();
+		if (checkpoint) {
+			// before the merge, which reuses the stats
+			getCheckpoints().write(object, stats::write);
+		}
+		long written = System.nanoTime();
+		PipelineMetrics.addTime(Stage.WRITE, written - start);
+		accumulator.add(stats);
+		PipelineMetrics.addTime(Stage.MERGE, System.nanoTime() - written);
+		PipelineMetrics.increment(Counter.INPUT_FILES);
+	}
+
+	// reads the stats of the files with a checkpoint, files with a broken
+	// checkpoint are processed again
+	private void resume() throws Exception {
+		if (resumed.isEmpty()) {
+			return;
+		}
+		long startTime = System.currentTimeMillis();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> loaded = new ArrayList<Future<?>>();
+		for (File f : resumed) {
+			if (taskQueue != null && !taskQueue.claim(f)) {
+				continue;
+			}
+			loaded.add(pool.submit(() -> {
+				try {
+					accumulator.add(getCheckpoints().read(f, in -> new LocalStats().read(in)));
+				} catch (IOException e) {
+					System.out.println("Could not read the checkpoint of " + f.getName() + " (" + e.getMessage()
+							+ "), processing it again.");
+					PipelineMetrics.addExpectedInput(Collections.singletonList(f));
+					// already claimed above
+					processFile(f);
+				}
+				return null;
+			}));
+		}
+		for (Future<?> f : loaded) {
+			f.get();
+		}
+		pool.shutdown();
+		System.out.println("Read " + resumed.size() + " checkpoints in " + (System.currentTimeMillis() - startTime)
+				+ " ms.");
+	}
+
+	/**
+	 * Stats of one file or split, which are merged with the stats of the other
+	 * files by the {@link PartialAccumulator}.
+	 */
+	private class LocalStats {
 		// maintain thread-internal maps to reduce waiting time for other
 		// threads
-		HashMap<String, StatHolder> vocabStatsMap = new HashMap<>();
-		HashMap<String, StatHolder> classStatsMap = new HashMap<>();
-		HashMap<String, StatHolder> propStatsMap = new HashMap<>();
-		
-		HashMap<String,List<Quad>> quadsOfUrl = new HashMap<String,List<Quad>>();
-		int errorCount = 0;
-		int lineCount = 0;
+		IntObjectHashMap<StatHolder> vocabStatsMap = new IntObjectHashMap<>();
+		IntObjectHashMap<StatHolder> classStatsMap = new IntObjectHashMap<>();
+		IntObjectHashMap<StatHolder> propStatsMap = new IntObjectHashMap<>();
+		long errorCount = 0;
+		long lineCount = 0;
+		// subjects with properties but without a type, counted per page
+		long untypedSubjects = 0;
+
+		void processQuadsOfURL(List<Quad> quads, String url) {
+			untypedSubjects += WDCQuadStatsCalculator.this.processQuadsOfURL(quads, url, vocabStatsMap, classStatsMap,
+					propStatsMap);
+		}
+
+		int size() {
+			return vocabStatsMap.size() + classStatsMap.size() + propStatsMap.size();
+		}
+
+		// writes the stats with the terms and domains instead of their ids,
+		// which are only valid within this run
+		void write(DataOutputStream out) throws IOException {
+			out.writeLong(errorCount);
+			out.writeLong(lineCount);
+			out.writeLong(untypedSubjects);
+			int[] domainIds = new int[0];
+			if (!approxDomains) {
+				RoaringBitmap all = new RoaringBitmap();
+				for (IntObjectHashMap<StatHolder> statsMap : Arrays.asList(vocabStatsMap, classStatsMap, propStatsMap)) {
+					for (int term : statsMap.keys()) {
+						all.or(statsMap.get(term).domains);
+					}
+				}
+				domainIds = all.toArray();
+				CheckpointStore.writeVarInt(out, domainIds.length);
+				for (int domain : domainIds) {
+					CheckpointStore.writeString(out, domains.getTerm(domain));
+				}
+			}
+			for (IntObjectHashMap<StatHolder> statsMap : Arrays.asList(vocabStatsMap, classStatsMap, propStatsMap)) {
+				CheckpointStore.writeVarInt(out, statsMap.size());
+				for (int term : statsMap.keys()) {
+					StatHolder sh = statsMap.get(term);
+					CheckpointStore.writeString(out, terms.getTerm(term));
+					out.writeLong(sh.numEntities);
+					out.writeInt(sh.numUrls);
+					if (approxDomains) {
+						sh.domainSketch.write(out);
+					} else {
+						// positions in the domain table, ascending
+						int[] ids = sh.domains.toArray();
+						CheckpointStore.writeVarInt(out, ids.length);
+						int last = 0;
+						for (int id : ids) {
+							int index = Arrays.binarySearch(domainIds, id);
+							CheckpointStore.writeVarInt(out, index - last);
+							last = index;
+						}
+					}
+				}
+			}
+		}
+
+		LocalStats read(DataInputStream in) throws IOException {
+			errorCount = in.readLong();
+			lineCount = in.readLong();
+			untypedSubjects = in.readLong();
+			int[] domainIds = new int[0];
+			if (!approxDomains) {
+				domainIds = new int[CheckpointStore.readVarInt(in)];
+				for (int i = 0; i < domainIds.length; i++) {
+					domainIds[i] = domains.getId(CheckpointStore.readString(in));
+				}
+			}
+			for (IntObjectHashMap<StatHolder> statsMap : Arrays.asList(vocabStatsMap, classStatsMap, propStatsMap)) {
+				int size = CheckpointStore.readVarInt(in);
+				for (int i = 0; i < size; i++) {
+					StatHolder sh = new StatHolder();
+					statsMap.put(terms.getId(CheckpointStore.readString(in)), sh);
+					sh.numEntities = in.readLong();
+					sh.numUrls = in.readInt();
+					if (approxDomains) {
+						sh.domainSketch = HyperLogLog.read(in);
+					} else {
+						int n = CheckpointStore.readVarInt(in);
+						int index = 0;
+						for (int d = 0; d < n; d++) {
+							index += CheckpointStore.readVarInt(in);
+							sh.domains.add(domainIds[index]);
+						}
+					}
+				}
+			}
+			return this;
+		}
 
-		// quadloader
+		// adds the stats of another file, the holders of both are reused. The
+		// smaller stats are merged into the larger ones.
+		LocalStats merge(LocalStats other) {
+			if (other.size() > size()) {
+				return other.merge(this);
+			}
+			integrate(other.vocabStatsMap, vocabStatsMap);
+			integrate(other.classStatsMap, classStatsMap);
+			integrate(other.propStatsMap, propStatsMap);
+			errorCount += other.errorCount;
+			lineCount += other.lineCount;
+			untypedSubjects += other.untypedSubjects;
+			return this;
+		}
+	}
+
+	/**
+	 * Thrown in streaming mode if the quads of a URL are not contiguous.
+	 */
+	private static class NonContiguousGraphException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		NonContiguousGraphException(String graph) {
+			super("Quads of " + graph + " are not contiguous");
+		}
+	}
+
+	// parses the lines of one file or split with the selected parser
+	private class LineParser {
 		QuadFileLoader qfl = new QuadFileLoader();
-		//List<Quad> quads = new ArrayList<Quad>();
-		// read the file
-		BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(object)),"utf-8"));
-		//BufferedReader br= InputUtil.getBufferedReader(object);
-		String line;
-		while ((line=br.readLine())!=null) {
-			try {
-				//parse once and get the quads of the complete file. 
-				//organize them per url
-				line= cleanLine(line);
-				//line = line.replaceAll("[^\\p{ASCII}]", ""); //language tags?
-				Quad q = qfl.parseQuadLine(line);
-				List<Quad> quads = quadsOfUrl.get(q.graph()); 
-				if (quads == null) {
-					quadsOfUrl.put(q.graph(), new ArrayList<Quad>());
+		NQuadsTokenizer tokenizer = new NQuadsTokenizer();
+		QuadView view = new QuadView();
+		// only some lines are timed, the counts are added in batches
+		PipelineMetrics.Sampler sampler = new PipelineMetrics.Sampler(Stage.PARSE, null);
+		int parsed = 0;
+		int errors = 0;
+		// end of the current line after the cleaning, which shortens the
+		// line in place
+		int end;
+
+		/**
+		 * @return the quad of the current line or null if it cannot be parsed
+		 */
+		Quad parse(LineSource lines) {
+			boolean timed = sampler.start();
+			Quad q = parseLine(lines);
+			if (timed) {
+				sampler.stop();
+			}
+			if (q == null) {
+				errors++;
+			}
+			if (++parsed == 4096) {
+				flush();
+			}
+			return q;
+		}
+
+		// adds the counts of the parsed lines to the metrics
+		void flush() {
+			PipelineMetrics.add(Counter.LINES, parsed);
+			PipelineMetrics.add(Counter.QUADS, parsed - errors);
+			PipelineMetrics.add(Counter.PARSE_ERRORS, errors);
+			parsed = 0;
+			errors = 0;
+		}
+
+		private Quad parseLine(LineSource lines) {
+			end = lines.end();
+			if (fastParse) {
+				// same cleaning as for the ldif parser, to get the same stats
+				end = sanitizer.sanitize(lines.buffer(), lines.start(), lines.end());
+				// like the ldif parser, triples without a graph are rejected
+				if (!tokenizer.tokenize(lines.buffer(), lines.start(), end, view) || !view.hasGraph()) {
+					return null;
 				}
-				quadsOfUrl.get(q.graph()).add(q);
-				lineCount++;
-				
+				return view.toQuad();
+			}
+			try {
+				String line = new String(lines.buffer(), lines.start(), lines.end() - lines.start(),
+						StandardCharsets.UTF_8);
+				line = cleanLine(line);
+				return qfl.parseQuadLine(line);
 			} catch (Exception e) {
 				//System.out.println("Could not parse:"+line);
-				
-				errorCount++;
 				// TODO make this an option
 				//e.printStackTrace();
+				return null;
 			}
 		}
-		br.close();
+	}
+
+	/**
+	 * Stats of single pages, to measure the processing of the quads of a page
+	 * on its own (benchmarks). Requires {@link #beforeProcess()}.
+	 */
+	final class PageStats {
+		private final LocalStats stats = new LocalStats();
+
+		void add(List<Quad> quads, String url) {
+			stats.processQuadsOfURL(quads, url);
+		}
+
+		int size() {
+			return stats.size();
+		}
+	}
+
+	// processes the lines of one file or split. The source is opened a second
+	// time if the streaming mode has to fall back to sorting.
+	private LocalStats processLines(Callable<LineSource> source) throws Exception {
+		LocalStats stats = new LocalStats();
+		long startTime = System.currentTimeMillis();
+		if (streaming) {
+			PipelineMetrics.Tally pass = PipelineMetrics.startTally();
+			boolean streamed = false;
+			try {
+				streamLines(source.call(), stats, false);
+				streamed = true;
+			} catch (NonContiguousGraphException e) {
+				System.out.println(e.getMessage() + ", sorting the quads by URL.");
+			} finally {
+				PipelineMetrics.stopTally();
+			}
+			if (!streamed) {
+				// nothing was integrated yet, so the file can simply be read
+				// again. The counts of the first pass are taken back, so the
+				// input is only counted once.
+				pass.revert();
+				stats = new LocalStats();
+				spillLines(source.call(), stats);
+			}
+		} else {
+			groupLines(source.call(), stats);
+		}
+		long parseTime = System.currentTimeMillis() - startTime;
+
+		System.out.println("Linecount:"+stats.lineCount);
+		System.out.println("Parsed " + stats.lineCount + " quads in " + parseTime + " ms ("
+				+ (stats.lineCount * 1000L / Math.max(1, parseTime)) + " quads/sec)");
+		return stats;
+	}
+
+	// parses all quads of the source and organizes them per url, before they
+	// are processed. Needs memory for all quads of the source.
+	private void groupLines(LineSource lines, LocalStats stats) throws IOException {
+		HashMap<String,List<Quad>> quadsOfUrl = new HashMap<String,List<Quad>>();
+		LineParser parser = new LineParser();
+		while (lines.next()) {
+			Quad q = parser.parse(lines);
+			if (q == null) {
+				stats.errorCount++;
+				continue;
+			}
+			List<Quad> quads = quadsOfUrl.get(q.graph());
+			if (quads == null) {
+				quads = new ArrayList<Quad>();
+				quadsOfUrl.put(q.graph(), quads);
+			}
+			quads.add(q);
+			stats.lineCount++;
+		}
+		lines.close();
+		parser.flush();
 		// process the quads of each url
-		for (String url : quadsOfUrl.keySet()) {		    
-			processQuadsOfURL(quadsOfUrl.get(url), url, vocabStatsMap, classStatsMap, propStatsMap);
+		for (String url : quadsOfUrl.keySet()) {
+			stats.processQuadsOfURL(quadsOfUrl.get(url), url);
 		}
-		
-		// integrate the data
-		integrateVocabs(vocabStatsMap);
-		integrateClasses(classStatsMap);
-		integrateProperties(propStatsMap);
-		updateErrorCount(errorCount);
-		updateLineCount(lineCount);
-		System.out.println("Linecount:"+lineCount);
 	}
 
-	private String cleanLine(String line) {
-		//long startTime = System.nanoTime();
-		line= line.replaceAll("[^\\p{ASCII}]", "");
-		//language tags that are correct but not readable by the parser. Covers the majority but might be more.
-		//implementing with regexes might be tricky! Watch out!
-		//if (line.matches(".*\"@.{2}_.{2} <.*")){
-			//line = line.replaceAll("\"@.{2}_.{2} <", "\" <");
-		//}
+	// processes the quads of a url as soon as the graph changes, so only the
+	// quads of one page are kept in memory. Fails if a graph appears again
+	// after it was processed, unless the lines are known to be sorted by
+	// graph.
+	private void streamLines(LineSource lines, LocalStats stats, boolean sorted)
+			throws IOException, NonContiguousGraphException {
+		// hashes of the processed graphs, without boxing. A collision only
+		// causes an unnecessary fall back.
+		LongIntHashMap processedGraphs = sorted ? null : new LongIntHashMap(1024);
+		LineParser parser = new LineParser();
+		String currentURL = null;
+		List<Quad> quads = new ArrayList<Quad>();
+		try {
+			while (lines.next()) {
+				Quad q = parser.parse(lines);
+				if (q == null) {
+					stats.errorCount++;
+					continue;
+				}
+				if (!q.graph().equals(currentURL)) {
+					if (quads.size() > 0) {
+						stats.processQuadsOfURL(quads, currentURL);
+						if (processedGraphs != null) {
+							processedGraphs.put(hash(currentURL) & Long.MAX_VALUE, 1);
+						}
+					}
+					quads = new ArrayList<Quad>();
+					currentURL = q.graph();
+					if (processedGraphs != null
+							&& processedGraphs.get(hash(currentURL) & Long.MAX_VALUE) != LongIntHashMap.NO_VALUE) {
+						throw new NonContiguousGraphException(currentURL);
+					}
+				}
+				quads.add(q);
+				stats.lineCount++;
+			}
+		} finally {
+			lines.close();
+			parser.flush();
+		}
+		// process once more for the last quads
+		if (quads.size() > 0) {
+			stats.processQuadsOfURL(quads, currentURL);
+		}
+	}
+
+	// sorts the lines by graph with an external sort of a fixed memory
+	// budget, so all quads of one url are contiguous, and streams the sorted
+	// lines. Needs memory for the sort buffer and the quads of one page.
+	private void spillLines(LineSource lines, LocalStats stats) throws IOException {
+		ExternalQuadSorter sorter = new ExternalQuadSorter(spillDirectory, spillMemory * 1024L * 1024L);
+		ParsedLines parsed = new ParsedLines(lines, stats);
+		File sorted = File.createTempFile("wdcquadstats",
+				".sorted" + OutputStreamFactory.getIntermediateCodec().getExtension(), spillDirectory);
+		try {
+			// the sorter splits the lines with the byte-level tokenizer, lines
+			// which only the ldif parser accepts are dropped
+			long added = sorter.add(parsed, null);
+			stats.errorCount += parsed.count - added;
+			// the sorter counts the parsed lines once more. The ones it
+			// rejects stay parse errors instead of quads.
+			PipelineMetrics.add(Counter.LINES, -parsed.count);
+			PipelineMetrics.add(Counter.QUADS, -parsed.count);
+			parsed.parser.flush();
+			OutputStream out = OutputStreamFactory.getIntermediateCodec().open(new FileOutputStream(sorted));
+			try {
+				sorter.merge(out);
+			} finally {
+				out.close();
+			}
+			// the lines were already counted when they were read from the
+			// input
+			PipelineMetrics.Tally reread = PipelineMetrics.startTally();
+			try {
+				streamLines(new LineReader(InputStreamFactory.getInputStream(sorted)), stats, true);
+			} catch (NonContiguousGraphException e) {
+				// not checked for sorted lines
+				throw new IOException(e);
+			} finally {
+				PipelineMetrics.stopTally();
+			}
+			reread.revert(Counter.INPUT_BYTES, Counter.LINES, Counter.QUADS, Counter.PARSE_ERRORS);
+		} finally {
+			sorted.delete();
+		}
+	}
 
-		line = line.replaceAll("@en_US", "@en").replaceAll("@de_DE","@de").
-				replaceAll("@en_GB","@en").replaceAll("@pt_br","@pt").
-				replaceAll("@fr_CA","@fr").replaceAll("@pt_BR","@pt").
-				replaceAll("@fr_BE","@fr").replaceAll("@da_DK","@da").
-				replaceAll("@tr_TR", "@tr");
+	// the lines of a source which can be parsed, after the cleaning
+	private class ParsedLines implements LineSource {
+		final LineSource lines;
+		final LocalStats stats;
+		final LineParser parser = new LineParser();
+		long count = 0;
 
-		//long endTime = System.nanoTime();
+		ParsedLines(LineSource lines, LocalStats stats) {
+			this.lines = lines;
+			this.stats = stats;
+		}
 
-		//long duration = (endTime - startTime);
-		//System.out.println(duration);
-		return line;
+		@Override
+		public boolean next() throws IOException {
+			while (lines.next()) {
+				if (parser.parse(lines) != null) {
+					count++;
+					return true;
+				}
+				stats.errorCount++;
+			}
+			return false;
+		}
+
+		@Override
+		public byte[] buffer() {
+			return lines.buffer();
+		}
+
+		@Override
+		public int start() {
+			return lines.start();
+		}
+
+		@Override
+		public int end() {
+			return parser.end;
+		}
+
+		@Override
+		public void close() throws IOException {
+			lines.close();
+		}
+	}
+
+	// 64 bit FNV-1a hash of a graph
+	private static long hash(String graph) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < graph.length(); i++) {
+			h ^= graph.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	// removes non-ASCII characters and normalizes language tags, which are
+	// correct but not readable by the parser (e.g. @en_US)
+	private String cleanLine(String line) {
+		return sanitizer.sanitize(line);
 	}
 
 	// process all quads of one URL and create the necessary aggregated stats.
-	private void processQuadsOfURL(List<Quad> quads, String url, HashMap<String, StatHolder> vocabStatsMap,
-			HashMap<String, StatHolder> classStatsMap, HashMap<String, StatHolder> propStatsMap) {
+	// returns the number of subjects with properties but without a type
+	private int processQuadsOfURL(List<Quad> quads, String url, IntObjectHashMap<StatHolder> vocabStatsMap,
+			IntObjectHashMap<StatHolder> classStatsMap, IntObjectHashMap<StatHolder> propStatsMap) {
+		PageScratch page = scratch.get();
+		PipelineMetrics.increment(Counter.PAGES);
+		// only some pages are timed
+		boolean timed = page.sampler.start();
 		String domain = DomainUtil.getPayLevelDomainFromWholeURL(url);
+		long aggregateStart = timed ? page.sampler.stop() : 0;
 		if (domain == null) {
 			// this should not happen
-			return;
+			return 0;
 		}
-		// save some space
-		domain = domain.intern();
+		// the approximate mode only needs the hash, so the domains are not
+		// kept at all
+		int domainId = approxDomains ? -1 : domains.getId(domain);
+		long domainHash = approxDomains ? HyperLogLog.hash(domain) : 0;
 
-		// internal maps
-		HashMap<String, HashSet<String>> vocabEntityMap = new HashMap<String, HashSet<String>>();
-		HashMap<String, HashSet<String>> classEntityMap = new HashMap<String, HashSet<String>>();
-		HashMap<String, HashSet<String>> propEntityMap = new HashMap<String, HashSet<String>>();
-		HashMap<String, String> entityToClass = new HashMap<String, String>();
-		
-		//parse first time for the types
-		// check all quads for one URL
-		for (Quad q : quads) {
+		page.clear();
+
+		// one pass over the quads: subjects are only unique within the page,
+		// so they get ids of their own instead of being added to the
+		// dictionary. The type quads give the class of their subject, the
+		// other quads are kept for the second step.
+		for (int i = 0; i < quads.size(); i++) {
+			Quad q = quads.get(i);
+			int subject = page.subjectId(q.subject().value());
 			// if (typeProperties.contains(q.predicate())) {
-			if (isType(q.predicate())) {
+			if (typeMatcher.isType(q.predicate())) {
 				// add class entities
-				HashSet<String> entities = classEntityMap.get(q.value().value());
-				if (entities == null) {
-					classEntityMap.put(q.value().value(), new HashSet<String>());
-				}
-				classEntityMap.get(q.value().value()).add(q.subject().value());
-				entityToClass.put(q.subject().value(), q.value().value());
-			} 
-		}
-		//parse second time and add the class info to the properties
-		for (Quad q : quads) {		
-
-			String vocab;
-			if (isType(q.predicate())) {
-				vocab = VocabularyUtils.getVocabularyUrl(q.value().value());
+				int c = terms.getId(q.value().value());
+				page.classes.add(c, subject);
+				page.subjectClass[subject] = c;
+				page.vocabs.add(vocabularies.getVocabularyId(c), subject);
+			} else {
+				page.addProperty(i, subject, terms.getId(q.predicate()));
 			}
-			else {
-				String predicate_= q.predicate();
-				
-				try{
-					//add class info
-					String class_of_subject = entityToClass.get(q.subject().value());
-					if (class_of_subject==null || q.predicate().contains(class_of_subject)){
-						predicate_ = q.predicate();
-						if(class_of_subject==null & !q.predicate().equals("http://www.w3.org/1999/xhtml/microdata#item")){
-							notype.add(q.subject().value());
-						}
-					}
-					else{
-						predicate_=class_of_subject+"/"+q.predicate().substring(q.predicate().lastIndexOf('/') + 1);
-					}	
-				}
-				catch(Exception e){
-					System.out.println(e.getMessage());
-				}
-				
-				
-				// add prop entities
-				HashSet<String> entities = propEntityMap.get(predicate_);
-				if (entities == null) {
-					propEntityMap.put(predicate_, new HashSet<String>());
-				}
-				propEntityMap.get(predicate_).add(q.subject().value());
-
-				vocab = VocabularyUtils.getVocabularyUrl(predicate_);
+		}
+		// add the class info to the properties, now that the class of each
+		// subject is known
+		int untyped = 0;
+		for (int k = 0; k < page.numProperties; k++) {
+			int subject = page.propertySubject[k];
+			int c = page.subjectClass[subject];
+			int p = page.propertyPredicate[k];
+			if (c == -1 && p != microdataItem) {
+				// -2 marks the subject as counted, it stays untyped
+				untyped++;
+				page.subjectClass[subject] = -2;
 			}
+			int prop = c < 0 ? p : page.rewrite(c, p);
+			// add prop entities
+			page.properties.add(prop, subject);
 			// add vocab entities
-			HashSet<String> entities = vocabEntityMap.get(vocab);
-			if (entities == null) {
-				vocabEntityMap.put(vocab, new HashSet<String>());
-			}
-			vocabEntityMap.get(vocab).add(q.subject().value());
+			page.vocabs.add(vocabularies.getVocabularyId(prop), subject);
 		}
 
-
-		
-		
 		// summarize stats
-		for (String vocab : vocabEntityMap.keySet()) {
-			StatHolder stats = vocabStatsMap.get(vocab);
-			if (stats == null) {
-				stats = new StatHolder();
-			}
-			stats.numEntities += vocabEntityMap.get(vocab).size();
-			stats.numUrls += 1;
-			stats.domains.add(domain);
-			vocabStatsMap.put(vocab, stats);
+		summarize(page.vocabs, vocabStatsMap, domainId, domainHash);
+		summarize(page.classes, classStatsMap, domainId, domainHash);
+		summarize(page.properties, propStatsMap, domainId, domainHash);
+		PipelineMetrics.add(Counter.ENTITIES, page.numSubjects);
+		if (timed) {
+			page.sampler.stop(Stage.AGGREGATE, aggregateStart);
 		}
+		return untyped;
+	}
 
-		for (String c : classEntityMap.keySet()) {
-			StatHolder stats = classStatsMap.get(c);
+	// adds the entities of one URL to the stats
+	private void summarize(TermSubjectPairs pairs, IntObjectHashMap<StatHolder> statsMap, int domainId,
+			long domainHash) {
+		pairs.sort();
+		int i = 0;
+		while (i < pairs.size) {
+			int term = pairs.term(i);
+			// the distinct subjects of the term follow each other
+			int entities = 0;
+			long last = -1;
+			for (; i < pairs.size && pairs.term(i) == term; i++) {
+				if (pairs.pairs[i] != last) {
+					entities++;
+					last = pairs.pairs[i];
+				}
+			}
+			StatHolder stats = statsMap.get(term);
 			if (stats == null) {
 				stats = new StatHolder();
+				statsMap.put(term, stats);
 			}
-			stats.numEntities += classEntityMap.get(c).size();
+			stats.numEntities += entities;
 			stats.numUrls += 1;
-			stats.domains.add(domain);
-			classStatsMap.put(c, stats);
+			stats.addDomain(domainId, domainHash);
+		}
+	}
+
+	// the property of a predicate of an entity of the given class: the
+	// predicate itself if it contains the class, otherwise the class + the
+	// local name of the predicate
+	private int rewrite(int c, int predicate) {
+		String class_of_subject = terms.getTerm(c);
+		String predicate_ = terms.getTerm(predicate);
+		if (predicate_.contains(class_of_subject)) {
+			return predicate;
 		}
+		return terms.getId(class_of_subject + "/" + predicate_.substring(predicate_.lastIndexOf('/') + 1));
+	}
 
-		for (String prop : propEntityMap.keySet()) {
-			StatHolder stats = propStatsMap.get(prop);
-			if (stats == null) {
-				stats = new StatHolder();
+	/**
+	 * (term, subject) pairs of one page, e.g. the entities of each class.
+	 */
+	private static class TermSubjectPairs {
+		long[] pairs = new long[256];
+		int size = 0;
+
+		void add(int term, int subject) {
+			if (size == pairs.length) {
+				pairs = Arrays.copyOf(pairs, size * 2);
 			}
-			stats.numEntities += propEntityMap.get(prop).size();
-			stats.numUrls += 1;
-			stats.domains.add(domain);
-			propStatsMap.put(prop, stats);
+			pairs[size++] = (long) term << 32 | subject;
+		}
+
+		int term(int i) {
+			return (int) (pairs[i] >>> 32);
+		}
+
+		void sort() {
+			Arrays.sort(pairs, 0, size);
 		}
 	}
 
 	/**
-	 * Checks if the predicate is a type predicate
-	 * 
-	 * @param predicate
-	 *            the predicate
-	 * @return true if its a type predicate, false if not.
+	 * Working state of processQuadsOfURL, which is reused for all pages of a
+	 * thread, so a page allocates almost nothing.
 	 */
-	private boolean isType(String predicate) {
-		if (useRegex) {
-			for (String pattern : typeProperties) {
-				if (predicate.matches(pattern)) {
-					return true;
+	private class PageScratch {
+		// open addressing table of the subjects of the page and their ids
+		String[] subjectKeys = new String[256];
+		int[] subjectIds = new int[256];
+		// slots of the subjects in the order of their ids
+		int[] subjectSlots = new int[128];
+		int numSubjects = 0;
+		// class id of each subject, -1 if untyped (-2 once it is counted as
+		// untyped)
+		int[] subjectClass = new int[128];
+
+		// index, subject and predicate id of the non type quads
+		int[] propertyQuad = new int[256];
+		int[] propertySubject = new int[256];
+		int[] propertyPredicate = new int[256];
+		int numProperties = 0;
+
+		TermSubjectPairs vocabs = new TermSubjectPairs();
+		TermSubjectPairs classes = new TermSubjectPairs();
+		TermSubjectPairs properties = new TermSubjectPairs();
+
+		// (class, predicate) to the rewritten property
+		LongIntHashMap rewrites = new LongIntHashMap(1024);
+
+		// times the PLD resolution and aggregation of some pages
+		PipelineMetrics.Sampler sampler = new PipelineMetrics.Sampler(Stage.PLD, null);
+
+		void clear() {
+			for (int i = 0; i < numSubjects; i++) {
+				subjectKeys[subjectSlots[i]] = null;
+			}
+			numSubjects = 0;
+			numProperties = 0;
+			vocabs.size = 0;
+			classes.size = 0;
+			properties.size = 0;
+		}
+
+		int subjectId(String subject) {
+			int mask = subjectKeys.length - 1;
+			int h = subject.hashCode() * 0x9E3779B9;
+			int slot = (h ^ (h >>> 16)) & mask;
+			while (subjectKeys[slot] != null) {
+				if (subjectKeys[slot].equals(subject)) {
+					return subjectIds[slot];
 				}
+				slot = (slot + 1) & mask;
 			}
-		} else {
-			if (typeProperties.contains(predicate)) {
-				return true;
+			int id = numSubjects++;
+			subjectKeys[slot] = subject;
+			subjectIds[slot] = id;
+			if (id == subjectSlots.length) {
+				subjectSlots = Arrays.copyOf(subjectSlots, id * 2);
+				subjectClass = Arrays.copyOf(subjectClass, id * 2);
+			}
+			subjectSlots[id] = slot;
+			subjectClass[id] = -1;
+			if (numSubjects * 2 > subjectKeys.length) {
+				growSubjects();
 			}
+			return id;
 		}
-		return false;
-	}
 
-	// sync error count with global error count
-	private synchronized void updateErrorCount(int errorCount) {
-		this.errorCount += errorCount;
-	}
+		private void growSubjects() {
+			String[] oldKeys = subjectKeys;
+			int[] oldIds = subjectIds;
+			subjectKeys = new String[oldKeys.length * 2];
+			subjectIds = new int[oldKeys.length * 2];
+			int mask = subjectKeys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != null) {
+					int h = oldKeys[i].hashCode() * 0x9E3779B9;
+					int slot = (h ^ (h >>> 16)) & mask;
+					while (subjectKeys[slot] != null) {
+						slot = (slot + 1) & mask;
+					}
+					subjectKeys[slot] = oldKeys[i];
+					subjectIds[slot] = oldIds[i];
+					subjectSlots[oldIds[i]] = slot;
+				}
+			}
+		}
 
-	// sync line count with global line count
-	private synchronized void updateLineCount(int lineCount) {
-		this.parsedLines += lineCount;
-	}
+		void addProperty(int quad, int subject, int predicate) {
+			if (numProperties == propertyQuad.length) {
+				propertyQuad = Arrays.copyOf(propertyQuad, numProperties * 2);
+				propertySubject = Arrays.copyOf(propertySubject, numProperties * 2);
+				propertyPredicate = Arrays.copyOf(propertyPredicate, numProperties * 2);
+			}
+			propertyQuad[numProperties] = quad;
+			propertySubject[numProperties] = subject;
+			propertyPredicate[numProperties] = predicate;
+			numProperties++;
+		}
 
-	// integrate vocab stats
-	private synchronized void integrateVocabs(HashMap<String, StatHolder> vocabStatsMap) {
-		for (String vocab : vocabStatsMap.keySet()) {
-			StatHolder sh = this.vocabStatsMap.get(vocab);
-			if (sh == null) {
-				sh = vocabStatsMap.get(vocab);
-			} else {
-				sh.domains.addAll(vocabStatsMap.get(vocab).domains);
-				sh.numEntities += vocabStatsMap.get(vocab).numEntities;
-				sh.numUrls += vocabStatsMap.get(vocab).numUrls;
+		int rewrite(int c, int predicate) {
+			long key = (long) c << 32 | predicate;
+			int prop = rewrites.get(key);
+			if (prop == LongIntHashMap.NO_VALUE) {
+				if (rewrites.size() >= MAX_REWRITES) {
+					rewrites.clear();
+				}
+				prop = WDCQuadStatsCalculator.this.rewrite(c, predicate);
+				rewrites.put(key, prop);
 			}
-			this.vocabStatsMap.put(vocab, sh);
+			return prop;
 		}
 	}
 
-	// integrate class stats
-	private synchronized void integrateClasses(HashMap<String, StatHolder> classStatsMap) {
-		for (String c : classStatsMap.keySet()) {
-			StatHolder sh = this.classStatsMap.get(c);
+
+	private void integrate(IntObjectHashMap<StatHolder> local, IntObjectHashMap<StatHolder> global) {
+		for (int term : local.keys()) {
+			StatHolder sh = global.get(term);
 			if (sh == null) {
-				sh = classStatsMap.get(c);
+				global.put(term, local.get(term));
 			} else {
-				sh.domains.addAll(classStatsMap.get(c).domains);
-				sh.numEntities += classStatsMap.get(c).numEntities;
-				sh.numUrls += classStatsMap.get(c).numUrls;
+				sh.merge(local.get(term));
 			}
-			this.classStatsMap.put(c, sh);
 		}
 	}
 
-	// integrate prop stats
-	private synchronized void integrateProperties(HashMap<String, StatHolder> propStatsMap) {
-		for (String prop : propStatsMap.keySet()) {
-			StatHolder sh = this.propStatsMap.get(prop);
-			if (sh == null) {
-				sh = propStatsMap.get(prop);
-			} else {
-				sh.domains.addAll(propStatsMap.get(prop).domains);
-				sh.numEntities += propStatsMap.get(prop).numEntities;
-				sh.numUrls += propStatsMap.get(prop).numUrls;
+	// writes the stats with the domains or sketches in the order of the terms,
+	// so they can be merged with the stats of other runs. The untyped subjects
+	// are only a count, so they are added up by the merge.
+	private void writePartial(IntObjectHashMap<StatHolder> statsMap, String kind, long untypedSubjects)
+			throws IOException {
+		HashMap<String, StatHolder> resolved = resolve(statsMap);
+		String[] sortedTerms = resolved.keySet().toArray(new String[resolved.size()]);
+		Arrays.sort(sortedTerms);
+		PartialStatsFile.Writer writer = new PartialStatsFile.Writer(
+				new File(outputDirectory,
+						(filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + kind + PartialStatsFile.SUFFIX),
+				kind, "wdcquadstats types=" + typeProperties + " regex=" + useRegex);
+		try {
+			DataOutputStream out = writer.out();
+			out.writeBoolean(approxDomains);
+			out.writeLong(untypedSubjects);
+			for (String term : sortedTerms) {
+				StatHolder sh = resolved.get(term);
+				writer.key(term);
+				out.writeLong(sh.numEntities);
+				out.writeLong(sh.numUrls);
+				if (approxDomains) {
+					sh.domainSketch.write(out);
+				} else {
+					int[] ids = sh.domains.toArray();
+					String[] names = new String[ids.length];
+					for (int i = 0; i < ids.length; i++) {
+						names[i] = domains.getTerm(ids[i]);
+					}
+					Arrays.sort(names);
+					writer.sortedStrings(names);
+				}
 			}
-			this.propStatsMap.put(prop, sh);
+		} finally {
+			writer.close();
+		}
+	}
+
+	// resolves the ids of the terms, which is only done to write the stats
+	private HashMap<String, StatHolder> resolve(IntObjectHashMap<StatHolder> statsMap) {
+		HashMap<String, StatHolder> resolved = new HashMap<String, StatHolder>(statsMap.size() * 2);
+		for (int term : statsMap.keys()) {
+			resolved.put(terms.getTerm(term), statsMap.get(term));
 		}
+		return resolved;
 	}
 
 	@Override
 	protected void afterProcess() {
+		try {
+			resume();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		if (splitPool != null) {
+			splitPool.shutdown();
+		}
 		// write the collected statistics to file
 		try {
+			// merge the stats of all files
+			long startTime = System.currentTimeMillis();
+			LocalStats stats = accumulator.finish(threads);
+			if (stats == null) {
+				stats = new LocalStats();
+			}
+			PipelineMetrics.addTime(Stage.MERGE, (System.currentTimeMillis() - startTime) * 1000000L);
+			System.out.println("Merged the stats in " + (System.currentTimeMillis() - startTime) + " ms.");
+			long writeStart = System.nanoTime();
+
 			// vocab stats
-			BufferedWriter vocabWriter = OutputUtil.getGZIPBufferedWriter(new File(outputDirectory,
-					(filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + "vocab.stats.gz"));
-			vocabWriter.write("vocab\tnumEntities\tnumUrls\tnumDomains\n");
-			vocabStatsMap = (HashMap<String, StatHolder>) MapUtils.sortByValue(vocabStatsMap, SortingOrderTypes.DESCENDING);
+			BufferedWriter vocabWriter = OutputStreamFactory.getBufferedWriter(outputDirectory,
+					(filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + "vocab.stats");
+			vocabWriter.write("vocab\tnumEntities\tnumUrls\tnumDomains" + (approxDomains ? "\tnumDomainsError" : "") + "\n");
+			HashMap<String, StatHolder> vocabStatsMap = (HashMap<String, StatHolder>) MapUtils.sortByValue(resolve(stats.vocabStatsMap), SortingOrderTypes.DESCENDING);
 			for (String vocab : vocabStatsMap.keySet()) {
 				vocabWriter.write(vocab + "\t" + vocabStatsMap.get(vocab).numEntities + "\t"
-						+ vocabStatsMap.get(vocab).numUrls + "\t" + vocabStatsMap.get(vocab).domains.size() + "\n");
+						+ vocabStatsMap.get(vocab).numUrls + "\t" + vocabStatsMap.get(vocab).domainColumns() + "\n");
 			}
 			vocabWriter.close();
 
 			// class stats
-			BufferedWriter classWriter = OutputUtil.getGZIPBufferedWriter(new File(outputDirectory,
-					(filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + "class.stats.gz"));
+			BufferedWriter classWriter = OutputStreamFactory.getBufferedWriter(outputDirectory,
+					(filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + "class.stats");
 			long numTypedEntities = 0;
-			classWriter.write("class\tnumEntities\tnumUrls\tnumDomains\n");
-			classStatsMap = (HashMap<String, StatHolder>) MapUtils.sortByValue(classStatsMap, SortingOrderTypes.DESCENDING);
+			classWriter.write("class\tnumEntities\tnumUrls\tnumDomains" + (approxDomains ? "\tnumDomainsError" : "") + "\n");
+			HashMap<String, StatHolder> classStatsMap = (HashMap<String, StatHolder>) MapUtils.sortByValue(resolve(stats.classStatsMap), SortingOrderTypes.DESCENDING);
 			for (String c : classStatsMap.keySet()) {
 				classWriter.write(c + "\t" + classStatsMap.get(c).numEntities + "\t" + classStatsMap.get(c).numUrls
-						+ "\t" + classStatsMap.get(c).domains.size() + "\n");
+						+ "\t" + classStatsMap.get(c).domainColumns() + "\n");
 				numTypedEntities += classStatsMap.get(c).numEntities;
 			}
 			classWriter.close();
 
 			// property stats
-			BufferedWriter propWriter = OutputUtil.getGZIPBufferedWriter(
-					new File(outputDirectory, (filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + "prop.stats.gz"));
-			propWriter.write("prop\tnumEntities\tnumUrls\tnumDomains\n");
-			propStatsMap = (HashMap<String, StatHolder>) MapUtils.sortByValue(propStatsMap, SortingOrderTypes.DESCENDING);
+			BufferedWriter propWriter = OutputStreamFactory.getBufferedWriter(
+					outputDirectory, (filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + "prop.stats");
+			propWriter.write("prop\tnumEntities\tnumUrls\tnumDomains" + (approxDomains ? "\tnumDomainsError" : "") + "\n");
+			HashMap<String, StatHolder> propStatsMap = (HashMap<String, StatHolder>) MapUtils.sortByValue(resolve(stats.propStatsMap), SortingOrderTypes.DESCENDING);
 			for (String c : propStatsMap.keySet()) {
 				propWriter.write(c + "\t" + propStatsMap.get(c).numEntities + "\t" + propStatsMap.get(c).numUrls + "\t"
-						+ propStatsMap.get(c).domains.size() + "\n");
+						+ propStatsMap.get(c).domainColumns() + "\n");
 			}
 			propWriter.close();
 
-			// domains per class
-			BufferedWriter classDomainWriter = OutputUtil.getGZIPBufferedWriter(new File(outputDirectory,
-					(filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + "class.domains.gz"));
-			for (String c : classStatsMap.keySet()) {
-				classDomainWriter.write(c);
-				for (String domain : classStatsMap.get(c).domains) {
-					classDomainWriter.write("\t" + domain);
+			// domains per class in the order of their ids (the sketches do not
+			// know the domains)
+			if (!approxDomains) {
+				BufferedWriter classDomainWriter = OutputStreamFactory.getBufferedWriter(outputDirectory,
+						(filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + "class.domains");
+				for (String c : classStatsMap.keySet()) {
+					classDomainWriter.write(c);
+					for (int domain : classStatsMap.get(c).domains.toArray()) {
+						classDomainWriter.write("\t" + domains.getTerm(domain));
+					}
+					classDomainWriter.write("\n");
 				}
-				classDomainWriter.write("\n");
+				classDomainWriter.close();
+			}
+
+			if (partial) {
+				writePartial(stats.vocabStatsMap, "vocab", stats.untypedSubjects);
+				writePartial(stats.classStatsMap, "class", stats.untypedSubjects);
+				writePartial(stats.propStatsMap, "prop", stats.untypedSubjects);
+			}
+			PipelineMetrics.addTime(Stage.WRITE, System.nanoTime() - writeStart);
+			if (taskQueue != null) {
+				finishTask();
 			}
-			classDomainWriter.close();
 
-			System.out.println("Parsed " + parsedLines + " lines.");
-			System.out.println("Could not parse " + errorCount + " lines (quads).");
+			System.out.println("Parsed " + stats.lineCount + " lines.");
+			System.out.println("Could not parse " + stats.errorCount + " lines (quads).");
 			System.out.println("Overall found: " + numTypedEntities + " typed entities in the data.");
-			System.out.println("Subject without a type: "+notype.size());
+			System.out.println("Subject without a type: " + stats.untypedSubjects);
+			System.out.println("Vocabulary cache: " + vocabularies);
 
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -496,20 +1279,12 @@ public class WDCQuadStatsCalculator extends Processor<File> {
 				
 	}
 
+	/**
+	 * @deprecated use {@link InputStreamFactory#getInputStream(File)}, which
+	 *             detects the format by the content of the file.
+	 */
+	@Deprecated
 	public static InputStream getInputStream(File f) throws IOException {
-		InputStream is;
-		if (!f.isFile()) {
-			throw new IOException("Inputfile is not a file but a directory.");
-		}
-		if (f.getName().endsWith(".gz")) {
-			is = new GZIPInputStream(new FileInputStream(f));
-		} else if (f.getName().endsWith(".zip")) {
-			is = new ZipInputStream(new FileInputStream(f));
-		}else if (f.getName().endsWith(".xz")) {
-			is = new XZCompressorInputStream(new FileInputStream(f));
-		} else {
-			is = new FileInputStream(f);
-		}
-		return is;
+		return InputStreamFactory.getInputStream(f);
 	}
 }
@@ -20,7 +20,20 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.PriorityQueue;
 
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+import org.webdatacommons.structureddata.io.LineReader;
+import org.webdatacommons.structureddata.io.NQuadsTokenizer;
+import org.webdatacommons.structureddata.io.OutputCodec;
+import org.webdatacommons.structureddata.io.OutputStreamFactory;
+import org.webdatacommons.structureddata.io.QuadView;
 import org.webdatacommons.structureddata.util.DomainUtil;
+import org.webdatacommons.structureddata.util.LineSanitizer;
+import org.webdatacommons.structureddata.util.PipelineMetrics;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Counter;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Stage;
+import org.webdatacommons.structureddata.util.RoaringBitmap;
+import org.webdatacommons.structureddata.util.TermDictionary;
+import org.webdatacommons.structureddata.util.TypePredicateMatcher;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -32,8 +45,6 @@ import com.beust.jcommander.converters.FileConverter;
 import de.dwslab.dwslib.collections.MapUtils;
 import de.dwslab.dwslib.framework.Processor;
 import de.dwslab.dwslib.models.SortingOrderTypes;
-import de.dwslab.dwslib.util.io.InputUtil;
-import de.dwslab.dwslib.util.io.OutputUtil;
 import ldif.local.datasources.dump.QuadFileLoader;
 import ldif.runtime.Quad;
 
@@ -77,6 +88,20 @@ public class WDCSubsetStatsCalculator extends Processor<File> {
 	@Parameter(names = { "-e",
 			"-typeAsRegex" }, required = false, description = "Indicates if the type properties should be handled as regex.")
 	private boolean useRegex = false;
+
+	// compiled type properties, shared by all threads
+	private TypePredicateMatcher typeMatcher;
+
+	@Parameter(names = "-fastParse", required = false, description = "Parses the quads with the byte-level tokenizer instead of the ldif QuadFileLoader.")
+	private boolean fastParse = false;
+
+	@Parameter(names = "-clean", required = false, description = "Removes non-ASCII characters and normalizes language tags (e.g. @en_US) before parsing.")
+	private boolean clean = false;
+
+	private final LineSanitizer sanitizer = new LineSanitizer();
+
+	// dense ids of the pay level domains, shared by all threads
+	private final TermDictionary domains = new TermDictionary();
 	
 	private PrintWriter htmlScript;
 
@@ -94,6 +119,7 @@ public class WDCSubsetStatsCalculator extends Processor<File> {
 				files.add(f);
 			}
 		}
+		PipelineMetrics.addExpectedInput(files);
 		return files;
 	}
 
@@ -109,12 +135,14 @@ public class WDCSubsetStatsCalculator extends Processor<File> {
 	private class StatHolder implements Comparable<StatHolder> {
 		int numEntities;
 		int numQuads=0;
-		HashSet<String> domains = new HashSet<String>();
-		HashSet<String> urls = new HashSet<String>();
+		// ids of the domains in the domain dictionary
+		RoaringBitmap domains = new RoaringBitmap();
+		// numbers of the pages within the file
+		RoaringBitmap urls = new RoaringBitmap();
 		
 		@Override
 		public int compareTo(StatHolder o) {
-			return  this.domains.size() - o.domains.size();
+			return  this.domains.cardinality() - o.domains.cardinality();
 		}
 	}
 
@@ -128,7 +156,7 @@ public class WDCSubsetStatsCalculator extends Processor<File> {
 	protected void process(File object) throws Exception {
 		htmlScript.println("Processing:"+object.getName());
 		htmlScript.flush();
-		String currentSubsetName = "http://schema.org/"+object.getName().replaceAll("schema_", "").replaceAll(".gz", "");
+		String currentSubsetName = "http://schema.org/"+OutputCodec.stripExtension(object.getName().replaceAll("schema_", ""));
 		if(object.getName().contains("part")) currentSubsetName = "http://schema.org/Product";
 
 		HashMap<String, StatHolder> classStatsMap = new HashMap<>();
@@ -138,78 +166,136 @@ public class WDCSubsetStatsCalculator extends Processor<File> {
 		QuadFileLoader qfl = new QuadFileLoader();
 		String currentURL = "";
 		List<Quad> quads = new ArrayList<Quad>();
-		// read the file
-		BufferedReader br = InputUtil.getBufferedReader(object);
 		int quadsCount=0;
-		while (br.ready()) {
-			try {
-				Quad q = qfl.parseQuadLine(br.readLine());
+		int pageCount = 0;
+		// only some lines and pages are timed, the counts are added at the end
+		PipelineMetrics.Sampler sampler = new PipelineMetrics.Sampler(Stage.PARSE, null);
+		PipelineMetrics.Sampler pageSampler = new PipelineMetrics.Sampler(Stage.PLD, null);
+		long lineCount = 0;
+		long startTime = System.currentTimeMillis();
+		if (fastParse) {
+			NQuadsTokenizer tokenizer = new NQuadsTokenizer();
+			QuadView view = new QuadView();
+			QuadView.Key currentGraph = new QuadView.Key();
+			LineReader lr = new LineReader(InputStreamFactory.getInputStream(object));
+			while (lr.next()) {
+				lineCount++;
+				boolean timed = sampler.start();
+				int end = clean ? sanitizer.sanitize(lr.buffer(), lr.start(), lr.end()) : lr.end();
+				boolean valid = tokenizer.tokenize(lr.buffer(), lr.start(), end, view) && view.hasGraph();
+				if (timed) {
+					sampler.stop();
+				}
+				if (!valid) {
+					errorCount++;
+					continue;
+				}
 				quadsCount++;
-				// read all quads of one url (it is not necessary to pack them
-				// all
-				// into entities)
-				if (q.graph().equals(currentURL)) {
-					quads.add(q);
-				} else {
+				if (!currentGraph.matches(view, QuadView.GRAPH)) {
 					if (quads.size() > 0) {
-						processQuadsOfURL(quads, currentURL, classStatsMap, currentSubsetName);
+						processQuadsOfURL(quads, currentURL, classStatsMap, currentSubsetName, pageCount++,
+								pageSampler);
 					}
 					quads.clear();
-					quads.add(q);
-					currentURL = q.graph();
+					currentGraph.set(view, QuadView.GRAPH);
+					currentURL = currentGraph.toString();
+				}
+				// only the type quads are needed for the class stats, all other
+				// lines are never materialized
+				if (typeMatcher.isType(view)) {
+					quads.add(view.toQuad());
+				}
+			}
+			lr.close();
+		} else {
+			// read the file
+			BufferedReader br = InputStreamFactory.getBufferedReader(object);
+			while (br.ready()) {
+				try {
+					String line = br.readLine();
+					lineCount++;
+					boolean timed = sampler.start();
+					Quad q;
+					try {
+						q = qfl.parseQuadLine(clean ? sanitizer.sanitize(line) : line);
+					} finally {
+						if (timed) {
+							sampler.stop();
+						}
+					}
+					quadsCount++;
+					// read all quads of one url (it is not necessary to pack them
+					// all
+					// into entities)
+					if (q.graph().equals(currentURL)) {
+						quads.add(q);
+					} else {
+						if (quads.size() > 0) {
+							processQuadsOfURL(quads, currentURL, classStatsMap, currentSubsetName, pageCount++,
+									pageSampler);
+						}
+						quads.clear();
+						quads.add(q);
+						currentURL = q.graph();
+					}
+				} catch (Exception e) {
+					errorCount++;
+					System.out.println(e.toString());
+					// TODO make this an option
+					// e.printStackTrace();
 				}
-			} catch (Exception e) {
-				errorCount++;
-				System.out.println(e.toString());
-				// TODO make this an option
-				// e.printStackTrace();
 			}
+			br.close();
 		}
 		// process once more for the last quads
 		if (quads.size() > 0) {
-			processQuadsOfURL(quads, currentURL, classStatsMap, currentSubsetName);
+			processQuadsOfURL(quads, currentURL, classStatsMap, currentSubsetName, pageCount++, pageSampler);
 		}
-		br.close();
+		PipelineMetrics.add(Counter.LINES, lineCount);
+		PipelineMetrics.add(Counter.QUADS, quadsCount);
+		PipelineMetrics.add(Counter.PARSE_ERRORS, lineCount - quadsCount);
+		PipelineMetrics.add(Counter.PAGES, pageCount);
+		long parseTime = System.currentTimeMillis() - startTime;
+		System.out.println("Parsed " + quadsCount + " quads of " + object.getName() + " in " + parseTime + " ms ("
+				+ (quadsCount * 1000L / Math.max(1, parseTime)) + " quads/sec)");
 
 		// write the collected statistics to file
+		long writeStart = System.nanoTime();
 		try {
 			
 			// class stats
-			BufferedWriter classWriter = OutputUtil.getGZIPBufferedWriter(new File(outputDirectory,
+			BufferedWriter classWriter = OutputStreamFactory.getBufferedWriter(new File(outputDirectory,
 					(filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + "class.stats."+object.getName()));
 			long numTypedEntities = 0;
 			classWriter.write("class\tnumEntities\tnumUrls\tnumDomains\n");
 			classStatsMap = (HashMap<String, StatHolder>) MapUtils.sortByValue(classStatsMap, SortingOrderTypes.DESCENDING);
 			for (String c : classStatsMap.keySet()) {
-				classWriter.write(c + "\t" + classStatsMap.get(c).numEntities + "\t" + classStatsMap.get(c).urls.size()
-						+ "\t" + classStatsMap.get(c).domains.size() + "\n");
+				classWriter.write(c + "\t" + classStatsMap.get(c).numEntities + "\t" + classStatsMap.get(c).urls.cardinality()
+						+ "\t" + classStatsMap.get(c).domains.cardinality() + "\n");
 				numTypedEntities += classStatsMap.get(c).numEntities;
 			}
 			classWriter.close();
+			PipelineMetrics.add(Counter.ENTITIES, numTypedEntities);
 			
 						
 			// general info 
-			BufferedWriter classGeneralWriter = OutputUtil.getGZIPBufferedWriter(new File(outputDirectory,
+			BufferedWriter classGeneralWriter = OutputStreamFactory.getBufferedWriter(new File(outputDirectory,
 					(filePrefix.length() > 0 ? (filePrefix + ".") : ("")) + "class.general."+object.getName()));
 			classGeneralWriter.write("Parsed " + quadsCount + " quads. \n");
 			classGeneralWriter.write("Could not parse " + errorCount + " quads. \n");
 			classGeneralWriter.write("Overall found: " + numTypedEntities + " typed entities in the data. \n");
 			
-			HashSet<String> distinctDomains = new HashSet<String>();
+			RoaringBitmap distinctDomains = new RoaringBitmap();
 			for (String c : classStatsMap.keySet()) {
-				for (String domain : classStatsMap.get(c).domains) {
-					distinctDomains.add(domain);
-				}
+				distinctDomains.or(classStatsMap.get(c).domains);
 			}
-			classGeneralWriter.write("Distinct Domains: " + distinctDomains.size() + " \n");
+			classGeneralWriter.write("Distinct Domains: " + distinctDomains.cardinality() + " \n");
 			
-			HashSet<String> distinctUrls = new HashSet<String>();
+			RoaringBitmap distinctUrls = new RoaringBitmap();
 			for (String c : classStatsMap.keySet()) {
-				for (String url : classStatsMap.get(c).urls) {
-					distinctUrls.add(url);
-				}
+				distinctUrls.or(classStatsMap.get(c).urls);
 			}
-			classGeneralWriter.write("Distinct URLs: " + distinctUrls.size() + " \n");
+			classGeneralWriter.write("Distinct URLs: " + distinctUrls.cardinality() + " \n");
 
 			classGeneralWriter.close();
 			
@@ -241,7 +327,7 @@ public class WDCSubsetStatsCalculator extends Processor<File> {
 
 			toAppend +=  "</td><td>" +readableFileSize(object.length())+"</td><td><a href=\"http://data.dws.informatik.uni-mannheim.de/structureddata/2016-12/quads/classspecific/"
 					+object.getName()+"\">"+object.getName()+"</a> (<a href=\"http://data.dws.informatik.uni-mannheim.de/structureddata/2016-12/quads/classspecific/"
-					+object.getName().replace(".gz", "")+".txt\">sample</a>)</td></tr>";
+					+OutputCodec.stripExtension(object.getName())+".txt\">sample</a>)</td></tr>";
 			
 			htmlScript.println(toAppend);
 			htmlScript.flush();
@@ -250,6 +336,8 @@ public class WDCSubsetStatsCalculator extends Processor<File> {
 			System.out.println("Error while processing the file:"+object.getName());
 			e.printStackTrace();
 		}
+		PipelineMetrics.addTime(Stage.WRITE, System.nanoTime() - writeStart);
+		PipelineMetrics.increment(Counter.INPUT_FILES);
 
 	}
 	
@@ -312,15 +400,18 @@ public class WDCSubsetStatsCalculator extends Processor<File> {
 	    return new DecimalFormat("#,##0.#").format(size/Math.pow(1024, digitGroups)) + " " + units[digitGroups];
 	}
 	// process all quads of one URL and create the necessary aggregated stats.
+	// The sampler times the PLD resolution and the aggregation of some pages.
 	private void processQuadsOfURL(List<Quad> quads, String url, 
-			HashMap<String, StatHolder> classStatsMap, String currentClass) {
+			HashMap<String, StatHolder> classStatsMap, String currentClass, int page,
+			PipelineMetrics.Sampler sampler) {
+		boolean timed = sampler.start();
 		String domain = DomainUtil.getPayLevelDomainFromWholeURL(url);
+		long aggregateStart = timed ? sampler.stop() : 0;
 		if (domain == null) {
 			// this should not happen
 			return;
 		}
-		// save some space
-		domain = domain.intern();
+		int domainId = domains.getId(domain);
 
 		// internal maps
 		HashMap<String, HashSet<String>> classEntityMap = new HashMap<String, HashSet<String>>();
@@ -329,7 +420,7 @@ public class WDCSubsetStatsCalculator extends Processor<File> {
 		for (Quad q : quads) {
 			// check if its a type quad
 			// if (typeProperties.contains(q.predicate())) {
-			if (isType(q.predicate())) {
+			if (typeMatcher.isType(q.predicate())) {
 				// add class entities
 				HashSet<String> entities = classEntityMap.get(q.value().value());
 				if (entities == null) {
@@ -347,37 +438,22 @@ public class WDCSubsetStatsCalculator extends Processor<File> {
 				relevantstats = new StatHolder();
 			}
 			relevantstats.numEntities += classEntityMap.get(c).size();
+			relevantstats.domains.add(domainId);
+			relevantstats.urls.add(page);
 			
 			classStatsMap.put(c, relevantstats);
 		}
+		if (timed) {
+			sampler.stop(Stage.AGGREGATE, aggregateStart);
+		}
 
 		
 	}
 
-	/**
-	 * Checks if the predicate is a type predicate
-	 * 
-	 * @param predicate
-	 *            the predicate
-	 * @return true if its a type predicate, false if not.
-	 */
-	private boolean isType(String predicate) {
-		if (useRegex) {
-			for (String pattern : typeProperties) {
-				if (predicate.matches(pattern)) {
-					return true;
-				}
-			}
-		} else {
-			if (typeProperties.contains(predicate)) {
-				return true;
-			}
-		}
-		return false;
-	}
 	
 	@Override
 	protected void beforeProcess(){
+		typeMatcher = new TypePredicateMatcher(typeProperties, useRegex);
 		try {
 			htmlScript = new PrintWriter ( new BufferedWriter( new FileWriter(outputDirectory.getPath()+"/htmlScript.txt", true)));
 		} catch (IOException e) {
@@ -6,6 +6,11 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+import org.webdatacommons.structureddata.io.OutputStreamFactory;
+import org.webdatacommons.structureddata.util.PipelineMetrics;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Counter;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Stage;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -14,8 +19,6 @@ import com.beust.jcommander.Parameters;
 import com.beust.jcommander.converters.FileConverter;
 
 import de.dwslab.dwslib.framework.Processor;
-import de.dwslab.dwslib.util.io.InputUtil;
-import de.dwslab.dwslib.util.io.OutputUtil;
 
 
 @Parameters(commandDescription = "Cleans Subsets from non Schema.org data")
@@ -41,6 +44,7 @@ public class WDCSubsetStatsCleaner extends Processor<File> {
 				files.add(f);
 		}
 		
+		PipelineMetrics.addExpectedInput(files);
 		return files;
 	}
 
@@ -52,32 +56,45 @@ public class WDCSubsetStatsCleaner extends Processor<File> {
 
 	@Override
 	protected void process(File object) throws Exception {
-		BufferedWriter replaceItem = OutputUtil.getGZIPBufferedWriter(new File(outputDirectory+"/"+object.getName()));
+		BufferedWriter replaceItem = OutputStreamFactory.getBufferedWriter(new File(outputDirectory+"/"+object.getName()));
 		
 		// read the file
-		BufferedReader br = InputUtil.getBufferedReader(object);
+		BufferedReader br = InputStreamFactory.getBufferedReader(object);
 		String subjectToNeglect="thisIsTheSubjectNodeNotToBeCopied";
+		// only some lines are timed, the lines are counted in batches
+		PipelineMetrics.Sampler sampler = new PipelineMetrics.Sampler(Stage.PARSE, Counter.LINES);
+		PipelineMetrics.Sampler writeSampler = new PipelineMetrics.Sampler(Stage.WRITE, null);
 		while (br.ready()) {
 			String line = br.readLine();
+			boolean timed = sampler.start();
+			boolean copy;
 			if (line.contains("<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>")){
 				String lineParts[] = line.split(" ");
 				String qobject = lineParts[2];
-				if (qobject.contains("<http://schema.org/")){
-					replaceItem.write(line);
-					replaceItem.newLine();
-				}
-				else subjectToNeglect = lineParts[0];
+				copy = qobject.contains("<http://schema.org/");
+				if (!copy) subjectToNeglect = lineParts[0];
+			}
+			else copy = !line.contains(subjectToNeglect);
+			if (timed) {
+				sampler.stop();
 			}
-			else if(line.contains(subjectToNeglect)) continue;
-			else {
+			if (copy) {
+				boolean timedWrite = writeSampler.start();
 				replaceItem.write(line);
 				replaceItem.newLine();
+				if (timedWrite) {
+					writeSampler.stop();
+				}
 			}
 			
 		}
 				
 		br.close();
+		long start = System.nanoTime();
 		replaceItem.close();
+		PipelineMetrics.addTime(Stage.WRITE, System.nanoTime() - start);
+		sampler.flush();
+		PipelineMetrics.increment(Counter.INPUT_FILES);
 
 	}
 
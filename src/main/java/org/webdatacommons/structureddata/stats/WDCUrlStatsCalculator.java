@@ -1,15 +1,31 @@
 package org.webdatacommons.structureddata.stats;
 
 import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipException;
 
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+import org.webdatacommons.structureddata.io.OutputStreamFactory;
+import org.webdatacommons.structureddata.util.CheckpointStore;
 import org.webdatacommons.structureddata.util.DomainUtil;
+import org.webdatacommons.structureddata.util.FileTaskQueue;
+import org.webdatacommons.structureddata.util.PartialAccumulator;
+import org.webdatacommons.structureddata.util.PipelineMetrics;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Counter;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Stage;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -22,8 +38,6 @@ import au.com.bytecode.opencsv.CSVReader;
 import de.dwslab.dwslib.collections.MapUtils;
 import de.dwslab.dwslib.framework.Processor;
 import de.dwslab.dwslib.models.SortingOrderTypes;
-import de.dwslab.dwslib.util.io.InputUtil;
-import de.dwslab.dwslib.util.io.OutputUtil;
 
 /**
  * This class calculates all necessary stats for WDC based on the URLs
@@ -54,6 +68,15 @@ public class WDCUrlStatsCalculator extends Processor<File> {
 	@Parameter(names = { "-urlHeaderId", "-uh" }, required = true, description = "Id of the url (starting at 0).")
 	private int urlHeaderId;
 
+	@Parameter(names = "-checkpoint", required = false, description = "Writes the stats of each input file to a checkpoint in the output folder. A restarted run skips the files with a valid checkpoint and reads their stats instead. With -workDir, the checkpoints are written to the output folder of the merged stats and shared by all processes.")
+	private boolean checkpoint = false;
+
+	@Parameter(names = "-partial", required = false, description = "Additionally writes the complete stats to url.partial, which can be merged with the stats of other runs (mergestats).")
+	private boolean partial = false;
+
+	@Parameter(names = "-workDir", required = false, description = "Shared folder of several processes working on the same input files. Each process claims input files and writes the stats of its files to this folder, the last one to finish merges them into the output folder.", converter = FileConverter.class)
+	private File workDirectory = null;
+
 	@Override
 	protected List<File> fillListToProcess() {
 		List<File> files = new ArrayList<File>();
@@ -62,77 +85,212 @@ public class WDCUrlStatsCalculator extends Processor<File> {
 				files.add(f);
 			}
 		}
+		inputFiles = new ArrayList<File>(files);
+		if (checkpoint) {
+			CheckpointStore store = getCheckpoints();
+			for (File f : new ArrayList<File>(files)) {
+				if (store.hasCheckpoint(f)) {
+					files.remove(f);
+					resumed.add(f);
+				}
+			}
+			System.out.println("Found checkpoints of " + resumed.size() + " files, processing " + files.size()
+					+ " files.");
+		}
+		PipelineMetrics.addExpectedInput(files);
 		return files;
 	}
 
-	// TODO combine both maps
-	private HashMap<String, HashMap<String, Integer>> formatDomainUrlWTripleMap = new HashMap<String, HashMap<String, Integer>>();
-	private HashMap<String, HashMap<String, Integer>> formatDomainTripleMap = new HashMap<String, HashMap<String, Integer>>();
-	private HashMap<String, Integer> domainUrlMap = new HashMap<>();
-	private int urlCount = 0;
+	// input files shared with other processes, null if working alone
+	private FileTaskQueue taskQueue;
+	// all input files and the folder of the merged stats of all processes
+	private List<File> inputFiles;
+	private File mergedOutputDirectory;
 
-	private synchronized void integrateDomainUrlResult(HashMap<String, Integer> domainUrlMap) {
-		for (String domain : domainUrlMap.keySet()) {
-			Integer c = this.domainUrlMap.get(domain);
-			if (c == null) {
-				c = 0;
-			}
-			c += domainUrlMap.get(domain);
-			this.domainUrlMap.put(domain, c);
+	// joins the other processes, the stats of this one are only a part of
+	// the stats and are written to its own folder
+	private void joinTaskQueue() {
+		try {
+			taskQueue = new FileTaskQueue(workDirectory);
+		} catch (IOException e) {
+			System.out.println("Could not join the processes of " + workDirectory);
+			e.printStackTrace();
+			System.exit(0);
+		}
+		mergedOutputDirectory = outputDirectory;
+		outputDirectory = taskQueue.getWorkerDirectory();
+		partial = true;
+		System.out.println("Working as " + taskQueue.getWorkerId() + " with the processes of " + workDirectory + ".");
+	}
+
+	// marks the files of this process as done, the last process to finish
+	// merges the stats of all processes
+	private void finishTask() throws Exception {
+		taskQueue.finish();
+		if (taskQueue.isDone(inputFiles) && taskQueue.claimMerge()) {
+			List<File> workers = taskQueue.getCompleteWorkers();
+			System.out.println("All input files are done, merging the stats of " + workers.size() + " processes.");
+			new StatsMerger(workers, mergedOutputDirectory, threads).process();
+		} else {
+			System.out.println("Done with the claimed files, the last process will merge the stats.");
+		}
+	}
+
+	// files with a valid checkpoint, which are not processed again
+	private List<File> resumed = new ArrayList<File>();
+	private CheckpointStore checkpoints;
+
+	// the worker folder of a process with -workDir is new in each run, the
+	// checkpoints are kept with the merged stats
+	private File getCheckpointParent() {
+		return mergedOutputDirectory != null ? mergedOutputDirectory : outputDirectory;
+	}
+
+	private synchronized CheckpointStore getCheckpoints() {
+		if (checkpoints == null) {
+			checkpoints = new CheckpointStore(new File(getCheckpointParent(), "checkpoints"),
+					"wdcurlstats formats=" + formatHeaderIds + " url=" + urlHeaderId);
 		}
+		return checkpoints;
 	}
 
-	private synchronized void integrateUrlWTripleResults(
-			HashMap<String, HashMap<String, Integer>> formatDomainUrlWTripleMap) {
-		for (String format : formatDomainUrlWTripleMap.keySet()) {
-			if (!this.formatDomainUrlWTripleMap.containsKey(format)) {
-				this.formatDomainUrlWTripleMap.put(format, new HashMap<String, Integer>());
+	// collects the stats of the files, which are merged after all files are
+	// processed
+	private PartialAccumulator<UrlStats> accumulator;
+
+	/**
+	 * Stats of one or more files.
+	 */
+	static class UrlStats {
+		// TODO combine both maps
+		HashMap<String, HashMap<String, Integer>> formatDomainUrlWTripleMap = new HashMap<String, HashMap<String, Integer>>();
+		HashMap<String, HashMap<String, Integer>> formatDomainTripleMap = new HashMap<String, HashMap<String, Integer>>();
+		HashMap<String, Integer> domainUrlMap = new HashMap<>();
+		long urlCount = 0;
+
+		// adds the stats of other files, the smaller stats are added to the
+		// larger ones
+		static UrlStats merge(UrlStats a, UrlStats b) {
+			if (a.domainUrlMap.size() < b.domainUrlMap.size()) {
+				UrlStats tmp = a;
+				a = b;
+				b = tmp;
 			}
-			for (String domain : formatDomainUrlWTripleMap.get(format).keySet()) {
-				Integer count = this.formatDomainUrlWTripleMap.get(format).get(domain);
-				if (count == null) {
-					count = 0;
-				}
-				count += formatDomainUrlWTripleMap.get(format).get(domain);
-				this.formatDomainUrlWTripleMap.get(format).put(domain, count);
+			integrateFormats(b.formatDomainUrlWTripleMap, a.formatDomainUrlWTripleMap);
+			integrateFormats(b.formatDomainTripleMap, a.formatDomainTripleMap);
+			integrate(b.domainUrlMap, a.domainUrlMap);
+			a.urlCount += b.urlCount;
+			return a;
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeLong(urlCount);
+			writeFormats(out, formatDomainUrlWTripleMap);
+			writeFormats(out, formatDomainTripleMap);
+			writeCounts(out, domainUrlMap);
+		}
+
+		static UrlStats read(DataInputStream in) throws IOException {
+			UrlStats stats = new UrlStats();
+			stats.urlCount = in.readLong();
+			readFormats(in, stats.formatDomainUrlWTripleMap);
+			readFormats(in, stats.formatDomainTripleMap);
+			readCounts(in, stats.domainUrlMap);
+			return stats;
+		}
+
+		private static void writeFormats(DataOutputStream out, HashMap<String, HashMap<String, Integer>> formatMap)
+				throws IOException {
+			CheckpointStore.writeVarInt(out, formatMap.size());
+			for (String format : formatMap.keySet()) {
+				CheckpointStore.writeString(out, format);
+				writeCounts(out, formatMap.get(format));
+			}
+		}
+
+		private static void readFormats(DataInputStream in, HashMap<String, HashMap<String, Integer>> formatMap)
+				throws IOException {
+			int size = CheckpointStore.readVarInt(in);
+			for (int i = 0; i < size; i++) {
+				HashMap<String, Integer> domainMap = new HashMap<String, Integer>();
+				formatMap.put(CheckpointStore.readString(in), domainMap);
+				readCounts(in, domainMap);
 			}
 		}
-	}
 
-	private synchronized void integrateTripleResults(HashMap<String, HashMap<String, Integer>> formatDomainTripleMap) {
-		for (String format : formatDomainTripleMap.keySet()) {
-			if (!this.formatDomainTripleMap.containsKey(format)) {
-				this.formatDomainTripleMap.put(format, new HashMap<String, Integer>());
+		private static void writeCounts(DataOutputStream out, HashMap<String, Integer> domainMap) throws IOException {
+			CheckpointStore.writeVarInt(out, domainMap.size());
+			for (String domain : domainMap.keySet()) {
+				CheckpointStore.writeString(out, domain);
+				out.writeInt(domainMap.get(domain));
 			}
-			for (String domain : formatDomainTripleMap.get(format).keySet()) {
-				Integer count = this.formatDomainTripleMap.get(format).get(domain);
-				if (count == null) {
-					count = 0;
+		}
+
+		private static void readCounts(DataInputStream in, HashMap<String, Integer> domainMap) throws IOException {
+			int size = CheckpointStore.readVarInt(in);
+			for (int i = 0; i < size; i++) {
+				domainMap.put(CheckpointStore.readString(in), in.readInt());
+			}
+		}
+
+		private static void integrateFormats(HashMap<String, HashMap<String, Integer>> local,
+				HashMap<String, HashMap<String, Integer>> global) {
+			for (String format : local.keySet()) {
+				HashMap<String, Integer> domainMap = global.get(format);
+				if (domainMap == null) {
+					global.put(format, local.get(format));
+				} else {
+					integrate(local.get(format), domainMap);
 				}
-				count += formatDomainTripleMap.get(format).get(domain);
-				this.formatDomainTripleMap.get(format).put(domain, count);
+			}
+		}
+
+		private static void integrate(HashMap<String, Integer> local, HashMap<String, Integer> global) {
+			for (String domain : local.keySet()) {
+				Integer c = global.get(domain);
+				if (c == null) {
+					c = 0;
+				}
+				c += local.get(domain);
+				global.put(domain, c);
 			}
 		}
 	}
 
-	// update triple count
-	private synchronized void integrateUrlWTripleCount(int urlWTriple) {
-		this.urlCount += urlWTriple;
+	@Override
+	protected void beforeProcess() {
+		if (workDirectory != null) {
+			joinTaskQueue();
+		}
+		accumulator = new PartialAccumulator<UrlStats>(UrlStats::merge, threads);
 	}
 
 	@Override
 	protected void process(File object) throws Exception {
+		if (taskQueue != null && !taskQueue.claim(object)) {
+			PipelineMetrics.removeExpectedInput(object);
+			return;
+		}
+		processFile(object);
+	}
 
-		HashMap<String, HashMap<String, Integer>> formatDomainUrlWTripleMap = new HashMap<String, HashMap<String, Integer>>();
-		HashMap<String, HashMap<String, Integer>> formatDomainTripleMap = new HashMap<String, HashMap<String, Integer>>();
-		HashMap<String, Integer> domainUrlMap = new HashMap<>();
-		int urlCount = 0;
+	// processes a file, which is already claimed if working with other
+	// processes
+	private void processFile(File object) throws Exception {
+		UrlStats stats = new UrlStats();
+		HashMap<String, HashMap<String, Integer>> formatDomainUrlWTripleMap = stats.formatDomainUrlWTripleMap;
+		HashMap<String, HashMap<String, Integer>> formatDomainTripleMap = stats.formatDomainTripleMap;
+		HashMap<String, Integer> domainUrlMap = stats.domainUrlMap;
+		long urlCount = 0;
 
-		CSVReader reader = new CSVReader(new InputStreamReader(InputUtil.getInputStream(object)), ',');
+		CSVReader reader = new CSVReader(new InputStreamReader(InputStreamFactory.getInputStream(object)), ',');
 		String[] nextLine;
 		String[] header = null;
+		// only some lines are timed, from the end of the previous line on
+		PipelineMetrics.Sampler sampler = new PipelineMetrics.Sampler(Stage.PARSE, Counter.LINES);
 		try {
-			while ((nextLine = reader.readNext()) != null) {
+			for (boolean timed = sampler.start(); (nextLine = reader.readNext()) != null; timed = sampler.start()) {
+				long parsed = timed ? sampler.stop() : 0;
 				try {
 					if (header == null) {
 						// set header
@@ -144,7 +302,9 @@ public class WDCUrlStatsCalculator extends Processor<File> {
 						}
 					} else {
 						String url = nextLine[urlHeaderId];
+						PipelineMetrics.increment(Counter.PAGES);
 						String domain = DomainUtil.getPayLevelDomainFromWholeURL(url);
+						long resolved = timed ? sampler.stop(Stage.PLD, parsed) : 0;
 						if (domain == null) {
 							continue;
 						}
@@ -178,6 +338,9 @@ public class WDCUrlStatsCalculator extends Processor<File> {
 							c++;
 							domainUrlMap.put(domain, c);
 						}
+						if (timed) {
+							sampler.stop(Stage.AGGREGATE, resolved);
+						}
 					}
 				} catch (ArrayIndexOutOfBoundsException ex) {
 					// skip line
@@ -188,86 +351,189 @@ public class WDCUrlStatsCalculator extends Processor<File> {
 			System.out.println("File broken, please fix: " + object.getName());
 		}
 		reader.close();
+		sampler.flush();
+
+		// hand over the collected data, it is merged without blocking the
+		// other threads
+		stats.urlCount = urlCount;
+		long start = System.nanoTime();
+		if (checkpoint) {
+			// before the merge, which reuses the stats
+			getCheckpoints().write(object, stats::write);
+		}
+		long written = System.nanoTime();
+		PipelineMetrics.addTime(Stage.WRITE, written - start);
+		accumulator.add(stats);
+		PipelineMetrics.addTime(Stage.MERGE, System.nanoTime() - written);
+		PipelineMetrics.increment(Counter.INPUT_FILES);
+	}
 
-		// push collected data to global maps
-		integrateTripleResults(formatDomainTripleMap);
-		integrateUrlWTripleResults(formatDomainUrlWTripleMap);
-		integrateUrlWTripleCount(urlCount);
-		integrateDomainUrlResult(domainUrlMap);
+	// reads the stats of the files with a checkpoint, files with a broken
+	// checkpoint are processed again
+	private void resume() throws Exception {
+		if (resumed.isEmpty()) {
+			return;
+		}
+		long startTime = System.currentTimeMillis();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> loaded = new ArrayList<Future<?>>();
+		for (File f : resumed) {
+			if (taskQueue != null && !taskQueue.claim(f)) {
+				continue;
+			}
+			loaded.add(pool.submit(() -> {
+				try {
+					accumulator.add(getCheckpoints().read(f, UrlStats::read));
+				} catch (IOException e) {
+					System.out.println("Could not read the checkpoint of " + f.getName() + " (" + e.getMessage()
+							+ "), processing it again.");
+					PipelineMetrics.addExpectedInput(Collections.singletonList(f));
+					// already claimed above
+					processFile(f);
+				}
+				return null;
+			}));
+		}
+		for (Future<?> f : loaded) {
+			f.get();
+		}
+		pool.shutdown();
+		System.out.println("Read " + resumed.size() + " checkpoints in " + (System.currentTimeMillis() - startTime)
+				+ " ms.");
 	}
 
 	@Override
 	protected void afterProcess() {
+		try {
+			resume();
+			long start = System.nanoTime();
+			UrlStats stats = accumulator.finish(threads);
+			if (stats == null) {
+				stats = new UrlStats();
+			}
+			long merged = System.nanoTime();
+			PipelineMetrics.addTime(Stage.MERGE, merged - start);
+			writeStats(stats, outputDirectory);
+			if (partial) {
+				writePartial(stats, new File(outputDirectory, "url" + PartialStatsFile.SUFFIX));
+			}
+			PipelineMetrics.addTime(Stage.WRITE, System.nanoTime() - merged);
+			if (taskQueue != null) {
+				finishTask();
+			}
+			System.out.println("PLD cache: " + DomainUtil.getCacheStats());
+
+		} catch (Exception e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+
+	}
+
+	/**
+	 * Writes the stats files of the collected stats.
+	 */
+	static void writeStats(UrlStats stats, File outputDirectory) throws IOException {
 		HashMap<String, Long> domainTripleMap = new HashMap<>();
 		HashSet<String> domains = new HashSet<String>();
-		try {
-			BufferedWriter bwMatrix = OutputUtil
-					.getGZIPBufferedWriter(new File(outputDirectory, "aggMatrixPerFormat.stats.gz"));
-			bwMatrix.write("Format\tDomains\tURLs\tTriples\n");
-			long numAllTriples = 0l;
-			for (String format : this.formatDomainTripleMap.keySet()) {
-				Integer numDomains = this.formatDomainTripleMap.get(format).size();
-				Long numTriples = 0l;
-
-				HashMap<String, Integer> domainTripleMapTmp = this.formatDomainTripleMap.get(format);
-				domainTripleMapTmp = (HashMap<String, Integer>) MapUtils.sortByValue(domainTripleMapTmp,
-						SortingOrderTypes.DESCENDING);
-				BufferedWriter formatDomainTripleWriter = OutputUtil
-						.getGZIPBufferedWriter(new File(outputDirectory, format + ".domaintriple.stats.gz"));
-				for (String domain : domainTripleMapTmp.keySet()) {
-					domains.add(domain);
-					formatDomainTripleWriter.write(domain + "\t" + domainTripleMapTmp.get(domain) + "\n");
-					Long triple = domainTripleMap.get(domain);
-					if (triple == null) {
-						triple = 0l;
-					}
-					triple += domainTripleMapTmp.get(domain);
-					domainTripleMap.put(domain, triple);
+		BufferedWriter bwMatrix = OutputStreamFactory
+				.getBufferedWriter(outputDirectory, "aggMatrixPerFormat.stats");
+		bwMatrix.write("Format\tDomains\tURLs\tTriples\n");
+		long numAllTriples = 0l;
+		for (String format : stats.formatDomainTripleMap.keySet()) {
+			Integer numDomains = stats.formatDomainTripleMap.get(format).size();
+			Long numTriples = 0l;
 
-					numTriples += this.formatDomainTripleMap.get(format).get(domain);
-				}
-				numAllTriples += numTriples;
-				formatDomainTripleWriter.close();
-				Integer numUrls = 0;
-
-				BufferedWriter formatDomainUrlWTripleWriter = OutputUtil
-						.getGZIPBufferedWriter(new File(outputDirectory, format + ".domainurlwtriple.stats.gz"));
-				HashMap<String, Integer> domainUrlWTripleMap = this.formatDomainUrlWTripleMap.get(format);
-				domainUrlWTripleMap = (HashMap<String, Integer>) MapUtils.sortByValue(domainUrlWTripleMap,
-						SortingOrderTypes.DESCENDING);
-				for (String domain : domainUrlWTripleMap.keySet()) {
-					int urlCount = domainUrlWTripleMap.get(domain);
-					numUrls += urlCount;
-					formatDomainUrlWTripleWriter.write(domain + "\t" + urlCount + "\n");
+			HashMap<String, Integer> domainTripleMapTmp = stats.formatDomainTripleMap.get(format);
+			domainTripleMapTmp = (HashMap<String, Integer>) MapUtils.sortByValue(domainTripleMapTmp,
+					SortingOrderTypes.DESCENDING);
+			BufferedWriter formatDomainTripleWriter = OutputStreamFactory
+					.getBufferedWriter(outputDirectory, format + ".domaintriple.stats");
+			for (String domain : domainTripleMapTmp.keySet()) {
+				domains.add(domain);
+				formatDomainTripleWriter.write(domain + "\t" + domainTripleMapTmp.get(domain) + "\n");
+				Long triple = domainTripleMap.get(domain);
+				if (triple == null) {
+					triple = 0l;
 				}
-				formatDomainUrlWTripleWriter.close();
-				bwMatrix.write(format + "\t" + numDomains + "\t" + numUrls + "\t" + numTriples + "\n");
+				triple += domainTripleMapTmp.get(domain);
+				domainTripleMap.put(domain, triple);
+
+				numTriples += stats.formatDomainTripleMap.get(format).get(domain);
 			}
-			bwMatrix.write("overall\t" + domains.size() + "\t" + urlCount + "\t" + numAllTriples + "\n");
-			bwMatrix.close();
+			numAllTriples += numTriples;
+			formatDomainTripleWriter.close();
+			Integer numUrls = 0;
 
-			domainTripleMap = (HashMap<String, Long>) MapUtils.sortByValue(domainTripleMap,
+			BufferedWriter formatDomainUrlWTripleWriter = OutputStreamFactory
+					.getBufferedWriter(outputDirectory, format + ".domainurlwtriple.stats");
+			HashMap<String, Integer> domainUrlWTripleMap = stats.formatDomainUrlWTripleMap.get(format);
+			domainUrlWTripleMap = (HashMap<String, Integer>) MapUtils.sortByValue(domainUrlWTripleMap,
 					SortingOrderTypes.DESCENDING);
-			BufferedWriter domainTripleMapWriter = OutputUtil
-					.getGZIPBufferedWriter(new File(outputDirectory, "domaintriple.stats.gz"));
-			for (String domain : domainTripleMap.keySet()) {
-				domainTripleMapWriter.write(domain + "\t" + domainTripleMap.get(domain) + "\n");
+			for (String domain : domainUrlWTripleMap.keySet()) {
+				int urlCount = domainUrlWTripleMap.get(domain);
+				numUrls += urlCount;
+				formatDomainUrlWTripleWriter.write(domain + "\t" + urlCount + "\n");
 			}
-			domainTripleMapWriter.close();
+			formatDomainUrlWTripleWriter.close();
+			bwMatrix.write(format + "\t" + numDomains + "\t" + numUrls + "\t" + numTriples + "\n");
+		}
+		bwMatrix.write("overall\t" + domains.size() + "\t" + stats.urlCount + "\t" + numAllTriples + "\n");
+		bwMatrix.close();
 
-			domainUrlMap = (HashMap<String, Integer>) MapUtils.sortByValue(domainUrlMap, SortingOrderTypes.DESCENDING);
-			BufferedWriter domainUrlMappWriter = OutputUtil
-					.getGZIPBufferedWriter(new File(outputDirectory, "domainurlwtriple.stats.gz"));
-			for (String domain : domainUrlMap.keySet()) {
-				domainUrlMappWriter.write(domain + "\t" + domainUrlMap.get(domain) + "\n");
-			}
-			domainUrlMappWriter.close();
+		domainTripleMap = (HashMap<String, Long>) MapUtils.sortByValue(domainTripleMap,
+				SortingOrderTypes.DESCENDING);
+		BufferedWriter domainTripleMapWriter = OutputStreamFactory
+				.getBufferedWriter(outputDirectory, "domaintriple.stats");
+		for (String domain : domainTripleMap.keySet()) {
+			domainTripleMapWriter.write(domain + "\t" + domainTripleMap.get(domain) + "\n");
+		}
+		domainTripleMapWriter.close();
 
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		HashMap<String, Integer> domainUrlMap = (HashMap<String, Integer>) MapUtils.sortByValue(stats.domainUrlMap,
+				SortingOrderTypes.DESCENDING);
+		BufferedWriter domainUrlMappWriter = OutputStreamFactory
+				.getBufferedWriter(outputDirectory, "domainurlwtriple.stats");
+		for (String domain : domainUrlMap.keySet()) {
+			domainUrlMappWriter.write(domain + "\t" + domainUrlMap.get(domain) + "\n");
+		}
+		domainUrlMappWriter.close();
+	}
+
+	/**
+	 * Writes the counts in the order of the domains, so they can be merged
+	 * with the stats of other runs.
+	 */
+	static void writePartial(UrlStats stats, File file) throws IOException {
+		TreeSet<String> sortedDomains = new TreeSet<String>(stats.domainUrlMap.keySet());
+		List<String> formats = new ArrayList<String>(stats.formatDomainTripleMap.keySet());
+		for (String format : formats) {
+			sortedDomains.addAll(stats.formatDomainTripleMap.get(format).keySet());
 		}
+		PartialStatsFile.Writer writer = new PartialStatsFile.Writer(file, "url", "wdcurlstats");
+		try {
+			DataOutputStream out = writer.out();
+			out.writeLong(stats.urlCount);
+			CheckpointStore.writeVarInt(out, formats.size());
+			for (String format : formats) {
+				CheckpointStore.writeString(out, format);
+			}
+			for (String domain : sortedDomains) {
+				writer.key(domain);
+				out.writeInt(count(stats.domainUrlMap, domain));
+				for (String format : formats) {
+					out.writeInt(count(stats.formatDomainUrlWTripleMap.get(format), domain));
+					out.writeInt(count(stats.formatDomainTripleMap.get(format), domain));
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
 
+	private static int count(HashMap<String, Integer> map, String domain) {
+		Integer c = map == null ? null : map.get(domain);
+		return c == null ? 0 : c;
 	}
 
 	public static void main(String[] args) {
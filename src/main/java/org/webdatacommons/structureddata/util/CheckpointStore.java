@@ -0,0 +1,201 @@
+package org.webdatacommons.structureddata.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Keeps the partial stats of each processed input file in a compact binary
+ * checkpoint (deflated), so an interrupted run can be resumed without
+ * processing these files again. A checkpoint is only valid as long as its
+ * input file (length and modification time) and the configuration of the run
+ * do not change.
+ * <p>
+ * Checkpoints are written to a temporary file, which is renamed once it is
+ * complete, so a crash never leaves a partial checkpoint behind.
+ *
+ */
+public class CheckpointStore {
+
+	public static final String SUFFIX = ".ckpt";
+
+	private static final int MAGIC = 0x57444343;
+	private static final int VERSION = 1;
+	private static final int MAX_STRING_LENGTH = 1 << 26;
+
+	/**
+	 * Writes the stats of one file.
+	 */
+	public interface Writer {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	/**
+	 * Reads the stats of one file.
+	 */
+	public interface Reader<T> {
+		T read(DataInputStream in) throws IOException;
+	}
+
+	private final File directory;
+	private final String config;
+
+	/**
+	 * @param directory
+	 *            folder of the checkpoints, which is created if needed
+	 * @param config
+	 *            description of the options of the run which change the
+	 *            stats, checkpoints of other configurations are not used
+	 */
+	public CheckpointStore(File directory, String config) {
+		this.directory = directory;
+		this.config = config;
+		directory.mkdirs();
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	private File getCheckpoint(File input) {
+		return new File(directory, input.getName() + SUFFIX);
+	}
+
+	/**
+	 * @return true if there is a checkpoint of the file with a matching
+	 *         header. The content is only checked by
+	 *         {@link #read(File, Reader)}.
+	 */
+	public boolean hasCheckpoint(File input) {
+		File checkpoint = getCheckpoint(input);
+		if (!checkpoint.isFile()) {
+			return false;
+		}
+		try {
+			DataInputStream in = open(checkpoint);
+			try {
+				return readHeader(in, input);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the checkpoint of the file, replacing an existing one.
+	 */
+	public void write(File input, Writer writer) throws IOException {
+		File checkpoint = getCheckpoint(input);
+		File tmp = new File(directory, checkpoint.getName() + ".tmp");
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new DeflaterOutputStream(new FileOutputStream(tmp), deflater, 64 * 1024), 64 * 1024));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				writeString(out, config);
+				writeString(out, input.getName());
+				out.writeLong(input.length());
+				out.writeLong(input.lastModified());
+				writer.write(out);
+				// marks the checkpoint as complete
+				out.writeInt(MAGIC);
+			} finally {
+				out.close();
+			}
+		} finally {
+			deflater.end();
+		}
+		Files.move(tmp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return the stats of the checkpoint of the file
+	 * @throws IOException
+	 *             if there is no valid checkpoint
+	 */
+	public <T> T read(File input, Reader<T> reader) throws IOException {
+		File checkpoint = getCheckpoint(input);
+		DataInputStream in = open(checkpoint);
+		try {
+			if (!readHeader(in, input)) {
+				throw new IOException("Checkpoint " + checkpoint + " does not belong to " + input);
+			}
+			T stats = reader.read(in);
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Checkpoint " + checkpoint + " is broken");
+			}
+			return stats;
+		} finally {
+			in.close();
+		}
+	}
+
+	private static DataInputStream open(File checkpoint) throws IOException {
+		return new DataInputStream(
+				new BufferedInputStream(new InflaterInputStream(new FileInputStream(checkpoint)), 64 * 1024));
+	}
+
+	private boolean readHeader(DataInputStream in, File input) throws IOException {
+		return in.readInt() == MAGIC && in.readInt() == VERSION && readString(in).equals(config)
+				&& readString(in).equals(input.getName()) && in.readLong() == input.length()
+				&& in.readLong() == input.lastModified();
+	}
+
+	/**
+	 * Writes a string of any length (UTF-8).
+	 */
+	public static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	public static String readString(DataInputStream in) throws IOException {
+		int length = readVarInt(in);
+		if (length < 0 || length > MAX_STRING_LENGTH) {
+			throw new IOException("Malformed string");
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a non-negative int with 7 bits per byte.
+	 */
+	public static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	public static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed number");
+	}
+}
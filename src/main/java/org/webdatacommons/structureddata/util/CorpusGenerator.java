@@ -0,0 +1,603 @@
+package org.webdatacommons.structureddata.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.webdatacommons.structureddata.io.OutputCodec;
+import org.webdatacommons.structureddata.io.OutputStreamFactory;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.Parameters;
+import com.beust.jcommander.converters.FileConverter;
+
+import de.dwslab.dwslib.framework.Processor;
+
+/**
+ * Generates a synthetic corpus which resembles the output of the WDC
+ * extraction, for load and scaling tests of the calculators. Each part
+ * consists of
+ * <ul>
+ * <li>quads/part-NNNNN.gz - N-Quads with the URL of the page as graph, the
+ * quads of a page are contiguous (wdcquadstats, subset, ...)</li>
+ * <li>stats/part-NNNNN.csv.gz - the stats of the extraction with the number of
+ * quads per format of each crawled page (wdcurlstats -uh 0 -fh 1,2,3,4)</li>
+ * <li>urls/part-NNNNN.gz - the URLs of all crawled pages (ccurlstats)</li>
+ * </ul>
+ * The pages are distributed over the pay level domains and the entities over
+ * the schema.org classes by Zipf distributions. Each domain has one format
+ * (Microdata, RDFa, embedded JSON-LD or Microformats) and one language. Most
+ * entities have blank nodes as subjects, some literals have odd language tags
+ * and some lines are malformed.
+ * <p>
+ * The corpus only depends on the seed and the options, not on the number of
+ * threads, so the same corpus can be generated on any machine.
+ *
+ */
+@Parameters(commandDescription = "Generates a synthetic corpus of quads, extraction stats and URL lists for load tests.")
+public class CorpusGenerator extends Processor<File> {
+
+	@Parameter(names = { "-out",
+			"-outputDir" }, required = true, description = "Folder where the outputfile(s) are written to.", converter = FileConverter.class)
+	private File outputDirectory;
+
+	@Parameter(names = "-threads", required = true, description = "Number of threads.")
+	private Integer threads;
+
+	@Parameter(names = "-seed", required = false, description = "Seed of the corpus, the same seed and options lead to the same corpus.")
+	private long seed = 1;
+
+	@Parameter(names = "-sizeMB", required = false, description = "Uncompressed size of all quads in MB.")
+	private long sizeMB = 1024;
+
+	@Parameter(names = "-parts", required = false, description = "Number of parts (default: one per 256 MB of quads).")
+	private int parts = 0;
+
+	@Parameter(names = "-plds", required = false, description = "Number of pay level domains.")
+	private int plds = 100000;
+
+	@Parameter(names = "-pldSkew", required = false, description = "Exponent of the Zipf distribution of the pages over the pay level domains.")
+	private double pldSkew = 1.1;
+
+	@Parameter(names = "-classSkew", required = false, description = "Exponent of the Zipf distribution of the entities over the classes.")
+	private double classSkew = 1.0;
+
+	@Parameter(names = "-entitiesPerPage", required = false, description = "Average number of top level entities of a page with structured data.")
+	private double entitiesPerPage = 3;
+
+	@Parameter(names = "-blankNodes", required = false, description = "Share of the entities with a blank node as subject.")
+	private double blankNodes = 0.85;
+
+	@Parameter(names = "-dataPages", required = false, description = "Share of the crawled pages with structured data.")
+	private double dataPages = 0.3;
+
+	@Parameter(names = "-malformed", required = false, description = "Share of malformed lines.")
+	private double malformed = 0.001;
+
+	@Parameter(names = "-oddLanguageTags", required = false, description = "Share of the language tags which are not well-formed (e.g. en_US).")
+	private double oddLanguageTags = 0.05;
+
+	public static final String CSV_HEADER = "url,html-microdata,html-rdfa,html-embedded-jsonld,html-mf";
+
+	private static final int MICRODATA = 0;
+	private static final int RDFA = 1;
+	private static final int JSONLD = 2;
+	private static final int MICROFORMATS = 3;
+
+	private static final String RDF_TYPE = "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>";
+	private static final String MICRODATA_ITEM = "<http://www.w3.org/1999/xhtml/microdata#item>";
+	private static final String SCHEMA = "http://schema.org/";
+
+	// schema.org classes by their frequency in the extraction, each with its
+	// properties
+	private static final String[][] CLASSES = {
+			{ "ListItem", "position", "item", "name", "url" },
+			{ "Product", "name", "description", "image", "sku", "brand", "offers", "aggregateRating", "review",
+					"mpn" },
+			{ "Offer", "price", "priceCurrency", "availability", "url", "itemCondition", "seller",
+					"priceValidUntil" },
+			{ "Organization", "name", "url", "logo", "address", "telephone", "sameAs" },
+			{ "WebPage", "name", "description", "breadcrumb", "primaryImageOfPage", "url" },
+			{ "BreadcrumbList", "itemListElement" },
+			{ "PostalAddress", "streetAddress", "addressLocality", "postalCode", "addressCountry" },
+			{ "WebSite", "name", "url", "potentialAction" }, { "SearchAction", "target", "query-input" },
+			{ "Person", "name", "jobTitle", "sameAs", "url", "image" },
+			{ "ImageObject", "url", "contentUrl", "width", "height", "caption" },
+			{ "AggregateRating", "ratingValue", "reviewCount", "bestRating", "worstRating" },
+			{ "Article", "headline", "datePublished", "dateModified", "author", "publisher", "image" },
+			{ "BlogPosting", "headline", "datePublished", "author", "articleBody", "publisher" },
+			{ "LocalBusiness", "name", "address", "telephone", "openingHours", "geo", "priceRange" },
+			{ "Review", "author", "reviewRating", "reviewBody", "datePublished" },
+			{ "Rating", "ratingValue", "bestRating" },
+			{ "NewsArticle", "headline", "datePublished", "author", "publisher", "image", "articleSection" },
+			{ "Place", "name", "address", "geo" }, { "GeoCoordinates", "latitude", "longitude" },
+			{ "Event", "name", "startDate", "location", "offers", "performer" }, { "Brand", "name", "logo" },
+			{ "VideoObject", "name", "description", "thumbnailUrl", "uploadDate", "duration" },
+			{ "Recipe", "name", "recipeIngredient", "cookTime", "recipeYield", "author" },
+			{ "JobPosting", "title", "datePosted", "hiringOrganization", "jobLocation" },
+			{ "Hotel", "name", "address", "starRating", "priceRange" },
+			{ "Question", "name", "text", "answerCount", "acceptedAnswer" },
+			{ "Answer", "text", "upvoteCount", "author" }, { "SiteNavigationElement", "name", "url" },
+			{ "FAQPage", "mainEntity" } };
+
+	// class of the values of the properties which are nested entities
+	private static final Map<String, String> NESTED = new HashMap<String, String>();
+	static {
+		String[] nested = { "offers", "Offer", "brand", "Brand", "aggregateRating", "AggregateRating", "review",
+				"Review", "address", "PostalAddress", "author", "Person", "publisher", "Organization",
+				"itemListElement", "ListItem", "potentialAction", "SearchAction", "geo", "GeoCoordinates",
+				"location", "Place", "reviewRating", "Rating", "hiringOrganization", "Organization", "seller",
+				"Organization", "breadcrumb", "BreadcrumbList", "acceptedAnswer", "Answer", "mainEntity",
+				"Question", "jobLocation", "Place", "performer", "Person" };
+		for (int i = 0; i < nested.length; i += 2) {
+			NESTED.put(nested[i], nested[i + 1]);
+		}
+	}
+
+	private static final Set<String> IRI_PROPERTIES = new HashSet<String>(Arrays.asList("url", "image", "logo",
+			"sameAs", "thumbnailUrl", "contentUrl", "item", "target", "primaryImageOfPage"));
+	private static final Set<String> NUMBER_PROPERTIES = new HashSet<String>(Arrays.asList("price",
+			"ratingValue", "reviewCount", "position", "width", "height", "latitude", "longitude", "bestRating",
+			"worstRating", "upvoteCount", "answerCount", "starRating"));
+	private static final Set<String> DATE_PROPERTIES = new HashSet<String>(Arrays.asList("datePublished",
+			"dateModified", "startDate", "uploadDate", "datePosted", "priceValidUntil"));
+
+	private static final String[][] OPEN_GRAPH = { { "http://ogp.me/ns#", "title", "type", "url", "image",
+			"description", "site_name", "locale" }, { "http://purl.org/dc/terms/", "title", "creator", "date" } };
+	private static final String[][] MICROFORMAT_CLASSES = {
+			{ "http://www.w3.org/2006/vcard/ns#", "VCard", "fn", "url", "tel", "org", "email" },
+			{ "http://www.w3.org/2002/12/cal/icaltzd#", "Vevent", "summary", "dtstart", "location", "url" } };
+
+	// weighted public suffixes of the pay level domains
+	private static final String[] SUFFIXES = { "com", "com", "com", "com", "com", "com", "de", "de", "net", "org",
+			"co.uk", "ru", "ru", "com.br", "jp", "fr", "nl", "it", "es", "pl", "com.au", "co.jp", "info",
+			"blogspot.com" };
+	private static final String[] SYLLABLES = { "ka", "ro", "mi", "shop", "net", "tech", "blue", "sun", "go",
+			"lux", "max", "star", "web", "home", "city", "bio", "eco", "top", "art", "pro" };
+
+	// the first word is the language. The words are written as unicode escapes,
+	// so the source does not depend on the encoding of the build.
+	private static final String[][] WORDS = {
+			{ "en", "the", "best", "price", "free", "shipping", "new", "quality", "home", "shop", "online",
+					"black", "size", "review", "buy", "sale", "great", "product", "with", "and" },
+			{ "de", "der", "die", "und", "g\u00fcnstig", "Gr\u00f6\u00dfe", "versandkostenfrei", "Qualit\u00e4t",
+					"kaufen", "schwarz", "Angebot", "f\u00fcr", "Stra\u00dfe" },
+			{ "fr", "le", "la", "prix", "livraison", "gratuite", "qualit\u00e9", "noir", "\u00e9t\u00e9", "tr\u00e8s",
+					"achat", "caf\u00e9" },
+			{ "es", "el", "precio", "env\u00edo", "gratis", "calidad", "negro", "a\u00f1o", "comprar", "ni\u00f1o" },
+			{ "ru", "\u0446\u0435\u043d\u0430", "\u0434\u043e\u0441\u0442\u0430\u0432\u043a\u0430",
+					"\u0431\u0435\u0441\u043f\u043b\u0430\u0442\u043d\u043e",
+					"\u043a\u0430\u0447\u0435\u0441\u0442\u0432\u043e", "\u043a\u0443\u043f\u0438\u0442\u044c",
+					"\u043d\u043e\u0432\u044b\u0439", "\u0447\u0435\u0440\u043d\u044b\u0439",
+					"\u0440\u0430\u0437\u043c\u0435\u0440" },
+			{ "ja", "\u4fa1\u683c", "\u9001\u6599\u7121\u6599", "\u65b0\u54c1", "\u6771\u4eac", "\u4e88\u7d04",
+					"\u30ec\u30d3\u30e5\u30fc", "\u9ed2", "\u30b5\u30a4\u30ba" },
+			{ "pt", "pre\u00e7o", "frete", "gr\u00e1tis", "qualidade", "comprar", "promo\u00e7\u00e3o", "preto" } };
+	private static final String[] ODD_LANGUAGE_TAGS = { "en_US", "en_GB", "de_DE", "EN", "pt_BR", "zh_Hans_CN",
+			"x-default", "fr_FR", "es_419", "english" };
+	private static final String[] CURRENCIES = { "EUR", "USD", "GBP", "RUB", "JPY", "BRL" };
+
+	// cumulative probabilities of the pay level domains and classes
+	private double[] pldDistribution;
+	private double[] classDistribution;
+	private final Map<String, Integer> classIndex = new HashMap<String, Integer>();
+
+	private final LongAdder pageCount = new LongAdder();
+	private final LongAdder dataPageCount = new LongAdder();
+	private final LongAdder quadCount = new LongAdder();
+	private final LongAdder malformedCount = new LongAdder();
+	private final LongAdder quadBytes = new LongAdder();
+
+	@Override
+	protected int getNumberOfThreads() {
+		return this.threads;
+	}
+
+	private int getParts() {
+		return parts > 0 ? parts : (int) Math.max(1, sizeMB / 256);
+	}
+
+	@Override
+	protected List<File> fillListToProcess() {
+		List<File> files = new ArrayList<File>();
+		for (String dir : new String[] { "quads", "stats", "urls" }) {
+			new File(outputDirectory, dir).mkdirs();
+		}
+		for (int part = 0; part < getParts(); part++) {
+			files.add(OutputStreamFactory.getFile(new File(outputDirectory, "quads"), partName(part)));
+		}
+		return files;
+	}
+
+	private static String partName(int part) {
+		return String.format("part-%05d", part);
+	}
+
+	@Override
+	protected void beforeProcess() {
+		pldDistribution = zipf(plds, pldSkew);
+		classDistribution = zipf(CLASSES.length, classSkew);
+		for (int i = 0; i < CLASSES.length; i++) {
+			classIndex.put(CLASSES[i][0], i);
+		}
+	}
+
+	// cumulative probabilities of the ranks 1..n
+	private static double[] zipf(int n, double exponent) {
+		double[] cumulative = new double[n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += 1 / Math.pow(i + 1, exponent);
+			cumulative[i] = sum;
+		}
+		for (int i = 0; i < n; i++) {
+			cumulative[i] /= sum;
+		}
+		return cumulative;
+	}
+
+	private static int sample(double[] cumulative, Random rnd) {
+		int index = Arrays.binarySearch(cumulative, rnd.nextDouble());
+		return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+	}
+
+	// well distributed hash of the seed and a number
+	private static long mix(long seed, long value) {
+		long h = seed * 0x9E3779B97F4A7C15L + value;
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+
+	/**
+	 * A pay level domain with its format and language, which only depend on
+	 * the seed and its rank.
+	 */
+	private class Domain {
+		final String name;
+		final boolean blogspot;
+		final int format;
+		final String[] words;
+
+		Domain(int rank) {
+			long h = mix(seed, rank);
+			String suffix = SUFFIXES[(int) ((h >>> 1) % SUFFIXES.length)];
+			name = SYLLABLES[(int) ((h >>> 12) % SYLLABLES.length)] + SYLLABLES[(int) ((h >>> 20) % SYLLABLES.length)]
+					+ Integer.toString(rank, 36) + "." + suffix;
+			blogspot = suffix.equals("blogspot.com");
+			int f = (int) ((h >>> 28) % 100);
+			format = f < 55 ? MICRODATA : f < 80 ? RDFA : f < 95 ? JSONLD : MICROFORMATS;
+			words = WORDS[language(suffix)];
+		}
+
+		private int language(String suffix) {
+			switch (suffix) {
+			case "de":
+				return 1;
+			case "fr":
+				return 2;
+			case "es":
+				return 3;
+			case "ru":
+				return 4;
+			case "jp":
+			case "co.jp":
+				return 5;
+			case "com.br":
+				return 6;
+			default:
+				return 0;
+			}
+		}
+
+		String host(Random rnd) {
+			if (blogspot) {
+				return name;
+			}
+			int sub = rnd.nextInt(20);
+			return (sub < 15 ? "www." : sub < 17 ? "" : sub < 19 ? "m." : "shop.") + name;
+		}
+	}
+
+	@Override
+	protected void process(File object) throws Exception {
+		String name = OutputCodec.stripExtension(object.getName());
+		int part = Integer.parseInt(name.substring(name.indexOf('-') + 1));
+		// each part has its own random numbers, independent of the threads
+		Random rnd = new Random(mix(seed, -1 - part));
+		long target = sizeMB * 1024 * 1024 / getParts();
+
+		BufferedWriter quads = OutputStreamFactory.getBufferedWriter(object);
+		BufferedWriter stats = OutputStreamFactory.getBufferedWriter(new File(outputDirectory, "stats"), name + ".csv");
+		BufferedWriter urls = OutputStreamFactory.getBufferedWriter(new File(outputDirectory, "urls"), name);
+		stats.write(CSV_HEADER + "\n");
+
+		PageWriter page = new PageWriter(rnd);
+		long bytes = 0;
+		long pages = 0;
+		long data = 0;
+		while (bytes < target) {
+			Domain domain = new Domain(sample(pldDistribution, rnd));
+			String url = (rnd.nextInt(4) == 0 ? "https://" : "http://") + domain.host(rnd) + "/"
+					+ domain.words[1 + rnd.nextInt(domain.words.length - 1)] + "/" + Integer.toString(part, 36) + "-"
+					+ Long.toString(pages, 36) + ".html";
+			pages++;
+			urls.write(url + "\n");
+			int[] counts = new int[4];
+			if (rnd.nextDouble() < dataPages) {
+				data++;
+				page.generate(domain, url, counts);
+				quads.write(page.lines.toString());
+				bytes += page.bytes;
+			}
+			stats.write(url + "," + counts[MICRODATA] + "," + counts[RDFA] + "," + counts[JSONLD] + ","
+					+ counts[MICROFORMATS] + "\n");
+		}
+		quads.close();
+		stats.close();
+		urls.close();
+
+		pageCount.add(pages);
+		dataPageCount.add(data);
+		quadCount.add(page.quads);
+		malformedCount.add(page.malformedLines);
+		quadBytes.add(bytes);
+		System.out.println("Generated " + name + ": " + pages + " pages, " + data + " with " + page.quads
+				+ " quads (" + bytes / (1024 * 1024) + " MB).");
+	}
+
+	/**
+	 * Writes the quads of one page after another.
+	 */
+	private class PageWriter {
+		final Random rnd;
+		final StringBuilder lines = new StringBuilder(64 * 1024);
+		// bytes of the lines of the current page
+		long bytes;
+		long quads = 0;
+		long malformedLines = 0;
+
+		private Domain domain;
+		private String url;
+		private String graph;
+		private String page;
+		private int[] counts;
+		private int format;
+		private int entities;
+
+		PageWriter(Random rnd) {
+			this.rnd = rnd;
+		}
+
+		void generate(Domain domain, String url, int[] counts) {
+			this.domain = domain;
+			this.url = url;
+			this.graph = " <" + url + ">   .\n";
+			this.page = Long.toHexString(rnd.nextLong() & 0xffffffffffffL);
+			this.counts = counts;
+			this.entities = 0;
+			lines.setLength(0);
+			bytes = 0;
+			format = domain.format;
+
+			// many pages also have Open Graph tags
+			if (format == RDFA || rnd.nextInt(10) < 3) {
+				int f = format;
+				format = RDFA;
+				for (String[] vocabulary : OPEN_GRAPH) {
+					for (int i = 1; i < vocabulary.length; i++) {
+						if (rnd.nextInt(3) != 0) {
+							line("<" + url + ">", "<" + vocabulary[0] + vocabulary[i] + ">", text(4));
+						}
+					}
+				}
+				format = f;
+			}
+			if (format == MICROFORMATS) {
+				String[] mf = MICROFORMAT_CLASSES[rnd.nextInt(MICROFORMAT_CLASSES.length)];
+				String subject = subject(mf[1]);
+				line(subject, RDF_TYPE, "<" + mf[0] + mf[1] + ">");
+				for (int i = 2; i < mf.length; i++) {
+					line(subject, "<" + mf[0] + mf[i] + ">", value(mf[i]));
+				}
+			} else if (format != RDFA || rnd.nextBoolean()) {
+				int top = 1 + (int) (-Math.log(1 - rnd.nextDouble()) * (entitiesPerPage - 1));
+				for (int i = 0; i < top; i++) {
+					String subject = entity(sample(classDistribution, rnd), 0);
+					if (format == MICRODATA) {
+						line("<" + url + ">", MICRODATA_ITEM, subject);
+					}
+				}
+			}
+			if (bytes == 0) {
+				line("<" + url + ">", "<http://ogp.me/ns#title>", text(4));
+			}
+		}
+
+		// writes an entity and its nested entities, returns its subject
+		private String entity(int c, int depth) {
+			String[] cls = CLASSES[c];
+			String subject = subject(cls[0]);
+			if (rnd.nextInt(50) != 0) {
+				line(subject, RDF_TYPE, "<" + SCHEMA + cls[0] + ">");
+			}
+			List<String[]> nested = new ArrayList<String[]>();
+			int properties = 1 + rnd.nextInt(cls.length - 1) + rnd.nextInt(cls.length);
+			for (int i = 0; i < properties; i++) {
+				String property = cls[1 + rnd.nextInt(cls.length - 1)];
+				String nestedClass = NESTED.get(property);
+				String object;
+				if (nestedClass != null && depth < 2 && rnd.nextInt(3) != 0) {
+					// written after this entity, like by the extraction
+					object = subject(nestedClass);
+					nested.add(new String[] { nestedClass, object });
+				} else {
+					object = value(property);
+				}
+				line(subject, "<" + SCHEMA + property + ">", object);
+			}
+			for (String[] n : nested) {
+				entity(classIndex.get(n[0]), depth + 1, n[1]);
+			}
+			return subject;
+		}
+
+		private void entity(int c, int depth, String subject) {
+			String[] cls = CLASSES[c];
+			line(subject, RDF_TYPE, "<" + SCHEMA + cls[0] + ">");
+			int properties = 1 + rnd.nextInt(cls.length - 1);
+			for (int i = 0; i < properties; i++) {
+				String property = cls[1 + rnd.nextInt(cls.length - 1)];
+				String nestedClass = NESTED.get(property);
+				if (nestedClass != null && depth < 2 && rnd.nextInt(4) == 0) {
+					String object = subject(nestedClass);
+					line(subject, "<" + SCHEMA + property + ">", object);
+					entity(classIndex.get(nestedClass), depth + 1, object);
+				} else {
+					line(subject, "<" + SCHEMA + property + ">", value(property));
+				}
+			}
+		}
+
+		private String subject(String cls) {
+			int n = entities++;
+			if (rnd.nextDouble() < blankNodes) {
+				return "_:node" + page + "xb" + n;
+			}
+			return "<" + url + "#" + cls.toLowerCase() + n + ">";
+		}
+
+		private String value(String property) {
+			if (IRI_PROPERTIES.contains(property)) {
+				return "<" + url.substring(0, url.indexOf('/', 8)) + "/" + property + "/" + rnd.nextInt(100000)
+						+ (property.equals("url") || property.equals("item") ? ".html>" : ".jpg>");
+			}
+			if (NUMBER_PROPERTIES.contains(property)) {
+				return "\"" + rnd.nextInt(1000) + (rnd.nextBoolean() ? "." + (10 + rnd.nextInt(90)) : "") + "\"";
+			}
+			if (DATE_PROPERTIES.contains(property)) {
+				return "\"20" + (10 + rnd.nextInt(8)) + "-0" + (1 + rnd.nextInt(9)) + "-1" + rnd.nextInt(10) + "\"";
+			}
+			switch (property) {
+			case "priceCurrency":
+				return "\"" + CURRENCIES[rnd.nextInt(CURRENCIES.length)] + "\"";
+			case "availability":
+				return rnd.nextInt(5) == 0 ? "<http://schema.org/OutOfStock>" : "<http://schema.org/InStock>";
+			case "itemCondition":
+				return "<http://schema.org/NewCondition>";
+			case "description":
+			case "articleBody":
+			case "reviewBody":
+			case "text":
+				return text(10 + rnd.nextInt(60));
+			default:
+				return text(1 + rnd.nextInt(6));
+			}
+		}
+
+		private String text(int words) {
+			StringBuilder sb = new StringBuilder("\"");
+			for (int i = 0; i < words; i++) {
+				if (i > 0) {
+					sb.append(' ');
+				}
+				// frequent words first
+				sb.append(domain.words[1 + (int) (rnd.nextDouble() * rnd.nextDouble() * (domain.words.length - 1))]);
+			}
+			if (rnd.nextInt(50) == 0) {
+				sb.append(" \\\"").append(domain.words[1]).append("\\\"\\n");
+			}
+			sb.append('"');
+			if (rnd.nextBoolean()) {
+				sb.append('@').append(rnd.nextDouble() < oddLanguageTags
+						? ODD_LANGUAGE_TAGS[rnd.nextInt(ODD_LANGUAGE_TAGS.length)] : domain.words[0]);
+			}
+			return sb.toString();
+		}
+
+		private void line(String subject, String predicate, String object) {
+			String line = subject + " " + predicate + " " + object + graph;
+			if (rnd.nextDouble() < malformed) {
+				line = malform(line);
+				malformedLines++;
+			}
+			lines.append(line);
+			bytes += line.getBytes(StandardCharsets.UTF_8).length;
+			counts[format]++;
+			quads++;
+		}
+
+		private String malform(String line) {
+			switch (rnd.nextInt(4)) {
+			case 0:
+				// truncated
+				return line.substring(0, rnd.nextInt(line.length() - 1)) + "\n";
+			case 1:
+				// unterminated IRI
+				return line.replaceFirst(">", "");
+			case 2:
+				// white space within an IRI
+				return line.replaceFirst("://", ":// ");
+			default:
+				// without graph
+				return line.substring(0, line.lastIndexOf(" <")) + " .\n";
+			}
+		}
+	}
+
+	@Override
+	protected void afterProcess() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("seed=").append(seed).append('\n');
+		sb.append("sizeMB=").append(sizeMB).append('\n');
+		sb.append("parts=").append(getParts()).append('\n');
+		sb.append("plds=").append(plds).append('\n');
+		sb.append("pldSkew=").append(pldSkew).append('\n');
+		sb.append("classSkew=").append(classSkew).append('\n');
+		sb.append("entitiesPerPage=").append(entitiesPerPage).append('\n');
+		sb.append("blankNodes=").append(blankNodes).append('\n');
+		sb.append("dataPages=").append(dataPages).append('\n');
+		sb.append("malformed=").append(malformed).append('\n');
+		sb.append("oddLanguageTags=").append(oddLanguageTags).append('\n');
+		sb.append("pages=").append(pageCount.sum()).append('\n');
+		sb.append("dataPages.count=").append(dataPageCount.sum()).append('\n');
+		sb.append("quads=").append(quadCount.sum()).append('\n');
+		sb.append("malformed.count=").append(malformedCount.sum()).append('\n');
+		sb.append("quadBytes=").append(quadBytes.sum()).append('\n');
+		try {
+			Files.write(new File(outputDirectory, "corpus.txt").toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.out.print(sb);
+		System.out.println("Process the corpus with e.g.");
+		System.out.println("  wdcquadstats -in " + new File(outputDirectory, "quads") + " -tp "
+				+ RDF_TYPE.substring(1, RDF_TYPE.length() - 1) + " ...");
+		System.out.println("  wdcurlstats -in " + new File(outputDirectory, "stats") + " -uh 0 -fh 1,2,3,4 ...");
+		System.out.println("  ccurlstats -in " + new File(outputDirectory, "urls") + " ...");
+	}
+
+	public static void main(String[] args) {
+		CorpusGenerator generator = new CorpusGenerator();
+		try {
+			new JCommander(generator, args);
+			generator.process();
+		} catch (ParameterException pe) {
+			pe.printStackTrace();
+			new JCommander(generator).usage();
+		}
+	}
+}
@@ -1,14 +1,60 @@
 package org.webdatacommons.structureddata.util;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+
 import com.google.common.net.InternetDomainName;
 
 public class DomainUtil {
 
 	public static String INVALID_URL = null;
-	public static String blogspotPattern = "(.*\\.)(blogspot.)(.*)";
+	public static final String blogspotPattern = "(.*\\.)(blogspot.)(.*)";
+	private static final Pattern BLOGSPOT_PATTERN = Pattern.compile(blogspotPattern);
+
+	/**
+	 * Default number of hosts whose PLD is cached.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1 << 18;
+
+	// public and private suffixes of the bundled list, null if it cannot be
+	// read
+	private static final PublicSuffixTrie SUFFIXES = loadSuffixes();
+
+	// PLDs of the hosts, null if disabled
+	private static volatile StripedLruCache<String, String> cache = new StripedLruCache<String, String>(
+			DEFAULT_CACHE_SIZE, 64);
+
+	private static PublicSuffixTrie loadSuffixes() {
+		try {
+			return PublicSuffixTrie.fromSnapshot();
+		} catch (IOException e) {
+			System.out.println("Could not read the public suffix list, using the one of Guava.");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * @param size
+	 *            number of hosts whose PLD is cached, 0 disables the cache
+	 */
+	public static void setCacheSize(int size) {
+		cache = size > 0 ? new StripedLruCache<String, String>(size, 64) : null;
+	}
+
+	/**
+	 * @return the size, hits and misses of the cache
+	 */
+	public static String getCacheStats() {
+		StripedLruCache<String, String> c = cache;
+		return c == null ? "disabled" : c.toString();
+	}
 
 	/**
 	 * This class gets the PLD from an URL and makes sure that all blogspot.com urls are
@@ -18,42 +64,139 @@ public class DomainUtil {
 	 */
 	public static String getPayLevelDomainFromWholeURL(String url) {
 		String domain = getDomain(url);
+		StripedLruCache<String, String> c = cache;
+		if (c != null) {
+			return c.get(domain, DomainUtil::getPayLevelDomain);
+		}
+		return getPayLevelDomain(domain);
+	}
+
+	// resolves the PLD of a host
+	private static String getPayLevelDomain(String domain) {
+		if (SUFFIXES == null || !isAscii(domain)) {
+			return getPayLevelDomainGuava(domain);
+		}
+		String pld = SUFFIXES.topPrivateDomain(domain);
+		if (pld == null) {
+			return INVALID_URL;
+		}
+		return foldBlogspot(pld);
+	}
+
+	// resolves the PLD of a host with Guava, which also handles hosts with
+	// non ASCII characters
+	private static String getPayLevelDomainGuava(String domain) {
 		try {
 			InternetDomainName fullDomainName = InternetDomainName.from(domain);
-			// This is a necessary fix to guarantee blogspot.com is one PLD and
-			// not millions
-			//but also think of blogspot.de,.gr etc. (issue appeared for 2017 extraction)
-			String pld = fullDomainName.topPrivateDomain().toString();
-			Pattern r  = Pattern.compile(blogspotPattern);
-			Matcher m = r.matcher(pld);
-			if (m.find()) {
-				pld = m.group(2)+m.group(3);
-			}
-//			if (pld.endsWith("blogspot.com")) {
-//				pld = "blogspot.com";
-//			}
-			return pld;
+			return foldBlogspot(fullDomainName.topPrivateDomain().toString());
 		} catch (Exception e) {
 
 		}
 		return INVALID_URL;
 	}
 
-	private static final Pattern DOMAIN_PATTERN = Pattern.compile("http(s)?://(([a-zA-Z0-9-_]+(\\.)?)+)");
+	private static String foldBlogspot(String pld) {
+		// This is a necessary fix to guarantee blogspot.com is one PLD and
+		// not millions
+		//but also think of blogspot.de,.gr etc. (issue appeared for 2017 extraction)
+		Matcher m = BLOGSPOT_PATTERN.matcher(pld);
+		if (m.find()) {
+			pld = m.group(2)+m.group(3);
+		}
+//		if (pld.endsWith("blogspot.com")) {
+//			pld = "blogspot.com";
+//		}
+		return pld;
+	}
 
-	private static String getDomain(String uri) {
-		try {
-			Matcher m = DOMAIN_PATTERN.matcher(uri);
-			if (m.find()) {
-				return m.group(2);
+	private static boolean isAscii(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) > 0x7f) {
+				return false;
 			}
-		} catch (Exception e) {
+		}
+		return true;
+	}
 
+	/**
+	 * Returns the host of the first http(s) URL within the string, or the
+	 * string itself if there is none. The host consists of letters, digits,
+	 * '-', '_' and single dots, i.e. the same as matched by the former pattern
+	 * <code>http(s)?://(([a-zA-Z0-9-_]+(\\.)?)+)</code>.
+	 */
+	private static String getDomain(String uri) {
+		int from = 0;
+		int i;
+		while ((i = uri.indexOf("http", from)) >= 0) {
+			int start = i + 4;
+			if (start < uri.length() && uri.charAt(start) == 's') {
+				start++;
+			}
+			if (uri.startsWith("://", start)) {
+				start += 3;
+				int end = start;
+				while (end < uri.length()) {
+					char c = uri.charAt(end);
+					if (isHostChar(c) || (c == '.' && end > start && uri.charAt(end - 1) != '.')) {
+						end++;
+					} else {
+						break;
+					}
+				}
+				if (end > start) {
+					return uri.substring(start, end);
+				}
+			}
+			from = i + 1;
 		}
 		return uri;
 	}
 
-	public static void main (String args[]){
+	private static boolean isHostChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+	}
+
+	/**
+	 * Compares the PLDs of the bundled public suffix list with the PLDs of
+	 * Guava for all URLs (one per line) of the given files and prints the
+	 * differences.
+	 */
+	private static void regression(String[] files) throws IOException {
+		long urls = 0;
+		long differences = 0;
+		long trieTime = 0;
+		long guavaTime = 0;
+		for (String file : files) {
+			BufferedReader br = InputStreamFactory.getBufferedReader(new File(file));
+			String line;
+			while ((line = br.readLine()) != null) {
+				String domain = getDomain(line.trim());
+				long start = System.nanoTime();
+				String pld = getPayLevelDomain(domain);
+				long middle = System.nanoTime();
+				String expected = getPayLevelDomainGuava(domain);
+				trieTime += middle - start;
+				guavaTime += System.nanoTime() - middle;
+				urls++;
+				if (pld == null ? expected != null : !pld.equals(expected)) {
+					differences++;
+					if (differences <= 100) {
+						System.out.println(line + "\t" + pld + "\t" + expected);
+					}
+				}
+			}
+			br.close();
+		}
+		System.out.println("Checked " + urls + " URLs, found " + differences + " differences.");
+		System.out.println("Suffix list: " + trieTime / Math.max(1, urls) + " ns/URL, Guava: "
+				+ guavaTime / Math.max(1, urls) + " ns/URL");
+	}
+
+	public static void main (String args[]) throws IOException {
+		if (args.length > 1 && args[0].equals("-regression")) {
+			regression(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
 		
 		//test the pld - blogspot thing
 		String url1 = "http://fruitariangoldendiet.blogspot.de/2017/05/blog-post_25.html";
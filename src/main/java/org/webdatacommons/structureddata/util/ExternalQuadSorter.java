@@ -0,0 +1,506 @@
+package org.webdatacommons.structureddata.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.webdatacommons.structureddata.io.LineSource;
+import org.webdatacommons.structureddata.io.NQuadsTokenizer;
+import org.webdatacommons.structureddata.io.QuadView;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Counter;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Stage;
+
+/**
+ * Sorts the quads of any number of files by graph and subject, independently
+ * of how the quads are distributed over the files. The lines are collected in
+ * buffers of a fixed memory budget. Full buffers are sorted and written to
+ * temporary runs, which are merged at the end.
+ * <p>
+ * The runs are written in a compact form: the graph and the subject are only
+ * written if they differ from the previous line, and the runs are deflated
+ * with the fastest level.
+ * <p>
+ * {@link #add(LineSource, String)} can be called by several threads at the
+ * same time, each call uses its own buffer.
+ *
+ */
+public class ExternalQuadSorter {
+
+	/**
+	 * Maximal number of runs merged at once. If there are more runs, they are
+	 * merged in several passes.
+	 */
+	public static final int MERGE_FACTOR = 128;
+
+	// bytes of bookkeeping per line in a buffer
+	private static final int BYTES_PER_LINE = 6 * 4 + 1;
+
+	private static final int FLAG_GRAPH = 1;
+	private static final int FLAG_SUBJECT = 2;
+
+	private final File tmpDirectory;
+	private final long bufferSize;
+	private final List<File> runs = new ArrayList<File>();
+	private final ConcurrentLinkedQueue<RunBuffer> buffers = new ConcurrentLinkedQueue<RunBuffer>();
+
+	/**
+	 * @param tmpDirectory
+	 *            folder for the runs, null for the system temp folder
+	 * @param bufferSize
+	 *            memory (in bytes) of the buffer of one thread
+	 */
+	public ExternalQuadSorter(File tmpDirectory, long bufferSize) {
+		this.tmpDirectory = tmpDirectory;
+		// a buffer has to fit into arrays
+		this.bufferSize = Math.min(bufferSize, 1L << 30);
+	}
+
+	/**
+	 * Adds all lines of a source, which is closed afterwards. Lines which
+	 * cannot be tokenized or do not have a graph are dropped. The lines are
+	 * counted in the {@link PipelineMetrics}.
+	 *
+	 * @param vocabFilter
+	 *            if not null, only quads containing the vocab in the predicate
+	 *            or object are kept
+	 * @return the number of added quads
+	 */
+	public long add(LineSource lines, String vocabFilter) throws IOException {
+		RunBuffer buffer = buffers.poll();
+		if (buffer == null) {
+			buffer = new RunBuffer();
+		}
+		NQuadsTokenizer tokenizer = new NQuadsTokenizer();
+		QuadView view = new QuadView();
+		// only some lines are timed, the counts are added at the end
+		PipelineMetrics.Sampler sampler = new PipelineMetrics.Sampler(Stage.PARSE, null);
+		long count = 0;
+		long errors = 0;
+		long added = 0;
+		try {
+			while (lines.next()) {
+				count++;
+				boolean timed = sampler.start();
+				boolean valid = tokenizer.tokenize(lines, view) && view.hasGraph();
+				if (timed) {
+					sampler.stop();
+				}
+				if (!valid) {
+					errors++;
+					continue;
+				}
+				if (vocabFilter != null && !view.predicate().toLowerCase().contains(vocabFilter)
+						&& !view.object().toLowerCase().contains(vocabFilter)) {
+					continue;
+				}
+				if (buffer.memory() + (lines.end() - lines.start()) + BYTES_PER_LINE > bufferSize
+						&& buffer.size > 0) {
+					addRun(buffer.writeRun());
+				}
+				buffer.add(view);
+				added++;
+			}
+			// the buffer is reused for the next source, but its lines have to
+			// be written now, as nobody knows when the last source is added
+			if (buffer.size > 0) {
+				addRun(buffer.writeRun());
+			}
+		} finally {
+			lines.close();
+			buffer.clear();
+			buffers.add(buffer);
+			PipelineMetrics.add(Counter.LINES, count);
+			PipelineMetrics.add(Counter.QUADS, count - errors);
+			PipelineMetrics.add(Counter.PARSE_ERRORS, errors);
+		}
+		return added;
+	}
+
+	private synchronized void addRun(File run) {
+		runs.add(run);
+	}
+
+	/**
+	 * @return the number of runs written so far
+	 */
+	public synchronized int getNumberOfRuns() {
+		return runs.size();
+	}
+
+	/**
+	 * Merges all runs and writes the lines grouped by graph and subject. The
+	 * runs are deleted afterwards. The stream is not closed.
+	 *
+	 * @return the number of written lines
+	 */
+	public synchronized long merge(OutputStream out) throws IOException {
+		buffers.clear();
+		List<File> pending = new ArrayList<File>(runs);
+		runs.clear();
+		// intermediate passes, until one merge is enough
+		while (pending.size() > MERGE_FACTOR) {
+			List<File> merged = new ArrayList<File>();
+			for (int i = 0; i < pending.size(); i += MERGE_FACTOR) {
+				List<File> group = pending.subList(i, Math.min(pending.size(), i + MERGE_FACTOR));
+				if (group.size() == 1) {
+					merged.add(group.get(0));
+					continue;
+				}
+				File run = newRunFile();
+				RunWriter writer = new RunWriter(run);
+				mergeRuns(group, writer);
+				writer.close();
+				merged.add(run);
+			}
+			pending = merged;
+		}
+		RunWriter writer = new RunWriter(out);
+		mergeRuns(pending, writer);
+		writer.flush();
+		return writer.written;
+	}
+
+	// k-way merge, the runs are deleted afterwards
+	private void mergeRuns(List<File> files, RunWriter writer) throws IOException {
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(Math.max(1, files.size()));
+		try {
+			for (int i = 0; i < files.size(); i++) {
+				RunReader reader = new RunReader(files.get(i), i);
+				if (reader.next()) {
+					queue.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+			while (!queue.isEmpty()) {
+				RunReader reader = queue.poll();
+				writer.write(reader.graph, 0, reader.graphLength, reader.subject, 0, reader.subjectLength, reader.line,
+						0, reader.lineLength);
+				if (reader.next()) {
+					queue.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+		} finally {
+			for (RunReader reader : queue) {
+				reader.close();
+			}
+			for (File f : files) {
+				f.delete();
+			}
+		}
+	}
+
+	private File newRunFile() throws IOException {
+		File run = File.createTempFile("quadsort", ".run", tmpDirectory);
+		run.deleteOnExit();
+		return run;
+	}
+
+	// compares two keys, the first byte of a subject key is its kind
+	private static int compare(byte[] a, int aFrom, int aLength, byte[] b, int bFrom, int bLength) {
+		int n = Math.min(aLength, bLength);
+		for (int i = 0; i < n; i++) {
+			int c = (a[aFrom + i] & 0xff) - (b[bFrom + i] & 0xff);
+			if (c != 0) {
+				return c;
+			}
+		}
+		return aLength - bLength;
+	}
+
+	/**
+	 * The raw lines of one thread together with the positions of their graph
+	 * and subject within the line.
+	 */
+	private class RunBuffer {
+		private byte[] data = new byte[1024 * 1024];
+		private int dataLength = 0;
+		// per line: offset, length, graph offset, graph length, subject offset,
+		// subject length (all relative to data), subject kind
+		private int[] lines = new int[6 * 16 * 1024];
+		private byte[] kinds = new byte[16 * 1024];
+		private int size = 0;
+
+		long memory() {
+			return (long) dataLength + (long) size * BYTES_PER_LINE;
+		}
+
+		void add(QuadView view) {
+			int from = view.lineStart();
+			int len = view.lineEnd() - from;
+			if (dataLength + len > data.length) {
+				// do not grow far beyond the budget
+				long grown = Math.min(data.length * 2L, Math.max(bufferSize, 1024 * 1024));
+				data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(grown, dataLength + len)));
+			}
+			if (size == kinds.length) {
+				lines = Arrays.copyOf(lines, lines.length * 2);
+				kinds = Arrays.copyOf(kinds, kinds.length * 2);
+			}
+			System.arraycopy(view.buffer(), from, data, dataLength, len);
+			int o = 6 * size;
+			lines[o] = dataLength;
+			lines[o + 1] = len;
+			lines[o + 2] = dataLength + view.start(QuadView.GRAPH) - from;
+			lines[o + 3] = view.length(QuadView.GRAPH);
+			lines[o + 4] = dataLength + view.start(QuadView.SUBJECT) - from;
+			lines[o + 5] = view.length(QuadView.SUBJECT);
+			kinds[size] = (byte) view.kind(QuadView.SUBJECT);
+			dataLength += len;
+			size++;
+		}
+
+		private int compare(int i, int j) {
+			int a = 6 * i;
+			int b = 6 * j;
+			int c = ExternalQuadSorter.compare(data, lines[a + 2], lines[a + 3], data, lines[b + 2], lines[b + 3]);
+			if (c != 0) {
+				return c;
+			}
+			c = kinds[i] - kinds[j];
+			if (c != 0) {
+				return c;
+			}
+			return ExternalQuadSorter.compare(data, lines[a + 4], lines[a + 5], data, lines[b + 4], lines[b + 5]);
+		}
+
+		// stable merge sort of the line indices, keeps the order of the lines
+		// of one subject
+		private int[] sort() {
+			int[] order = new int[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			int[] tmp = new int[size];
+			for (int width = 1; width < size; width *= 2) {
+				for (int lo = 0; lo < size - width; lo += 2 * width) {
+					int mid = lo + width;
+					int hi = Math.min(lo + 2 * width, size);
+					if (compare(order[mid - 1], order[mid]) <= 0) {
+						// already in order
+						continue;
+					}
+					int i = lo;
+					int j = mid;
+					int k = lo;
+					while (i < mid && j < hi) {
+						tmp[k++] = compare(order[j], order[i]) < 0 ? order[j++] : order[i++];
+					}
+					while (i < mid) {
+						tmp[k++] = order[i++];
+					}
+					while (j < hi) {
+						tmp[k++] = order[j++];
+					}
+					System.arraycopy(tmp, lo, order, lo, hi - lo);
+				}
+			}
+			return order;
+		}
+
+		// the sorting of the run is part of its write time
+		File writeRun() throws IOException {
+			long start = System.nanoTime();
+			File run = newRunFile();
+			RunWriter writer = new RunWriter(run);
+			byte[] subject = new byte[256];
+			for (int i : sort()) {
+				int o = 6 * i;
+				int subjectLength = lines[o + 5] + 1;
+				if (subject.length < subjectLength) {
+					subject = new byte[subjectLength * 2];
+				}
+				subject[0] = kinds[i];
+				System.arraycopy(data, lines[o + 4], subject, 1, subjectLength - 1);
+				writer.write(data, lines[o + 2], lines[o + 3], subject, 0, subjectLength, data, lines[o],
+						lines[o + 1]);
+			}
+			writer.close();
+			clear();
+			PipelineMetrics.addTime(Stage.WRITE, System.nanoTime() - start);
+			return run;
+		}
+
+		void clear() {
+			dataLength = 0;
+			size = 0;
+		}
+	}
+
+	/**
+	 * Writes sorted lines either into a run or, for the final merge, as plain
+	 * lines.
+	 */
+	private static class RunWriter {
+		private final OutputStream out;
+		// false for plain lines
+		private final boolean run;
+		private byte[] graph = new byte[256];
+		private int graphLength = -1;
+		private byte[] subject = new byte[256];
+		private int subjectLength = -1;
+		long written = 0;
+
+		RunWriter(File file) throws IOException {
+			this.out = new BufferedOutputStream(
+					new DeflaterOutputStream(new FileOutputStream(file), new Deflater(Deflater.BEST_SPEED), 64 * 1024),
+					64 * 1024);
+			this.run = true;
+		}
+
+		RunWriter(OutputStream out) {
+			this.out = out;
+			this.run = false;
+		}
+
+		void write(byte[] g, int gFrom, int gLength, byte[] s, int sFrom, int sLength, byte[] line, int lineFrom,
+				int lineLength) throws IOException {
+			written++;
+			if (!run) {
+				out.write(line, lineFrom, lineLength);
+				out.write('\n');
+				return;
+			}
+			int flags = 0;
+			boolean newGraph = compare(graph, 0, graphLength, g, gFrom, gLength) != 0 || graphLength < 0;
+			if (newGraph) {
+				flags |= FLAG_GRAPH;
+				graph = copy(graph, g, gFrom, gLength);
+				graphLength = gLength;
+			}
+			if (newGraph || compare(subject, 0, subjectLength, s, sFrom, sLength) != 0 || subjectLength < 0) {
+				flags |= FLAG_SUBJECT;
+				subject = copy(subject, s, sFrom, sLength);
+				subjectLength = sLength;
+			}
+			out.write(flags);
+			if ((flags & FLAG_GRAPH) != 0) {
+				writeVarInt(gLength);
+				out.write(g, gFrom, gLength);
+			}
+			if ((flags & FLAG_SUBJECT) != 0) {
+				writeVarInt(sLength);
+				out.write(s, sFrom, sLength);
+			}
+			writeVarInt(lineLength);
+			out.write(line, lineFrom, lineLength);
+		}
+
+		private static byte[] copy(byte[] target, byte[] source, int from, int length) {
+			if (target.length < length) {
+				target = new byte[length * 2];
+			}
+			System.arraycopy(source, from, target, 0, length);
+			return target;
+		}
+
+		private void writeVarInt(int v) throws IOException {
+			while ((v & ~0x7f) != 0) {
+				out.write((v & 0x7f) | 0x80);
+				v >>>= 7;
+			}
+			out.write(v);
+		}
+
+		void flush() throws IOException {
+			out.flush();
+		}
+
+		void close() throws IOException {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the lines of a run one after another.
+	 */
+	private static class RunReader implements Comparable<RunReader> {
+		private final DataInputStream in;
+		private final int index;
+		byte[] graph = new byte[256];
+		int graphLength;
+		byte[] subject = new byte[256];
+		int subjectLength;
+		byte[] line = new byte[1024];
+		int lineLength;
+
+		RunReader(File file, int index) throws IOException {
+			InputStream is = new InflaterInputStream(new FileInputStream(file), new Inflater(),
+					64 * 1024);
+			this.in = new DataInputStream(new BufferedInputStream(is, 64 * 1024));
+			this.index = index;
+		}
+
+		boolean next() throws IOException {
+			int flags = in.read();
+			if (flags < 0) {
+				return false;
+			}
+			if ((flags & FLAG_GRAPH) != 0) {
+				graphLength = readVarInt();
+				graph = ensure(graph, graphLength);
+				in.readFully(graph, 0, graphLength);
+			}
+			if ((flags & FLAG_SUBJECT) != 0) {
+				subjectLength = readVarInt();
+				subject = ensure(subject, subjectLength);
+				in.readFully(subject, 0, subjectLength);
+			}
+			lineLength = readVarInt();
+			line = ensure(line, lineLength);
+			in.readFully(line, 0, lineLength);
+			return true;
+		}
+
+		private static byte[] ensure(byte[] b, int length) {
+			return b.length < length ? new byte[length * 2] : b;
+		}
+
+		private int readVarInt() throws IOException {
+			int v = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				int b = in.read();
+				if (b < 0) {
+					throw new EOFException("Truncated run");
+				}
+				v |= (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) {
+					return v;
+				}
+			}
+			throw new IOException("Corrupt run");
+		}
+
+		@Override
+		public int compareTo(RunReader o) {
+			int c = compare(graph, 0, graphLength, o.graph, 0, o.graphLength);
+			if (c == 0) {
+				c = compare(subject, 0, subjectLength, o.subject, 0, o.subjectLength);
+			}
+			// keeps the order of the runs for equal keys
+			return c != 0 ? c : index - o.index;
+		}
+
+		void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package org.webdatacommons.structureddata.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shares the input files among several processes on one host through a
+ * common folder, without any other coordination. A process claims a file by
+ * creating its claim marker, which only succeeds for one process, and writes
+ * its results to its own worker folder. Once a worker wrote all of its
+ * results, it marks itself as complete and its files as done. The worker
+ * which finds all files done first (see {@link #claimMerge()}) merges the
+ * results of all complete workers.
+ * <p>
+ * The folder contains:
+ * <ul>
+ * <li>claims/ - one marker per claimed input file</li>
+ * <li>done/ - one marker per input file whose results are written</li>
+ * <li>workers/ - the results of each worker, with a marker once complete</li>
+ * <li>merge.lock - created by the worker which merges the results</li>
+ * </ul>
+ * The claims of a process which died are not released, they have to be
+ * removed by hand (or the folder is removed) before the run is repeated.
+ *
+ */
+public class FileTaskQueue {
+
+	private static final String COMPLETE = "complete";
+
+	private final File claims;
+	private final File done;
+	private final File workers;
+	private final File mergeLock;
+	private final String workerId;
+	private final File workerDirectory;
+	private final List<String> claimed = new ArrayList<String>();
+
+	/**
+	 * Joins the queue of the folder as a new worker.
+	 */
+	public FileTaskQueue(File directory) throws IOException {
+		claims = new File(directory, "claims");
+		done = new File(directory, "done");
+		workers = new File(directory, "workers");
+		mergeLock = new File(directory, "merge.lock");
+		// pid@host, made unique in case the pid is reused
+		workerId = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^A-Za-z0-9.-]", "_") + "-"
+				+ System.currentTimeMillis();
+		workerDirectory = new File(workers, workerId);
+		for (File f : new File[] { claims, done, workerDirectory }) {
+			if (!f.isDirectory() && !f.mkdirs()) {
+				throw new IOException("Could not create " + f);
+			}
+		}
+	}
+
+	public String getWorkerId() {
+		return workerId;
+	}
+
+	/**
+	 * @return the folder for the results of this worker
+	 */
+	public File getWorkerDirectory() {
+		return workerDirectory;
+	}
+
+	/**
+	 * @return true if this worker claimed the file, false if another one did
+	 *         before
+	 */
+	public boolean claim(File input) throws IOException {
+		try {
+			Files.createFile(new File(claims, input.getName()).toPath());
+		} catch (FileAlreadyExistsException e) {
+			return false;
+		}
+		synchronized (claimed) {
+			claimed.add(input.getName());
+		}
+		return true;
+	}
+
+	/**
+	 * Marks this worker as complete and its files as done. Has to be called
+	 * once all results of the worker are written.
+	 */
+	public void finish() throws IOException {
+		Files.createFile(new File(workerDirectory, COMPLETE).toPath());
+		synchronized (claimed) {
+			for (String name : claimed) {
+				try {
+					Files.createFile(new File(done, name).toPath());
+				} catch (FileAlreadyExistsException e) {
+					// done by an earlier run
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true if the results of all files are written
+	 */
+	public boolean isDone(List<File> inputs) {
+		for (File input : inputs) {
+			if (!new File(done, input.getName()).exists()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if this worker has to merge the results, which is only the
+	 *         case for one worker
+	 */
+	public boolean claimMerge() throws IOException {
+		try {
+			Files.createFile(mergeLock.toPath());
+			return true;
+		} catch (FileAlreadyExistsException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the result folders of all complete workers
+	 */
+	public List<File> getCompleteWorkers() {
+		List<File> complete = new ArrayList<File>();
+		File[] dirs = workers.listFiles();
+		if (dirs != null) {
+			for (File dir : dirs) {
+				if (new File(dir, COMPLETE).exists()) {
+					complete.add(dir);
+				}
+			}
+		}
+		return complete;
+	}
+}
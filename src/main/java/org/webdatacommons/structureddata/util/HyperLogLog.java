@@ -0,0 +1,269 @@
+package org.webdatacommons.structureddata.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * HyperLogLog sketch to estimate the number of distinct values (e.g. domains)
+ * with a fixed amount of memory. Sketches with the same precision can be
+ * merged, the result is the same as if all values were added to one sketch.
+ * <p>
+ * Small sketches are kept in a sparse form, so a sketch only needs the full
+ * 2^precision bytes once it has seen many values. The relative standard error
+ * of the estimate is 1.04 / sqrt(2^precision). Not thread safe.
+ *
+ */
+public class HyperLogLog {
+
+	public static final int MIN_PRECISION = 4;
+	public static final int MAX_PRECISION = 18;
+
+	private final int precision;
+	private final int m;
+
+	// dense form, null as long as the sketch is sparse
+	private byte[] registers;
+	// sparse form: open addressing table of (index << 8 | rank), 0 = empty
+	private int[] sparse = new int[8];
+	private int sparseSize = 0;
+
+	// cached estimate, -1 if the sketch was changed
+	private long estimate = 0;
+
+	/**
+	 * @param precision
+	 *            number of bits of the hash used to select a register, between
+	 *            {@link #MIN_PRECISION} and {@link #MAX_PRECISION}
+	 */
+	public HyperLogLog(int precision) {
+		if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException(
+					"Precision has to be between " + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision);
+		}
+		this.precision = precision;
+		this.m = 1 << precision;
+	}
+
+	/**
+	 * Adds a value by its 64 bit hash. The hash has to be well distributed,
+	 * see {@link #hash(long)} and {@link #hash(CharSequence)}.
+	 */
+	public void offer(long hash) {
+		int index = (int) (hash >>> (64 - precision));
+		// the remaining bits, with a stop bit so the rank is at most
+		// 64 - precision + 1
+		long w = (hash << precision) | (1L << (precision - 1));
+		int rank = Long.numberOfLeadingZeros(w) + 1;
+		set(index, rank);
+	}
+
+	private void set(int index, int rank) {
+		if (registers != null) {
+			if (registers[index] < rank) {
+				registers[index] = (byte) rank;
+				estimate = -1;
+			}
+			return;
+		}
+		int mask = sparse.length - 1;
+		int slot = (index * 0x9E3779B9 >>> 16) & mask;
+		while (sparse[slot] != 0) {
+			if (sparse[slot] >>> 8 == index) {
+				if ((sparse[slot] & 0xff) < rank) {
+					sparse[slot] = index << 8 | rank;
+					estimate = -1;
+				}
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		sparse[slot] = index << 8 | rank;
+		sparseSize++;
+		estimate = -1;
+		// the sparse table needs 8 bytes per register, the dense form 1
+		if (sparseSize * 8 >= m) {
+			toDense();
+		} else if (sparseSize * 2 > sparse.length) {
+			int[] old = sparse;
+			sparse = new int[old.length * 2];
+			sparseSize = 0;
+			for (int e : old) {
+				if (e != 0) {
+					set(e >>> 8, e & 0xff);
+				}
+			}
+		}
+	}
+
+	private void toDense() {
+		byte[] dense = new byte[m];
+		for (int e : sparse) {
+			if (e != 0) {
+				dense[e >>> 8] = (byte) Math.max(dense[e >>> 8], e & 0xff);
+			}
+		}
+		registers = dense;
+		sparse = null;
+		sparseSize = 0;
+	}
+
+	/**
+	 * Adds all values of another sketch with the same precision.
+	 */
+	public void merge(HyperLogLog other) {
+		if (other.precision != precision) {
+			throw new IllegalArgumentException("Cannot merge sketches of different precision");
+		}
+		if (other.registers != null) {
+			if (registers == null) {
+				toDense();
+			}
+			for (int i = 0; i < m; i++) {
+				if (registers[i] < other.registers[i]) {
+					registers[i] = other.registers[i];
+				}
+			}
+			estimate = -1;
+		} else {
+			for (int e : other.sparse) {
+				if (e != 0) {
+					set(e >>> 8, e & 0xff);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the estimated number of distinct values
+	 */
+	public long cardinality() {
+		if (estimate >= 0) {
+			return estimate;
+		}
+		byte[] r = registers;
+		if (r == null) {
+			r = new byte[m];
+			for (int e : sparse) {
+				if (e != 0) {
+					r[e >>> 8] = (byte) Math.max(r[e >>> 8], e & 0xff);
+				}
+			}
+		}
+		double sum = 0;
+		int zeros = 0;
+		for (byte b : r) {
+			sum += Math.scalb(1.0, -b);
+			if (b == 0) {
+				zeros++;
+			}
+		}
+		double raw = alpha() * m * m / sum;
+		if (raw <= 2.5 * m && zeros > 0) {
+			// small range correction (linear counting)
+			raw = m * Math.log((double) m / zeros);
+		}
+		estimate = Math.round(raw);
+		return estimate;
+	}
+
+	/**
+	 * @return the relative standard error of the estimate
+	 */
+	public double relativeError() {
+		return 1.04 / Math.sqrt(m);
+	}
+
+	public int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * @return the bytes used by the registers of the sketch
+	 */
+	public int memory() {
+		return registers != null ? registers.length : sparse.length * 4;
+	}
+
+	/**
+	 * Writes the registers of the sketch, see {@link #read(DataInputStream)}.
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeByte(precision);
+		if (registers != null) {
+			out.writeBoolean(true);
+			out.write(registers);
+		} else {
+			out.writeBoolean(false);
+			out.writeInt(sparseSize);
+			for (int e : sparse) {
+				if (e != 0) {
+					out.writeInt(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a sketch written by {@link #write(DataOutputStream)}
+	 */
+	public static HyperLogLog read(DataInputStream in) throws IOException {
+		HyperLogLog sketch = new HyperLogLog(in.readByte());
+		if (in.readBoolean()) {
+			sketch.registers = new byte[sketch.m];
+			in.readFully(sketch.registers);
+			sketch.sparse = null;
+		} else {
+			int n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				int e = in.readInt();
+				sketch.set(e >>> 8, e & 0xff);
+			}
+		}
+		sketch.estimate = -1;
+		return sketch;
+	}
+
+	private double alpha() {
+		switch (m) {
+		case 16:
+			return 0.673;
+		case 32:
+			return 0.697;
+		case 64:
+			return 0.709;
+		default:
+			return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+
+	/**
+	 * 64 bit hash of a number, e.g. a dense id (finalizer of MurmurHash3).
+	 */
+	public static long hash(long value) {
+		long h = value;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * 64 bit hash of a string.
+	 */
+	public static long hash(CharSequence s) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return hash(h);
+	}
+
+	@Override
+	public String toString() {
+		return "HyperLogLog[p=" + precision + ", estimate=" + cardinality() + "]";
+	}
+}
@@ -0,0 +1,124 @@
+package org.webdatacommons.structureddata.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of non-negative ints (e.g. ids of a {@link TermDictionary}) with open
+ * addressing, which needs a fraction of the memory of a
+ * {@link java.util.HashSet} of Integers. Not thread safe.
+ *
+ */
+public class IntHashSet {
+
+	private static final int EMPTY = -1;
+
+	private int[] table;
+	private int mask;
+	private int size = 0;
+
+	public IntHashSet() {
+		this(8);
+	}
+
+	/**
+	 * @param expected
+	 *            number of values which can be added without resizing
+	 */
+	public IntHashSet(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) * 2;
+		table = new int[capacity];
+		Arrays.fill(table, EMPTY);
+		mask = capacity - 1;
+	}
+
+	/**
+	 * @param value
+	 *            a non-negative value
+	 * @return true if the value was not contained before
+	 */
+	public boolean add(int value) {
+		int slot = slot(value);
+		while (table[slot] != EMPTY) {
+			if (table[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = value;
+		if (++size * 2 > table.length) {
+			resize();
+		}
+		return true;
+	}
+
+	public boolean contains(int value) {
+		int slot = slot(value);
+		while (table[slot] != EMPTY) {
+			if (table[slot] == value) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds all values of another set.
+	 */
+	public void addAll(IntHashSet other) {
+		for (int value : other.table) {
+			if (value != EMPTY) {
+				add(value);
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the values in no particular order
+	 */
+	public int[] toArray() {
+		int[] values = new int[size];
+		int i = 0;
+		for (int value : table) {
+			if (value != EMPTY) {
+				values[i++] = value;
+			}
+		}
+		return values;
+	}
+
+	public void clear() {
+		Arrays.fill(table, EMPTY);
+		size = 0;
+	}
+
+	private int slot(int value) {
+		// spreads dense ids over the table
+		int h = value * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void resize() {
+		int[] old = table;
+		table = new int[old.length * 2];
+		Arrays.fill(table, EMPTY);
+		mask = table.length - 1;
+		for (int value : old) {
+			if (value != EMPTY) {
+				int slot = slot(value);
+				while (table[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = value;
+			}
+		}
+	}
+}
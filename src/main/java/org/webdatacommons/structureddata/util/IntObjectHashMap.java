@@ -0,0 +1,140 @@
+package org.webdatacommons.structureddata.util;
+
+import java.util.Arrays;
+
+/**
+ * Map from non-negative ints (e.g. ids of a {@link TermDictionary}) to objects
+ * with open addressing, which avoids the boxed keys and the entry objects of a
+ * {@link java.util.HashMap}. Not thread safe.
+ *
+ * @param <V>
+ *            the type of the values
+ */
+public class IntObjectHashMap<V> {
+
+	private static final int EMPTY = -1;
+
+	private int[] keys;
+	private Object[] values;
+	private int mask;
+	private int size = 0;
+
+	public IntObjectHashMap() {
+		this(8);
+	}
+
+	/**
+	 * @param expected
+	 *            number of entries which can be added without resizing
+	 */
+	public IntObjectHashMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) * 2;
+		keys = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * @return the value of the key or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return (V) values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * @param key
+	 *            a non-negative key
+	 * @return the previous value of the key or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				V old = (V) values[slot];
+				values[slot] = value;
+				return old;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size * 2 > keys.length) {
+			resize();
+		}
+		return null;
+	}
+
+	public boolean containsKey(int key) {
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the keys in no particular order
+	 */
+	public int[] keys() {
+		int[] result = new int[size];
+		int i = 0;
+		for (int key : keys) {
+			if (key != EMPTY) {
+				result[i++] = key;
+			}
+		}
+		return result;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private int slot(int key) {
+		// spreads dense ids over the table
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void resize() {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		values = new Object[oldKeys.length * 2];
+		mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = slot(oldKeys[i]);
+				while (keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package org.webdatacommons.structureddata.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+
+
+/**
+ * Cleans N-Quads lines in one pass, so that they can be read by the ldif
+ * parser:
+ * <ul>
+ * <li>all non-ASCII characters are removed</li>
+ * <li>language tags of literals are normalized using a table. Tags which are
+ * not part of the table but contain an underscore (e.g. en_US, pt_br) are cut
+ * at the first underscore.</li>
+ * </ul>
+ * Lines which do not need to be changed are returned as they are, so nothing
+ * is allocated for them. Instances are immutable and can be shared by all
+ * threads.
+ *
+ */
+public class LineSanitizer {
+
+	private static final Map<String, String> DEFAULT_TABLE = new LinkedHashMap<String, String>();
+	static {
+		DEFAULT_TABLE.put("en_US", "en");
+		DEFAULT_TABLE.put("de_DE", "de");
+		DEFAULT_TABLE.put("en_GB", "en");
+		DEFAULT_TABLE.put("pt_br", "pt");
+		DEFAULT_TABLE.put("fr_CA", "fr");
+		DEFAULT_TABLE.put("pt_BR", "pt");
+		DEFAULT_TABLE.put("fr_BE", "fr");
+		DEFAULT_TABLE.put("da_DK", "da");
+		DEFAULT_TABLE.put("tr_TR", "tr");
+	}
+
+	// open addressing table of the language tags (ASCII only)
+	private final byte[][] keys;
+	private final byte[][] values;
+	private final int mask;
+
+	/**
+	 * Creates a sanitizer with the default table.
+	 */
+	public LineSanitizer() {
+		this(DEFAULT_TABLE);
+	}
+
+	/**
+	 * @param table
+	 *            language tag (without @) to its replacement. A replacement may
+	 *            not be longer than the tag.
+	 */
+	public LineSanitizer(Map<String, String> table) {
+		int capacity = Integer.highestOneBit(Math.max(table.size(), 8) * 4);
+		keys = new byte[capacity][];
+		values = new byte[capacity][];
+		mask = capacity - 1;
+		for (Map.Entry<String, String> e : table.entrySet()) {
+			byte[] key = e.getKey().getBytes(StandardCharsets.US_ASCII);
+			byte[] value = e.getValue().getBytes(StandardCharsets.US_ASCII);
+			if (value.length > key.length) {
+				throw new IllegalArgumentException(
+						"Replacement " + e.getValue() + " is longer than language tag " + e.getKey());
+			}
+			int slot = hash(key, 0, key.length) & mask;
+			while (keys[slot] != null && !equals(keys[slot], key, 0, key.length)) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			values[slot] = value;
+		}
+	}
+
+	/**
+	 * Creates a sanitizer from a file with one tab separated mapping (tag,
+	 * replacement) per line, in addition to the default table.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the sanitizer
+	 * @throws IOException
+	 */
+	public static LineSanitizer fromFile(File file) throws IOException {
+		Map<String, String> table = new LinkedHashMap<String, String>(DEFAULT_TABLE);
+		BufferedReader br = InputStreamFactory.getBufferedReader(file);
+		String line;
+		while ((line = br.readLine()) != null) {
+			if (line.trim().isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] tok = line.split("\t");
+			if (tok.length != 2) {
+				br.close();
+				throw new IOException("Invalid language tag mapping: " + line);
+			}
+			table.put(tok[0].trim().replace("@", ""), tok[1].trim().replace("@", ""));
+		}
+		br.close();
+		return new LineSanitizer(table);
+	}
+
+	/**
+	 * Cleans one line.
+	 *
+	 * @param line
+	 *            the line
+	 * @return the cleaned line, or the same instance if nothing was changed.
+	 */
+	public String sanitize(String line) {
+		StringBuilder sb = null;
+		int len = line.length();
+		int i = 0;
+		while (i < len) {
+			char c = line.charAt(i);
+			if (c > 0x7F) {
+				if (sb == null) {
+					sb = new StringBuilder(len).append(line, 0, i);
+				}
+				i++;
+				continue;
+			}
+			if (c == '@' && i > 0 && line.charAt(i - 1) == '"') {
+				int tagStart = i + 1;
+				int tagEnd = tagStart;
+				while (tagEnd < len && isTagChar(line.charAt(tagEnd))) {
+					tagEnd++;
+				}
+				int replacement = lookup(line, tagStart, tagEnd);
+				int keep = replacement < 0 ? underscore(line, tagStart, tagEnd) : -1;
+				if (replacement >= 0 || keep >= 0) {
+					if (sb == null) {
+						sb = new StringBuilder(len).append(line, 0, i);
+					}
+					sb.append('@');
+					if (replacement >= 0) {
+						for (byte b : values[replacement]) {
+							sb.append((char) b);
+						}
+					} else {
+						sb.append(line, tagStart, keep);
+					}
+					i = tagEnd;
+					continue;
+				}
+			}
+			if (sb != null) {
+				sb.append(c);
+			}
+			i++;
+		}
+		return sb == null ? line : sb.toString();
+	}
+
+	/**
+	 * Cleans one line in place.
+	 *
+	 * @param buffer
+	 *            the bytes (UTF-8)
+	 * @param from
+	 *            first byte of the line
+	 * @param to
+	 *            exclusive end of the line
+	 * @return the new exclusive end of the line, which is to if nothing was
+	 *         changed.
+	 */
+	public int sanitize(byte[] buffer, int from, int to) {
+		int w = from;
+		int i = from;
+		while (i < to) {
+			byte b = buffer[i];
+			if (b < 0) {
+				// part of a multi byte character
+				i++;
+				continue;
+			}
+			if (b == '@' && i > from && buffer[i - 1] == '"') {
+				int tagStart = i + 1;
+				int tagEnd = tagStart;
+				while (tagEnd < to && buffer[tagEnd] >= 0 && isTagChar((char) buffer[tagEnd])) {
+					tagEnd++;
+				}
+				int slot = lookup(buffer, tagStart, tagEnd);
+				int keep = slot < 0 ? underscore(buffer, tagStart, tagEnd) : -1;
+				if (slot >= 0 || keep >= 0) {
+					buffer[w++] = '@';
+					if (slot >= 0) {
+						byte[] value = values[slot];
+						System.arraycopy(value, 0, buffer, w, value.length);
+						w += value.length;
+					} else {
+						// as keep <= tagEnd and w <= i, the copy never
+						// overwrites unread bytes
+						System.arraycopy(buffer, tagStart, buffer, w, keep - tagStart);
+						w += keep - tagStart;
+					}
+					i = tagEnd;
+					continue;
+				}
+			}
+			buffer[w++] = b;
+			i++;
+		}
+		return w;
+	}
+
+	private int lookup(CharSequence s, int from, int to) {
+		int h = 0;
+		for (int i = from; i < to; i++) {
+			h = 31 * h + s.charAt(i);
+		}
+		int slot = h & mask;
+		while (keys[slot] != null) {
+			byte[] key = keys[slot];
+			if (key.length == to - from) {
+				boolean match = true;
+				for (int i = 0; i < key.length && match; i++) {
+					match = key[i] == s.charAt(from + i);
+				}
+				if (match) {
+					return slot;
+				}
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int lookup(byte[] b, int from, int to) {
+		int slot = hash(b, from, to) & mask;
+		while (keys[slot] != null) {
+			if (equals(keys[slot], b, from, to)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	// position of the first underscore of a tag, if the tag has a primary
+	// language before it, otherwise -1
+	private static int underscore(CharSequence s, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			if (s.charAt(i) == '_') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int underscore(byte[] b, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			if (b[i] == '_') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int hash(byte[] b, int from, int to) {
+		int h = 0;
+		for (int i = from; i < to; i++) {
+			h = 31 * h + b[i];
+		}
+		return h;
+	}
+
+	private static boolean equals(byte[] key, byte[] b, int from, int to) {
+		if (key.length != to - from) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (key[i] != b[from + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isTagChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+	}
+}
@@ -0,0 +1,110 @@
+package org.webdatacommons.structureddata.util;
+
+import java.util.Arrays;
+
+/**
+ * Map from non-negative longs (e.g. two ids of a {@link TermDictionary}) to
+ * ints with open addressing, without boxing. Not thread safe.
+ *
+ */
+public class LongIntHashMap {
+
+	private static final long EMPTY = -1;
+
+	/**
+	 * Returned by {@link #get(long)} if the key is not contained.
+	 */
+	public static final int NO_VALUE = -1;
+
+	private long[] keys;
+	private int[] values;
+	private int mask;
+	private int size = 0;
+
+	public LongIntHashMap() {
+		this(8);
+	}
+
+	/**
+	 * @param expected
+	 *            number of entries which can be added without resizing
+	 */
+	public LongIntHashMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) * 2;
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * @return the value of the key or {@link #NO_VALUE}
+	 */
+	public int get(long key) {
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return NO_VALUE;
+	}
+
+	/**
+	 * @param key
+	 *            a non-negative key
+	 */
+	public void put(long key, int value) {
+		int slot = slot(key);
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size * 2 > keys.length) {
+			resize();
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private void resize() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		values = new int[oldKeys.length * 2];
+		mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = slot(oldKeys[i]);
+				while (keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
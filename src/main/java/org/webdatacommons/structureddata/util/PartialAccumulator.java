@@ -0,0 +1,119 @@
+package org.webdatacommons.structureddata.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the thread-local results (partials) of the processed files and
+ * merges them into one result without a global lock. Adding a partial only
+ * appends it to a lock-free queue. If more than {@link #maxPending} partials
+ * are waiting, the adding thread merges two of them, so the memory stays
+ * bounded while the other threads keep on processing. The remaining partials
+ * are merged by a parallel tree reduction in {@link #finish(int)}.
+ * <p>
+ * The merge function has to be associative and commutative, as the partials
+ * are merged in no particular order.
+ *
+ * @param <P>
+ *            the type of the partials
+ */
+public class PartialAccumulator<P> {
+
+	/**
+	 * Merges two partials, which are owned by the calling thread.
+	 */
+	public interface Merger<P> {
+		/**
+		 * @return the merged partial, may be one of the two arguments
+		 */
+		P merge(P a, P b);
+	}
+
+	private final ConcurrentLinkedQueue<P> partials = new ConcurrentLinkedQueue<P>();
+	// number of partials in the queue, the size of the queue is not constant
+	// time
+	private final AtomicInteger pending = new AtomicInteger();
+	private final Merger<P> merger;
+	private final int maxPending;
+
+	/**
+	 * @param merger
+	 *            merges two partials
+	 * @param maxPending
+	 *            number of partials which are kept before they are merged
+	 *            while adding, e.g. the number of threads
+	 */
+	public PartialAccumulator(Merger<P> merger, int maxPending) {
+		this.merger = merger;
+		this.maxPending = Math.max(1, maxPending);
+	}
+
+	/**
+	 * Adds the partial of a file. The partial must not be changed afterwards.
+	 */
+	public void add(P partial) {
+		while (pending.get() >= maxPending) {
+			P other = poll();
+			if (other == null) {
+				break;
+			}
+			partial = merger.merge(partial, other);
+		}
+		partials.add(partial);
+		pending.incrementAndGet();
+	}
+
+	private P poll() {
+		P partial = partials.poll();
+		if (partial != null) {
+			pending.decrementAndGet();
+		}
+		return partial;
+	}
+
+	/**
+	 * Merges all partials which were added, after all files are processed.
+	 * Pairs of partials are merged in parallel until one is left.
+	 *
+	 * @param threads
+	 *            number of threads used to merge
+	 * @return the result or null if no partial was added
+	 */
+	public P finish(int threads) throws Exception {
+		List<P> level = new ArrayList<P>();
+		P partial;
+		while ((partial = poll()) != null) {
+			level.add(partial);
+		}
+		if (level.size() < 2) {
+			return level.isEmpty() ? null : level.get(0);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, level.size() / 2)));
+		try {
+			while (level.size() > 1) {
+				List<Future<P>> merged = new ArrayList<Future<P>>();
+				for (int i = 0; i + 1 < level.size(); i += 2) {
+					final P a = level.get(i);
+					final P b = level.get(i + 1);
+					merged.add(pool.submit(() -> merger.merge(a, b)));
+				}
+				List<P> next = new ArrayList<P>();
+				for (Future<P> f : merged) {
+					next.add(f.get());
+				}
+				if (level.size() % 2 == 1) {
+					next.add(level.get(level.size() - 1));
+				}
+				level = next;
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return level.get(0);
+	}
+}
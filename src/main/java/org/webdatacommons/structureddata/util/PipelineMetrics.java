@@ -0,0 +1,535 @@
+package org.webdatacommons.structureddata.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+/**
+ * Counters and stage timers of the pipeline of all commands, shared by all
+ * threads. The counters are {@link LongAdder}s, which the threads update
+ * without contention. Hot loops add their counts in batches and time only
+ * every n-th call (see {@link Sampler}), so the overhead is negligible.
+ * <p>
+ * While a command runs, the progress (compressed input bytes read of all
+ * input bytes), the throughput and the ETA are printed periodically and the
+ * metrics are optionally written to a file in the Prometheus text format and
+ * published over JMX (see {@link #startReporting(String, File, int, boolean)}).
+ *
+ */
+public class PipelineMetrics {
+
+	public enum Counter {
+		INPUT_BYTES("input_bytes", "Compressed bytes read from the input files."),
+		INPUT_FILES("input_files", "Input files which are completely processed."),
+		LINES("lines", "Lines read."),
+		QUADS("quads", "Quads parsed."),
+		PARSE_ERRORS("parse_errors", "Lines which could not be parsed."),
+		PAGES("pages", "Pages (URLs) processed."),
+		ENTITIES("entities", "Entities (subjects) processed.");
+
+		final String metric;
+		final String help;
+
+		Counter(String metric, String help) {
+			this.metric = metric;
+			this.help = help;
+		}
+	}
+
+	public enum Stage {
+		READ("read"), PARSE("parse"), PLD("pld"), AGGREGATE("aggregate"), MERGE("merge"), WRITE("write");
+
+		final String label;
+
+		Stage(String label) {
+			this.label = label;
+		}
+	}
+
+	private static final String PREFIX = "structureddata_";
+	private static final String OBJECT_NAME = "org.webdatacommons.structureddata:type=PipelineMetrics";
+
+	private static final LongAdder[] COUNTERS = new LongAdder[Counter.values().length];
+	private static final LongAdder[] STAGE_NANOS = new LongAdder[Stage.values().length];
+	static {
+		for (int i = 0; i < COUNTERS.length; i++) {
+			COUNTERS[i] = new LongAdder();
+		}
+		for (int i = 0; i < STAGE_NANOS.length; i++) {
+			STAGE_NANOS[i] = new LongAdder();
+		}
+	}
+	private static final LongAdder EXPECTED_INPUT_BYTES = new LongAdder();
+	// counts of a pass over an input of the current thread
+	private static final ThreadLocal<Tally> TALLY = new ThreadLocal<Tally>();
+
+	private static volatile long startNanos = System.nanoTime();
+	private static String command = "";
+	private static ScheduledExecutorService reporter;
+	private static File metricsFile;
+	private static ObjectName objectName;
+	// input bytes and time of the last report, for the current throughput
+	private static long lastBytes = 0;
+	private static long lastNanos = startNanos;
+
+	public static void add(Counter counter, long value) {
+		add(counter, value, TALLY.get());
+	}
+
+	/**
+	 * Adds to a counter and to the tally of a pass, e.g. for a stream which is
+	 * read by another thread than the one which opened it.
+	 *
+	 * @param tally
+	 *            may be null
+	 */
+	public static void add(Counter counter, long value, Tally tally) {
+		COUNTERS[counter.ordinal()].add(value);
+		if (tally != null) {
+			tally.counters[counter.ordinal()].add(value);
+		}
+	}
+
+	public static void increment(Counter counter) {
+		add(counter, 1, TALLY.get());
+	}
+
+	public static long get(Counter counter) {
+		return COUNTERS[counter.ordinal()].sum();
+	}
+
+	/**
+	 * Adds time spent in a stage, e.g. {@code addTime(Stage.MERGE,
+	 * System.nanoTime() - start)}.
+	 */
+	public static void addTime(Stage stage, long nanos) {
+		STAGE_NANOS[stage.ordinal()].add(nanos);
+	}
+
+	/**
+	 * @return the time spent in the stage by all threads
+	 */
+	public static double getSeconds(Stage stage) {
+		return STAGE_NANOS[stage.ordinal()].sum() / 1e9;
+	}
+
+	/**
+	 * Adds the size of the input files to the expected input, which is the
+	 * base of the progress and the ETA.
+	 */
+	public static void addExpectedInput(Collection<File> files) {
+		for (File f : files) {
+			EXPECTED_INPUT_BYTES.add(f.length());
+		}
+	}
+
+	/**
+	 * Removes a file from the expected input, which is not read by this
+	 * process (e.g. claimed by another one or resumed from a checkpoint).
+	 */
+	public static void removeExpectedInput(File file) {
+		EXPECTED_INPUT_BYTES.add(-file.length());
+	}
+
+	/**
+	 * Starts a pass over an input, which may be aborted and repeated (e.g. the
+	 * streaming of a file, which falls back to spilling). Until
+	 * {@link #stopTally()}, all counts of the current thread are added to the
+	 * tally as well, so they can be taken back by {@link Tally#revert()}.
+	 * Streams which count their bytes keep the tally of the thread which
+	 * opened them (see {@link #currentTally()}).
+	 */
+	public static Tally startTally() {
+		Tally tally = new Tally();
+		TALLY.set(tally);
+		return tally;
+	}
+
+	public static void stopTally() {
+		TALLY.remove();
+	}
+
+	/**
+	 * @return the tally of the current thread or null
+	 */
+	public static Tally currentTally() {
+		return TALLY.get();
+	}
+
+	/**
+	 * The counts of one pass over an input (see {@link #startTally()}).
+	 */
+	public static class Tally {
+		private final LongAdder[] counters = new LongAdder[Counter.values().length];
+
+		Tally() {
+			for (int i = 0; i < counters.length; i++) {
+				counters[i] = new LongAdder();
+			}
+		}
+
+		public long get(Counter counter) {
+			return counters[counter.ordinal()].sum();
+		}
+
+		/**
+		 * Subtracts the counts of the pass from the metrics, all counters if
+		 * none are given.
+		 */
+		public void revert(Counter... revert) {
+			for (Counter counter : revert.length > 0 ? revert : Counter.values()) {
+				COUNTERS[counter.ordinal()].add(-counters[counter.ordinal()].sumThenReset());
+			}
+		}
+	}
+
+	/**
+	 * Times every n-th call of a hot operation and extrapolates the time of
+	 * the others, so only a few calls pay for {@link System#nanoTime()}. Also
+	 * counts the calls and adds them in batches. Each thread needs its own
+	 * sampler, which has to be flushed at the end.
+	 */
+	public static class Sampler {
+		// every 16th call is timed
+		private static final int MASK = 15;
+		private static final int BATCH = 4096;
+
+		private final Stage stage;
+		private final Counter counter;
+		private int calls = 0;
+		private long start;
+
+		/**
+		 * @param counter
+		 *            counts the calls, may be null
+		 */
+		public Sampler(Stage stage, Counter counter) {
+			this.stage = stage;
+			this.counter = counter;
+		}
+
+		/**
+		 * @return true if this call is timed, {@link #stop()} has to be
+		 *         called after the operation then
+		 */
+		public boolean start() {
+			// the batch size is a multiple of the sampling interval, so the
+			// batch is full in a timed call
+			if ((++calls & MASK) != 0) {
+				return false;
+			}
+			start = System.nanoTime();
+			return true;
+		}
+
+		/**
+		 * @return the end of the timed operation, e.g. the start of the next
+		 *         one (see {@link #stop(Stage, long)})
+		 */
+		public long stop() {
+			long end = System.nanoTime();
+			addTime(stage, (end - start) * (MASK + 1));
+			if (calls == BATCH) {
+				flush();
+			}
+			return end;
+		}
+
+		/**
+		 * Adds the time since the start of a following operation to another
+		 * stage, only in a timed call.
+		 *
+		 * @return the end of the operation
+		 */
+		public long stop(Stage other, long start) {
+			long end = System.nanoTime();
+			addTime(other, (end - start) * (MASK + 1));
+			return end;
+		}
+
+		/**
+		 * Adds the calls which are not counted yet.
+		 */
+		public void flush() {
+			if (counter != null) {
+				add(counter, calls);
+			}
+			calls = 0;
+		}
+	}
+
+	/**
+	 * Starts to report the metrics of a command.
+	 *
+	 * @param name
+	 *            name of the command, the label of all metrics
+	 * @param file
+	 *            file the metrics are written to in the Prometheus text format
+	 *            at each report, null to not write them
+	 * @param intervalSeconds
+	 *            seconds between two reports, 0 disables the periodic reports
+	 * @param jmx
+	 *            publishes the metrics as MXBean
+	 */
+	public static synchronized void startReporting(String name, File file, int intervalSeconds, boolean jmx) {
+		command = name == null ? "" : name;
+		metricsFile = file;
+		startNanos = System.nanoTime();
+		lastNanos = startNanos;
+		lastBytes = get(Counter.INPUT_BYTES);
+		if (jmx) {
+			try {
+				objectName = new ObjectName(OBJECT_NAME);
+				ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), objectName);
+			} catch (Exception e) {
+				System.out.println("Could not register the metrics MXBean.");
+				e.printStackTrace();
+				objectName = null;
+			}
+		}
+		if (intervalSeconds > 0) {
+			reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "metrics-reporter");
+				t.setDaemon(true);
+				return t;
+			});
+			reporter.scheduleAtFixedRate(PipelineMetrics::report, intervalSeconds, intervalSeconds,
+					TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Stops the periodic reports, writes the final metrics and prints the
+	 * time spent in each stage.
+	 */
+	public static synchronized void stopReporting() {
+		if (reporter != null) {
+			reporter.shutdownNow();
+			reporter = null;
+		}
+		writeMetricsFile();
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (Exception e) {
+				// already gone
+			}
+			objectName = null;
+		}
+		StringBuilder sb = new StringBuilder("Time per stage (all threads):");
+		for (Stage stage : Stage.values()) {
+			sb.append(String.format(Locale.ROOT, " %s %.1f s", stage.label, getSeconds(stage)));
+		}
+		System.out.println(sb);
+	}
+
+	// prints the progress and writes the metrics file
+	private static synchronized void report() {
+		try {
+			long now = System.nanoTime();
+			long bytes = get(Counter.INPUT_BYTES);
+			double current = (bytes - lastBytes) / Math.max(1e-9, (now - lastNanos) / 1e9);
+			lastBytes = bytes;
+			lastNanos = now;
+			System.out.println(progress(current));
+			writeMetricsFile();
+		} catch (Exception e) {
+			// the reports must never stop the command
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return e.g. "Progress: 12.5% of 4.0 GB, 80.2 MB/s, 350000 quads/s, ETA
+	 *         0:45:10"
+	 */
+	static String progress(double currentBytesPerSecond) {
+		double elapsed = getElapsedSeconds();
+		StringBuilder sb = new StringBuilder("Progress: ");
+		long expected = EXPECTED_INPUT_BYTES.sum();
+		if (expected > 0) {
+			sb.append(String.format(Locale.ROOT, "%.1f%% of %s, ", 100 * getProgress(), size(expected)));
+		} else {
+			sb.append(size(get(Counter.INPUT_BYTES))).append(", ");
+		}
+		sb.append(size((long) currentBytesPerSecond)).append("/s");
+		long quads = get(Counter.QUADS);
+		long lines = get(Counter.LINES);
+		if (quads > 0) {
+			sb.append(", ").append((long) (quads / elapsed)).append(" quads/s");
+		} else if (lines > 0) {
+			sb.append(", ").append((long) (lines / elapsed)).append(" lines/s");
+		}
+		double eta = getEtaSeconds();
+		if (eta >= 0) {
+			long s = (long) eta;
+			sb.append(String.format(Locale.ROOT, ", ETA %d:%02d:%02d", s / 3600, s / 60 % 60, s % 60));
+		}
+		return sb.toString();
+	}
+
+	private static String size(long bytes) {
+		if (bytes < 1024 * 1024) {
+			return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+		}
+		if (bytes < 1024L * 1024 * 1024) {
+			return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+		}
+		return String.format(Locale.ROOT, "%.2f GB", bytes / (1024.0 * 1024 * 1024));
+	}
+
+	static double getElapsedSeconds() {
+		return Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+	}
+
+	/**
+	 * @return the share of the expected input which is read, 0 if the input
+	 *         is unknown
+	 */
+	static double getProgress() {
+		long expected = EXPECTED_INPUT_BYTES.sum();
+		return expected > 0 ? Math.min(1, get(Counter.INPUT_BYTES) / (double) expected) : 0;
+	}
+
+	/**
+	 * @return the seconds until the expected input is read at the average
+	 *         throughput so far, -1 if unknown
+	 */
+	static double getEtaSeconds() {
+		long expected = EXPECTED_INPUT_BYTES.sum();
+		long bytes = get(Counter.INPUT_BYTES);
+		if (expected <= 0 || bytes <= 0) {
+			return -1;
+		}
+		return Math.max(0, expected - bytes) / (bytes / getElapsedSeconds());
+	}
+
+	/**
+	 * @return the metrics in the Prometheus text format
+	 */
+	public static String toPrometheus() {
+		String label = "{command=\"" + command.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+		StringBuilder sb = new StringBuilder();
+		for (Counter c : Counter.values()) {
+			metric(sb, PREFIX + c.metric + "_total", "counter", c.help);
+			sb.append(PREFIX).append(c.metric).append("_total").append(label).append("} ").append(get(c))
+					.append('\n');
+		}
+		metric(sb, PREFIX + "stage_seconds_total", "counter", "Time spent in each stage by all threads.");
+		for (Stage s : Stage.values()) {
+			sb.append(PREFIX).append("stage_seconds_total").append(label).append(",stage=\"").append(s.label)
+					.append("\"} ").append(String.format(Locale.ROOT, "%.3f", getSeconds(s))).append('\n');
+		}
+		gauge(sb, label, "expected_input_bytes", "Size of all input files of this process.",
+				EXPECTED_INPUT_BYTES.sum());
+		gauge(sb, label, "elapsed_seconds", "Seconds since the start of the command.", getElapsedSeconds());
+		gauge(sb, label, "progress_ratio", "Share of the expected input which is read.", getProgress());
+		gauge(sb, label, "eta_seconds", "Seconds until all input is read, -1 if unknown.", getEtaSeconds());
+		return sb.toString();
+	}
+
+	private static void metric(StringBuilder sb, String name, String type, String help) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void gauge(StringBuilder sb, String label, String name, String help, double value) {
+		metric(sb, PREFIX + name, "gauge", help);
+		sb.append(PREFIX).append(name).append(label).append("} ")
+				.append(value == (long) value ? Long.toString((long) value) : String.format(Locale.ROOT, "%.3f", value))
+				.append('\n');
+	}
+
+	// replaces the file at once, so a scraper never reads half of it
+	private static void writeMetricsFile() {
+		if (metricsFile == null) {
+			return;
+		}
+		try {
+			File tmp = new File(metricsFile.getPath() + ".tmp");
+			Files.write(tmp.toPath(), toPrometheus().getBytes(StandardCharsets.UTF_8));
+			Files.move(tmp.toPath(), metricsFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.out.println("Could not write the metrics to " + metricsFile + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * The metrics as seen over JMX.
+	 */
+	public interface PipelineMetricsMXBean {
+		String getCommand();
+
+		Map<String, Long> getCounters();
+
+		Map<String, Double> getStageSeconds();
+
+		long getExpectedInputBytes();
+
+		double getElapsedSeconds();
+
+		double getProgress();
+
+		double getEtaSeconds();
+	}
+
+	private static class Bean implements PipelineMetricsMXBean {
+
+		@Override
+		public String getCommand() {
+			return command;
+		}
+
+		@Override
+		public Map<String, Long> getCounters() {
+			Map<String, Long> counters = new LinkedHashMap<String, Long>();
+			for (Counter c : Counter.values()) {
+				counters.put(c.metric, get(c));
+			}
+			return counters;
+		}
+
+		@Override
+		public Map<String, Double> getStageSeconds() {
+			Map<String, Double> stages = new LinkedHashMap<String, Double>();
+			for (Stage s : Stage.values()) {
+				stages.put(s.label, PipelineMetrics.getSeconds(s));
+			}
+			return stages;
+		}
+
+		@Override
+		public long getExpectedInputBytes() {
+			return EXPECTED_INPUT_BYTES.sum();
+		}
+
+		@Override
+		public double getElapsedSeconds() {
+			return PipelineMetrics.getElapsedSeconds();
+		}
+
+		@Override
+		public double getProgress() {
+			return PipelineMetrics.getProgress();
+		}
+
+		@Override
+		public double getEtaSeconds() {
+			return PipelineMetrics.getEtaSeconds();
+		}
+	}
+}
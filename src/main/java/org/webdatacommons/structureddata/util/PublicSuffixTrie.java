@@ -0,0 +1,268 @@
+package org.webdatacommons.structureddata.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Immutable trie of the rules of a public suffix list, which resolves the pay
+ * level domain (top private domain) of a host. The rules are stored with
+ * reversed characters, so a host is walked from its last character to its
+ * first one, without splitting it into labels.
+ * <p>
+ * The result is the same as of Guava's
+ * <code>InternetDomainName.from(host).topPrivateDomain()</code> with the same
+ * list (public and private suffixes), including the syntax checks of the host,
+ * for hosts consisting of ASCII characters.
+ *
+ */
+public class PublicSuffixTrie {
+
+	/**
+	 * Snapshot of the public suffix list, next to this class.
+	 */
+	public static final String SNAPSHOT = "public_suffix_list.dat";
+
+	private static final int MAX_LENGTH = 253;
+	private static final int MAX_PARTS = 127;
+	private static final int MAX_PART_LENGTH = 63;
+
+	// the reversed rule ends at the node, e.g. "co.uk"
+	private static final byte EXACT = 1;
+	// the node is the parent of a wildcard rule, e.g. "*.ck"
+	private static final byte UNDER = 2;
+	// the node is an exception rule, e.g. "!www.ck"
+	private static final byte EXCLUDED = 4;
+
+	// children of node n are edgeChars/edgeTargets[edgeOffsets[n] ...
+	// edgeOffsets[n + 1]], sorted by their char. The root is node 0.
+	private final int[] edgeOffsets;
+	private final char[] edgeChars;
+	private final int[] edgeTargets;
+	private final byte[] flags;
+
+	private PublicSuffixTrie(int[] edgeOffsets, char[] edgeChars, int[] edgeTargets, byte[] flags) {
+		this.edgeOffsets = edgeOffsets;
+		this.edgeChars = edgeChars;
+		this.edgeTargets = edgeTargets;
+		this.flags = flags;
+	}
+
+	/**
+	 * @return the trie of the bundled {@link #SNAPSHOT}
+	 */
+	public static PublicSuffixTrie fromSnapshot() throws IOException {
+		InputStream in = PublicSuffixTrie.class.getResourceAsStream(SNAPSHOT);
+		if (in == null) {
+			throw new IOException("Public suffix list " + SNAPSHOT + " not found.");
+		}
+		try {
+			return load(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a list in the format of https://publicsuffix.org/list/ (one rule
+	 * per line, comments start with "//").
+	 */
+	public static PublicSuffixTrie load(InputStream in) throws IOException {
+		Builder builder = new Builder();
+		BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = br.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("//")) {
+				continue;
+			}
+			if (line.startsWith("*.")) {
+				builder.add(line.substring(2), UNDER);
+			} else if (line.startsWith("!")) {
+				builder.add(line.substring(1), EXCLUDED);
+			} else {
+				builder.add(line, EXACT);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @param host
+	 *            the host, consisting of ASCII characters
+	 * @return the lower case pay level domain or null if the host is no valid
+	 *         domain name or not below a public suffix
+	 */
+	public String topPrivateDomain(String host) {
+		int end = host.length();
+		if (end > 0 && host.charAt(end - 1) == '.') {
+			end--;
+		}
+		if (end > MAX_LENGTH) {
+			return null;
+		}
+		// labels are counted from the right, the current one ends before
+		// labelEnd
+		int label = 0;
+		int labelEnd = end;
+		int node = 0;
+		// label which is the pay level domain and its start, -1 if no rule
+		// matched yet
+		int pldLabel = -1;
+		int pldStart = -1;
+		for (int i = end - 1; i >= -1; i--) {
+			char c = i >= 0 ? host.charAt(i) : '.';
+			if (c != '.') {
+				if (!isPartChar(c)) {
+					return null;
+				}
+				if (node >= 0) {
+					node = child(node, toLowerCase(c));
+				}
+				continue;
+			}
+			// label [i + 1, labelEnd) is complete
+			int start = i + 1;
+			int length = labelEnd - start;
+			if (length < 1 || length > MAX_PART_LENGTH || isDash(host.charAt(start))
+					|| isDash(host.charAt(labelEnd - 1))) {
+				return null;
+			}
+			if (label == 0 && host.charAt(start) >= '0' && host.charAt(start) <= '9') {
+				return null;
+			}
+			if (node >= 0) {
+				// the same order of the rules as in InternetDomainName, the
+				// longest matching name wins
+				byte f = flags[node];
+				if ((f & UNDER) != 0 && start > 0) {
+					pldLabel = label + 2;
+				} else if ((f & EXACT) != 0) {
+					pldLabel = label + 1;
+				} else if ((f & EXCLUDED) != 0) {
+					pldLabel = label;
+				}
+				node = i >= 0 ? child(node, '.') : -1;
+			}
+			if (pldLabel == label) {
+				pldStart = start;
+			}
+			label++;
+			if (label > MAX_PARTS) {
+				return null;
+			}
+			labelEnd = i;
+		}
+		if (pldLabel < 0 || pldLabel >= label) {
+			// not below a public suffix or a public suffix itself
+			return null;
+		}
+		return toLowerCase(host, pldStart, end);
+	}
+
+	private int child(int node, char c) {
+		int lo = edgeOffsets[node];
+		int hi = edgeOffsets[node + 1] - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			char e = edgeChars[mid];
+			if (e < c) {
+				lo = mid + 1;
+			} else if (e > c) {
+				hi = mid - 1;
+			} else {
+				return edgeTargets[mid];
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isPartChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || isDash(c);
+	}
+
+	private static boolean isDash(char c) {
+		return c == '-' || c == '_';
+	}
+
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+	}
+
+	private static String toLowerCase(String s, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (s.charAt(i) >= 'A' && s.charAt(i) <= 'Z') {
+				char[] chars = new char[end - start];
+				for (int j = start; j < end; j++) {
+					chars[j - start] = toLowerCase(s.charAt(j));
+				}
+				return new String(chars);
+			}
+		}
+		return s.substring(start, end);
+	}
+
+	/**
+	 * @return the number of nodes of the trie
+	 */
+	public int size() {
+		return flags.length;
+	}
+
+	/**
+	 * Mutable trie, which is converted into the arrays of the immutable one.
+	 */
+	private static class Builder {
+		final List<TreeMap<Character, Integer>> children = new ArrayList<TreeMap<Character, Integer>>();
+		final List<Byte> flags = new ArrayList<Byte>();
+
+		Builder() {
+			newNode();
+		}
+
+		private int newNode() {
+			children.add(new TreeMap<Character, Integer>());
+			flags.add((byte) 0);
+			return flags.size() - 1;
+		}
+
+		void add(String name, byte flag) {
+			int node = 0;
+			for (int i = name.length() - 1; i >= 0; i--) {
+				char c = name.charAt(i);
+				Integer next = children.get(node).get(c);
+				if (next == null) {
+					next = newNode();
+					children.get(node).put(c, next);
+				}
+				node = next;
+			}
+			flags.set(node, (byte) (flags.get(node) | flag));
+		}
+
+		PublicSuffixTrie build() {
+			int n = flags.size();
+			int[] edgeOffsets = new int[n + 1];
+			char[] edgeChars = new char[n - 1];
+			int[] edgeTargets = new int[n - 1];
+			byte[] flagArray = new byte[n];
+			int e = 0;
+			for (int node = 0; node < n; node++) {
+				edgeOffsets[node] = e;
+				for (Character c : children.get(node).keySet()) {
+					edgeChars[e] = c;
+					edgeTargets[e] = children.get(node).get(c);
+					e++;
+				}
+				flagArray[node] = flags.get(node);
+			}
+			edgeOffsets[n] = e;
+			return new PublicSuffixTrie(edgeOffsets, edgeChars, edgeTargets, flagArray);
+		}
+	}
+}
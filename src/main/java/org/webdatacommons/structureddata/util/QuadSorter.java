@@ -1,12 +1,33 @@
 package org.webdatacommons.structureddata.util;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.webdatacommons.structureddata.io.InputSplit;
+import org.webdatacommons.structureddata.io.InputSplitter;
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+import org.webdatacommons.structureddata.io.LineReader;
+import org.webdatacommons.structureddata.io.LineSource;
+import org.webdatacommons.structureddata.io.NQuadsTokenizer;
+import org.webdatacommons.structureddata.io.OutputCodec;
+import org.webdatacommons.structureddata.io.OutputStreamFactory;
+import org.webdatacommons.structureddata.io.QuadView;
+import org.webdatacommons.structureddata.io.SplitLineReader;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Counter;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Stage;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -15,8 +36,6 @@ import com.beust.jcommander.Parameters;
 import com.beust.jcommander.converters.FileConverter;
 
 import de.dwslab.dwslib.framework.Processor;
-import de.dwslab.dwslib.util.io.InputUtil;
-import de.dwslab.dwslib.util.io.OutputUtil;
 import ldif.local.datasources.dump.QuadFileLoader;
 import ldif.runtime.Quad;
 
@@ -24,7 +43,8 @@ import ldif.runtime.Quad;
  * This class sortes the quads from input files for each web page based on the
  * subject. NOTE: This only works if (a) the quads of one website are grouped in
  * one block of lines and (b) if quads from website are not located in two
- * files.
+ * files. Use -externalSort if this is not the case, which sorts the quads of
+ * all files together (see {@link ExternalQuadSorter}).
  * 
  * @author Robert Meusel (robert@dwslab.de)
  * 
@@ -54,6 +74,28 @@ public class QuadSorter extends Processor<File> {
 	@Parameter(names = "-debug", required = false, description = "Enables detailed debug messages.")
 	private boolean debug = false;
 
+	@Parameter(names = "-fastParse", required = false, description = "Sorts the raw lines with the byte-level tokenizer instead of parsing them with the ldif QuadFileLoader.")
+	private boolean fastParse = false;
+
+	@Parameter(names = "-splits", required = false, description = "Maximal number of parts a single large input file is split into, which are sorted in parallel (always uses the byte-level sorting).")
+	private int splits = 1;
+
+	@Parameter(names = "-externalSort", required = false, description = "Sorts the quads of all input files together by graph and subject with an external merge sort, which does not require the quads of one graph to be contiguous. The result is written to one file.")
+	private boolean externalSort = false;
+
+	@Parameter(names = "-memory", required = false, description = "Memory (in MB) used by all threads together to buffer the quads in the external sort mode.")
+	private int memory = 1024;
+
+	@Parameter(names = "-tmpDir", required = false, description = "Folder for the temporary runs of the external sort mode (default: system temp folder).", converter = FileConverter.class)
+	private File tmpDirectory = null;
+
+	@Parameter(names = "-outputName", required = false, description = "Name of the output file of the external sort mode (default: sorted.nq with the extension of the codec).")
+	private String outputName = null;
+
+	private ExecutorService splitPool;
+
+	private ExternalQuadSorter externalSorter;
+
 	@Override
 	protected List<File> fillListToProcess() {
 		List<File> files = new ArrayList<File>();
@@ -67,6 +109,7 @@ public class QuadSorter extends Processor<File> {
 				files.add(f);
 			}
 		}
+		PipelineMetrics.addExpectedInput(files);
 		return files;
 	}
 
@@ -75,25 +118,105 @@ public class QuadSorter extends Processor<File> {
 		return threads;
 	}
 
+	private synchronized ExecutorService getSplitPool() {
+		if (splitPool == null) {
+			splitPool = InputSplitter.newSplitPool(threads);
+		}
+		return splitPool;
+	}
+
+	@Override
+	protected void beforeProcess() {
+		if (externalSort) {
+			// split 0 of each file is sorted by the processing thread itself
+			int buffers = splits > 1 ? 2 * threads : threads;
+			externalSorter = new ExternalQuadSorter(tmpDirectory, memory * 1024L * 1024L / buffers);
+		}
+	}
+
+	@Override
+	protected void afterProcess() {
+		if (splitPool != null) {
+			splitPool.shutdown();
+		}
+		if (externalSorter != null) {
+			try {
+				long startTime = System.currentTimeMillis();
+				int runs = externalSorter.getNumberOfRuns();
+				File output = outputName != null ? new File(this.outputDirectory, outputName)
+						: OutputStreamFactory.getFile(this.outputDirectory, "sorted.nq");
+				OutputStream os = OutputStreamFactory.getOutputStream(output);
+				long quads = externalSorter.merge(os);
+				os.close();
+				PipelineMetrics.addTime(Stage.MERGE, (System.currentTimeMillis() - startTime) * 1000000L);
+				System.out.println("Merged " + quads + " quads of " + runs + " runs in "
+						+ (System.currentTimeMillis() - startTime) + " ms.");
+			} catch (IOException e) {
+				System.out.println("Could not merge the sorted runs.");
+				e.printStackTrace();
+			}
+		}
+	}
+
 	@Override
 	protected void process(File object) throws Exception {
-		BufferedWriter bw = OutputUtil.getGZIPBufferedWriter(new File(this.outputDirectory, object.getName()));
+		if (externalSort) {
+			sortExternal(object);
+		} else {
+			sortFile(object);
+		}
+		PipelineMetrics.increment(Counter.INPUT_FILES);
+	}
+
+	// sorts the quads of each graph of the file by their subject
+	private void sortFile(File object) throws Exception {
+		if (splits > 1) {
+			List<InputSplit> fileSplits = InputSplitter.split(object, splits);
+			if (fileSplits.size() > 1) {
+				sortSplits(object, fileSplits);
+				return;
+			}
+		}
+		// the extension of the input is replaced by the one of the codec
+		File output = OutputStreamFactory.getFile(this.outputDirectory, OutputCodec.stripExtension(object.getName()));
+		if (fastParse) {
+			long startTime = System.currentTimeMillis();
+			OutputStream os = OutputStreamFactory.getOutputStream(output);
+			long quads = sortGraphBlocks(InputStreamFactory.getInputStream(object), os, vocabFilter);
+			os.close();
+			long time = System.currentTimeMillis() - startTime;
+			System.out.println("Sorted " + quads + " quads of " + object.getName() + " in " + time + " ms ("
+					+ (quads * 1000L / Math.max(1, time)) + " quads/sec)");
+			return;
+		}
+		BufferedWriter bw = OutputStreamFactory.getBufferedWriter(output);
 		QuadFileLoader qfl = new QuadFileLoader();
 
-		BufferedReader br = InputUtil.getBufferedReader(object);
+		BufferedReader br = InputStreamFactory.getBufferedReader(object);
 		String currentURL = "";
 		Map<String, ArrayList<Quad>> quadList = new HashMap<String, ArrayList<Quad>>();
 		String line = "";
+		// only some lines are timed, the counts are added at the end
+		PipelineMetrics.Sampler sampler = new PipelineMetrics.Sampler(Stage.PARSE, null);
+		long lines = 0;
+		long errors = 0;
 		while (br.ready()) {
 			Quad q;
+			boolean timed = sampler.start();
 			try {
 				line = br.readLine();
+				lines++;
 				q = qfl.parseQuadLine(line);
 			} catch (Exception e) {
+				errors++;
 				if (debug) {
 					System.out.println("Could not load line: " + line);
 				}
 				continue;
+			} finally {
+				if (timed) {
+					sampler.stop();
+				}
 			}
 
 			// filter
@@ -109,11 +232,7 @@ public class QuadSorter extends Processor<File> {
 				quadList.get(q.subject().value()).add(q);
 			} else {
 				if (quadList.size() > 0) {
-					for (String s : quadList.keySet()) {
-						for (Quad quad : quadList.get(s)) {
-							bw.write(quad.toLine());
-						}
-					}
+					writeQuads(quadList, bw);
 				}
 				// re-init list
 				quadList.clear();
@@ -124,15 +243,228 @@ public class QuadSorter extends Processor<File> {
 		}
 		// one final time:
 		if (quadList.size() > 0) {
-			for (String s : quadList.keySet()) {
-				for (Quad quad : quadList.get(s)) {
-					bw.write(quad.toLine());
-				}
-			}
+			writeQuads(quadList, bw);
 		}
 
 		br.close();
 		bw.close();
+		PipelineMetrics.add(Counter.LINES, lines);
+		PipelineMetrics.add(Counter.QUADS, lines - errors);
+		PipelineMetrics.add(Counter.PARSE_ERRORS, errors);
+	}
+
+	// writes the quads of one page grouped by their subject
+	private void writeQuads(Map<String, ArrayList<Quad>> quadList, BufferedWriter bw) throws IOException {
+		long start = System.nanoTime();
+		for (String s : quadList.keySet()) {
+			for (Quad quad : quadList.get(s)) {
+				bw.write(quad.toLine());
+			}
+		}
+		PipelineMetrics.addTime(Stage.WRITE, System.nanoTime() - start);
+		PipelineMetrics.increment(Counter.PAGES);
+	}
+
+	// adds the quads of the file to the runs of the external sort. As the
+	// graphs do not need to be contiguous, the splits are read as they are.
+	private void sortExternal(File object) throws Exception {
+		long startTime = System.currentTimeMillis();
+		List<InputSplit> fileSplits = splits > 1 ? InputSplitter.split(object, splits) : null;
+		long quads = 0;
+		if (fileSplits != null && fileSplits.size() > 1) {
+			final long[] added = new long[fileSplits.size()];
+			InputSplitter.run(fileSplits, getSplitPool(), split -> {
+				added[split.getIndex()] = externalSorter.add(new LineReader(split.openStream()), vocabFilter);
+			});
+			for (long a : added) {
+				quads += a;
+			}
+		} else {
+			quads = externalSorter.add(new LineReader(InputStreamFactory.getInputStream(object)), vocabFilter);
+		}
+		long time = System.currentTimeMillis() - startTime;
+		System.out.println("Added " + quads + " quads of " + object.getName() + " to the runs in " + time + " ms ("
+				+ (quads * 1000L / Math.max(1, time)) + " quads/sec)");
+	}
+
+	// sorts each split into its own compressed file and concatenates them,
+	// which results in a valid multi-member (gzip) or multi-stream (xz) file
+	private void sortSplits(File object, List<InputSplit> fileSplits) throws Exception {
+		long startTime = System.currentTimeMillis();
+		String name = OutputCodec.stripExtension(object.getName());
+		final File[] parts = new File[fileSplits.size()];
+		final long[] quads = new long[fileSplits.size()];
+		InputSplitter.run(fileSplits, getSplitPool(), split -> {
+			File part = OutputStreamFactory.getFile(this.outputDirectory, name + ".split" + split.getIndex());
+			OutputStream os = OutputStreamFactory.getOutputStream(part);
+			quads[split.getIndex()] = sortGraphBlocks(new SplitLineReader(split), os, vocabFilter);
+			os.close();
+			parts[split.getIndex()] = part;
+		});
+		// the parts are already compressed by the codec, so their bytes are
+		// copied as they are
+		OutputStream os = new BufferedOutputStream(
+				new FileOutputStream(OutputStreamFactory.getFile(this.outputDirectory, name)));
+		byte[] buffer = new byte[1024 * 1024];
+		long sum = 0;
+		for (int i = 0; i < parts.length; i++) {
+			FileInputStream in = new FileInputStream(parts[i]);
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				os.write(buffer, 0, read);
+			}
+			in.close();
+			parts[i].delete();
+			sum += quads[i];
+		}
+		os.close();
+		long time = System.currentTimeMillis() - startTime;
+		System.out.println("Sorted " + sum + " quads of " + object.getName() + " in " + fileSplits.size() + " splits in "
+				+ time + " ms (" + (sum * 1000L / Math.max(1, time)) + " quads/sec)");
+	}
+
+	/**
+	 * Groups the lines of each block of quads sharing the same graph by their
+	 * subject. In contrast to {@link #process(File)} the lines are not parsed
+	 * into {@link Quad}s but tokenized on their bytes and written as they are.
+	 * Lines which cannot be tokenized are dropped. Both streams are not closed.
+	 * 
+	 * @param in
+	 *            the (decompressed) input
+	 * @param out
+	 *            the output
+	 * @param vocabFilter
+	 *            if not null, only quads containing the vocab in the predicate
+	 *            or object are kept
+	 * @return the number of written quads
+	 * @throws IOException
+	 */
+	public static long sortGraphBlocks(InputStream in, OutputStream out, String vocabFilter) throws IOException {
+		return sortGraphBlocks(new LineReader(in), out, vocabFilter);
+	}
+
+	/**
+	 * Same as {@link #sortGraphBlocks(InputStream, OutputStream, String)} for
+	 * an arbitrary {@link LineSource}, which is closed afterwards.
+	 */
+	public static long sortGraphBlocks(LineSource lr, OutputStream out, String vocabFilter) throws IOException {
+		NQuadsTokenizer tokenizer = new NQuadsTokenizer();
+		QuadView view = new QuadView();
+		GraphBlock block = new GraphBlock();
+		QuadView.Key currentGraph = new QuadView.Key();
+		QuadView.Key currentSubject = new QuadView.Key();
+		Map<String, Integer> subjects = new HashMap<String, Integer>();
+		int subject = -1;
+		long written = 0;
+		// only some lines are timed, the counts are added at the end
+		PipelineMetrics.Sampler sampler = new PipelineMetrics.Sampler(Stage.PARSE, null);
+		long lines = 0;
+		long errors = 0;
+		while (lr.next()) {
+			lines++;
+			boolean timed = sampler.start();
+			boolean valid = tokenizer.tokenize(lr, view) && view.hasGraph();
+			if (timed) {
+				sampler.stop();
+			}
+			if (!valid) {
+				errors++;
+				continue;
+			}
+			// filter
+			if (vocabFilter != null && !view.predicate().toLowerCase().contains(vocabFilter)
+					&& !view.object().toLowerCase().contains(vocabFilter)) {
+				continue;
+			}
+			if (!currentGraph.matches(view, QuadView.GRAPH)) {
+				written += block.writeTo(out, subjects.size());
+				block.clear();
+				subjects.clear();
+				currentSubject.clear();
+				currentGraph.set(view, QuadView.GRAPH);
+			}
+			// subjects of one page mostly follow each other, so the subject
+			// only needs to be looked up when it changes
+			if (!currentSubject.matches(view, QuadView.SUBJECT)) {
+				currentSubject.set(view, QuadView.SUBJECT);
+				String s = currentSubject.toString();
+				Integer id = subjects.get(s);
+				if (id == null) {
+					id = subjects.size();
+					subjects.put(s, id);
+				}
+				subject = id;
+			}
+			block.add(lr.buffer(), lr.start(), lr.end(), subject);
+		}
+		written += block.writeTo(out, subjects.size());
+		lr.close();
+		PipelineMetrics.add(Counter.LINES, lines);
+		PipelineMetrics.add(Counter.QUADS, lines - errors);
+		PipelineMetrics.add(Counter.PARSE_ERRORS, errors);
+		return written;
+	}
+
+	/**
+	 * The raw lines of one graph, together with the id of their subject.
+	 */
+	private static class GraphBlock {
+		private byte[] data = new byte[64 * 1024];
+		private int dataLength = 0;
+		private int[] offsets = new int[1024];
+		private int[] lengths = new int[1024];
+		private int[] subjects = new int[1024];
+		private int size = 0;
+
+		void add(byte[] buffer, int from, int to, int subject) {
+			int len = to - from;
+			if (dataLength + len > data.length) {
+				data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + len));
+			}
+			if (size == offsets.length) {
+				offsets = Arrays.copyOf(offsets, size * 2);
+				lengths = Arrays.copyOf(lengths, size * 2);
+				subjects = Arrays.copyOf(subjects, size * 2);
+			}
+			System.arraycopy(buffer, from, data, dataLength, len);
+			offsets[size] = dataLength;
+			lengths[size] = len;
+			subjects[size] = subject;
+			dataLength += len;
+			size++;
+		}
+
+		// writes the lines grouped by subject (counting sort over the subject
+		// ids, which keeps the order of the lines of one subject)
+		int writeTo(OutputStream out, int numSubjects) throws IOException {
+			if (size == 0) {
+				return 0;
+			}
+			long start = System.nanoTime();
+			int[] starts = new int[numSubjects + 1];
+			for (int i = 0; i < size; i++) {
+				starts[subjects[i] + 1]++;
+			}
+			for (int i = 0; i < numSubjects; i++) {
+				starts[i + 1] += starts[i];
+			}
+			int[] order = new int[size];
+			for (int i = 0; i < size; i++) {
+				order[starts[subjects[i]]++] = i;
+			}
+			for (int i : order) {
+				out.write(data, offsets[i], lengths[i]);
+				out.write('\n');
+			}
+			PipelineMetrics.addTime(Stage.WRITE, System.nanoTime() - start);
+			PipelineMetrics.increment(Counter.PAGES);
+			return size;
+		}
+
+		void clear() {
+			dataLength = 0;
+			size = 0;
+		}
 	}
 
 	public static void main(String[] args) {
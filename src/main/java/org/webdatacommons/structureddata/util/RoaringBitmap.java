@@ -0,0 +1,252 @@
+package org.webdatacommons.structureddata.util;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints (e.g. ids of a {@link TermDictionary})
+ * in the style of Roaring bitmaps: the values are grouped by their upper 16
+ * bits, and the lower 16 bits of each group are kept either in a sorted array
+ * (up to {@link #ARRAY_LIMIT} values) or in a bitmap of 2^16 bits. Dense id
+ * ranges therefore need about one bit per id, sparse ones two bytes per value.
+ * <p>
+ * The union of two bitmaps ({@link #or(RoaringBitmap)}) works container by
+ * container, and the values are iterated in ascending order. Not thread safe.
+ *
+ */
+public class RoaringBitmap {
+
+	/**
+	 * Maximal number of values of an array container, larger containers are
+	 * bitmaps (which need 8 KB).
+	 */
+	public static final int ARRAY_LIMIT = 4096;
+
+	private static final int BITMAP_WORDS = 1 << 10;
+
+	// sorted upper 16 bits of the containers
+	private char[] keys = new char[4];
+	// char[] (array container) or long[] (bitmap container)
+	private Object[] containers = new Object[4];
+	// number of values of each container
+	private int[] cardinalities = new int[4];
+	private int size = 0;
+
+	/**
+	 * @param value
+	 *            a non-negative value
+	 * @return true if the value was not contained before
+	 */
+	public boolean add(int value) {
+		char high = (char) (value >>> 16);
+		char low = (char) value;
+		int i = Arrays.binarySearch(keys, 0, size, high);
+		if (i < 0) {
+			i = -i - 1;
+			insertContainer(i, high, new char[4], 0);
+		}
+		Object c = containers[i];
+		if (c instanceof long[]) {
+			long[] bits = (long[]) c;
+			long bit = 1L << low;
+			if ((bits[low >>> 6] & bit) != 0) {
+				return false;
+			}
+			bits[low >>> 6] |= bit;
+			cardinalities[i]++;
+			return true;
+		}
+		char[] array = (char[]) c;
+		int n = cardinalities[i];
+		int pos = Arrays.binarySearch(array, 0, n, low);
+		if (pos >= 0) {
+			return false;
+		}
+		pos = -pos - 1;
+		if (n == ARRAY_LIMIT) {
+			long[] bits = toBitmap(array, n);
+			bits[low >>> 6] |= 1L << low;
+			containers[i] = bits;
+		} else {
+			if (n == array.length) {
+				array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, n * 2));
+				containers[i] = array;
+			}
+			System.arraycopy(array, pos, array, pos + 1, n - pos);
+			array[pos] = low;
+		}
+		cardinalities[i]++;
+		return true;
+	}
+
+	public boolean contains(int value) {
+		int i = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+		if (i < 0) {
+			return false;
+		}
+		char low = (char) value;
+		Object c = containers[i];
+		if (c instanceof long[]) {
+			return (((long[]) c)[low >>> 6] & (1L << low)) != 0;
+		}
+		return Arrays.binarySearch((char[]) c, 0, cardinalities[i], low) >= 0;
+	}
+
+	/**
+	 * Adds all values of another bitmap (in place union).
+	 */
+	public void or(RoaringBitmap other) {
+		int i = 0;
+		for (int j = 0; j < other.size; j++) {
+			char key = other.keys[j];
+			while (i < size && keys[i] < key) {
+				i++;
+			}
+			if (i < size && keys[i] == key) {
+				orContainer(i, other.containers[j], other.cardinalities[j]);
+			} else {
+				insertContainer(i, key, copy(other.containers[j]), other.cardinalities[j]);
+			}
+			i++;
+		}
+	}
+
+	private void orContainer(int i, Object o, int oCardinality) {
+		Object c = containers[i];
+		if (c instanceof long[] || o instanceof long[]) {
+			long[] bits = c instanceof long[] ? (long[]) c : toBitmap((char[]) c, cardinalities[i]);
+			if (o instanceof long[]) {
+				long[] oBits = (long[]) o;
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					bits[w] |= oBits[w];
+				}
+			} else {
+				char[] oArray = (char[]) o;
+				for (int k = 0; k < oCardinality; k++) {
+					bits[oArray[k] >>> 6] |= 1L << oArray[k];
+				}
+			}
+			int cardinality = 0;
+			for (long w : bits) {
+				cardinality += Long.bitCount(w);
+			}
+			containers[i] = bits;
+			cardinalities[i] = cardinality;
+			return;
+		}
+		// merge of two sorted arrays
+		char[] a = (char[]) c;
+		char[] b = (char[]) o;
+		int n = cardinalities[i];
+		char[] merged = new char[n + oCardinality];
+		int x = 0;
+		int y = 0;
+		int k = 0;
+		while (x < n && y < oCardinality) {
+			if (a[x] < b[y]) {
+				merged[k++] = a[x++];
+			} else if (a[x] > b[y]) {
+				merged[k++] = b[y++];
+			} else {
+				merged[k++] = a[x++];
+				y++;
+			}
+		}
+		while (x < n) {
+			merged[k++] = a[x++];
+		}
+		while (y < oCardinality) {
+			merged[k++] = b[y++];
+		}
+		if (k > ARRAY_LIMIT) {
+			containers[i] = toBitmap(merged, k);
+		} else {
+			containers[i] = merged;
+		}
+		cardinalities[i] = k;
+	}
+
+	private void insertContainer(int i, char key, Object container, int cardinality) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+			cardinalities = Arrays.copyOf(cardinalities, size * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(containers, i, containers, i + 1, size - i);
+		System.arraycopy(cardinalities, i, cardinalities, i + 1, size - i);
+		keys[i] = key;
+		containers[i] = container;
+		cardinalities[i] = cardinality;
+		size++;
+	}
+
+	private static long[] toBitmap(char[] array, int n) {
+		long[] bits = new long[BITMAP_WORDS];
+		for (int k = 0; k < n; k++) {
+			bits[array[k] >>> 6] |= 1L << array[k];
+		}
+		return bits;
+	}
+
+	private static Object copy(Object container) {
+		if (container instanceof long[]) {
+			return ((long[]) container).clone();
+		}
+		return ((char[]) container).clone();
+	}
+
+	/**
+	 * @return the number of values
+	 */
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < size; i++) {
+			cardinality += cardinalities[i];
+		}
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the values in ascending order
+	 */
+	public int[] toArray() {
+		int[] values = new int[cardinality()];
+		int v = 0;
+		for (int i = 0; i < size; i++) {
+			int high = keys[i] << 16;
+			Object c = containers[i];
+			if (c instanceof long[]) {
+				long[] bits = (long[]) c;
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					long word = bits[w];
+					while (word != 0) {
+						values[v++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+						word &= word - 1;
+					}
+				}
+			} else {
+				char[] array = (char[]) c;
+				for (int k = 0; k < cardinalities[i]; k++) {
+					values[v++] = high | array[k];
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @return the approximate number of bytes used by the containers
+	 */
+	public long memory() {
+		long memory = size * 14L;
+		for (int i = 0; i < size; i++) {
+			Object c = containers[i];
+			memory += c instanceof long[] ? BITMAP_WORDS * 8 : ((char[]) c).length * 2;
+		}
+		return memory;
+	}
+}
@@ -0,0 +1,135 @@
+package org.webdatacommons.structureddata.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded cache which can be shared by all threads. The entries are spread
+ * over a number of stripes, each of them is a small LRU map with its own lock,
+ * so threads looking up different keys rarely wait for each other. If a stripe
+ * is full, its least recently used entry is evicted.
+ * <p>
+ * Values are computed outside of the locks, so a value may be computed twice
+ * if two threads miss the same key at the same time. The loader therefore has
+ * to be free of side effects.
+ *
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the values, null values are cached as well
+ */
+public class StripedLruCache<K, V> {
+
+	private static final Object NULL = new Object();
+
+	private final Stripe[] stripes;
+	private final int mask;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param capacity
+	 *            maximal number of entries of the cache
+	 * @param concurrency
+	 *            minimal number of stripes, rounded up to a power of two
+	 */
+	public StripedLruCache(int capacity, int concurrency) {
+		int n = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+		stripes = new Stripe[n];
+		int stripeCapacity = Math.max(1, capacity / n);
+		for (int i = 0; i < n; i++) {
+			stripes[i] = new Stripe(stripeCapacity, evictions);
+		}
+		mask = n - 1;
+	}
+
+	/**
+	 * @return the cached value of the key, which is computed by the loader if
+	 *         it is not cached
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		Stripe stripe = stripeOf(key);
+		Object value;
+		synchronized (stripe) {
+			value = stripe.get(key);
+		}
+		if (value != null) {
+			hits.increment();
+			return value == NULL ? null : (V) value;
+		}
+		misses.increment();
+		V loaded = loader.apply(key);
+		synchronized (stripe) {
+			stripe.put(key, loaded == null ? NULL : loaded);
+		}
+		return loaded;
+	}
+
+	private Stripe stripeOf(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return stripes[(h ^ (h >>> 16)) & mask];
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the number of cached entries
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		long h = getHits();
+		long m = getMisses();
+		return size() + " entries, " + h + " hits, " + m + " misses ("
+				+ (h + m == 0 ? 0 : h * 100 / (h + m)) + "% hit rate), " + getEvictions() + " evictions";
+	}
+
+	/**
+	 * LRU map of one stripe, guarded by itself.
+	 */
+	private static class Stripe extends LinkedHashMap<Object, Object> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+		private final LongAdder evictions;
+
+		Stripe(int capacity, LongAdder evictions) {
+			super(Math.min(capacity, 1024), 0.75f, true);
+			this.capacity = capacity;
+			this.evictions = evictions;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -4,9 +4,8 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -14,10 +13,23 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.ExecutorService;
 
+import org.webdatacommons.structureddata.io.AsyncEntityWriter;
+import org.webdatacommons.structureddata.io.InputSplit;
+import org.webdatacommons.structureddata.io.InputSplitter;
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+import org.webdatacommons.structureddata.io.LineReader;
+import org.webdatacommons.structureddata.io.LineSource;
+import org.webdatacommons.structureddata.io.NQuadsTokenizer;
+import org.webdatacommons.structureddata.io.OutputCodec;
+import org.webdatacommons.structureddata.io.OutputStreamFactory;
+import org.webdatacommons.structureddata.io.QuadView;
+import org.webdatacommons.structureddata.io.SplitLineReader;
 import org.webdatacommons.structureddata.model.Entity;
 import org.webdatacommons.structureddata.model.EntityFileLoader;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Counter;
+import org.webdatacommons.structureddata.util.PipelineMetrics.Stage;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -26,7 +38,6 @@ import com.beust.jcommander.Parameters;
 import com.beust.jcommander.converters.FileConverter;
 
 import de.dwslab.dwslib.framework.Processor;
-import de.dwslab.dwslib.util.io.InputUtil;
 import ldif.entity.NodeTrait;
 import ldif.local.datasources.dump.QuadFileLoader;
 import ldif.runtime.Quad;
@@ -64,10 +75,16 @@ public class SubsetCreator extends Processor<File> {
 	@Parameter(names = "-global", required = false, description = "Defines if one global writer per class is used, or mutiple per class per input file per thread. (Defaul: false)")
 	private boolean globalWriter = false;
 
-	// NOTE you run into problems, if you cannot write fast enough
-	// private Map<String, AsyncEntityWriter> writer = new HashMap<String,
-	// AsyncEntityWriter>();
-	private Map<String, BufferedWriter> writer = new HashMap<String, BufferedWriter>();
+	@Parameter(names = "-fastParse", required = false, description = "Parses the quads with the byte-level tokenizer instead of the ldif QuadFileLoader.")
+	private boolean fastParse = false;
+
+	@Parameter(names = "-splits", required = false, description = "Maximal number of parts a single large input file is split into, which are processed in parallel. Requires the quads of one URL to be contiguous.")
+	private int splits = 1;
+
+	private ExecutorService splitPool;
+
+	// global writers, the compression runs on one thread per class
+	private Map<String, AsyncEntityWriter> writer = new HashMap<String, AsyncEntityWriter>();
 
 	private Map<String, String> names = new HashMap<String, String>();
 	private int errorCount = 0;
@@ -82,21 +99,14 @@ public class SubsetCreator extends Processor<File> {
 	@Override
 	protected void beforeProcess() {
 		try {
-			BufferedReader br = InputUtil.getBufferedReader(new File(classFilterFile));
+			BufferedReader br = InputStreamFactory.getBufferedReader(new File(classFilterFile));
 			while (br.ready()) {
 				String line = br.readLine();
 				String tok[] = line.split(sep);
-				// AsyncEntityWriter aWriter = new AsyncEntityWriter(new
-				// File(this.outputDirectory, tok[1] + ".gz"));
-				// aWriter.open();
-				// writer.put(tok[0], aWriter);
-				int buffer = 1024 * 8 * 1024;
 				if (globalWriter) {
-					writer.put(tok[0],
-							new BufferedWriter(new OutputStreamWriter(
-									new GZIPOutputStream(
-											new FileOutputStream(new File(this.outputDirectory, tok[1] + ".gz"))),
-									"UTF-8"), buffer));
+					AsyncEntityWriter aWriter = new AsyncEntityWriter(OutputStreamFactory.getFile(this.outputDirectory, tok[1]));
+					aWriter.open();
+					writer.put(tok[0], aWriter);
 				} else {
 					names.put(tok[0], tok[1]);
 				}
@@ -123,11 +133,36 @@ public class SubsetCreator extends Processor<File> {
 				files.add(f);
 			}
 		}
+		PipelineMetrics.addExpectedInput(files);
 		return files;
 	}
 
+	private synchronized ExecutorService getSplitPool() {
+		if (splitPool == null) {
+			splitPool = InputSplitter.newSplitPool(threads);
+		}
+		return splitPool;
+	}
+
 	@Override
 	protected void process(File object) throws Exception {
+		final String name = OutputCodec.stripExtension(object.getName());
+		if (splits > 1) {
+			List<InputSplit> fileSplits = InputSplitter.split(object, splits);
+			if (fileSplits.size() > 1) {
+				InputSplitter.run(fileSplits, getSplitPool(),
+						split -> processLines(new SplitLineReader(split), name + "_" + split.getIndex()));
+				PipelineMetrics.increment(Counter.INPUT_FILES);
+				return;
+			}
+		}
+		processLines(new LineReader(InputStreamFactory.getInputStream(object)), name);
+		PipelineMetrics.increment(Counter.INPUT_FILES);
+	}
+
+	// processes the lines of one file or split, the part name is used to name
+	// the thread based writers
+	private void processLines(LineSource lines, String partName) throws Exception {
 		Map<String, BufferedWriter> writerLocal = null;
 		
 		
@@ -135,23 +170,44 @@ public class SubsetCreator extends Processor<File> {
 			writerLocal = new HashMap<String, BufferedWriter>();
 			// init thread based writers
 			for (String s : this.names.keySet()) {
-				writerLocal.put(s,
-						new BufferedWriter(new OutputStreamWriter(
-								new GZIPOutputStream(new FileOutputStream(new File(this.outputDirectory,
-										this.names.get(s) + "_" + object.getName().replace(".gz", "") + ".gz"))),
-								"UTF-8")));
+				OutputCodec codec = OutputStreamFactory.getIntermediateCodec();
+				writerLocal.put(s, OutputStreamFactory.getBufferedWriter(
+						codec.file(this.outputDirectory, this.names.get(s) + "_" + partName), codec));
 			}
 		}
 		QuadFileLoader qfl = new QuadFileLoader();
+		NQuadsTokenizer tokenizer = new NQuadsTokenizer();
+		QuadView view = new QuadView();
 		EntityFileLoader etl = new EntityFileLoader();
-		BufferedReader br = InputUtil.getBufferedReader(object);
 		String currentURL = "";
 		NodeTrait currentSubject = null;
 		List<Entity> entities = new ArrayList<Entity>();
 		List<Quad> quads = new ArrayList<Quad>();
-		while (br.ready()) {
+		// only some lines are timed, the counts are added at the end
+		PipelineMetrics.Sampler sampler = new PipelineMetrics.Sampler(Stage.PARSE, null);
+		long lineCount = 0;
+		long quadCount = 0;
+		while (lines.next()) {
+			lineCount++;
 			try{
-				Quad q = qfl.parseQuadLine(br.readLine());
+				Quad q;
+				boolean timed = sampler.start();
+				try {
+					if (fastParse) {
+						if (!tokenizer.tokenize(lines, view)) {
+							throw new Exception("Could not parse line.");
+						}
+						q = view.toQuad();
+					} else {
+						q = qfl.parseQuadLine(new String(lines.buffer(), lines.start(), lines.end() - lines.start(),
+								StandardCharsets.UTF_8));
+					}
+				} finally {
+					if (timed) {
+						sampler.stop();
+					}
+				}
+				quadCount++;
 				parsedLines ++;
 				if (q.graph().equals(currentURL)) {
 					if (q.subject().equals(currentSubject)) {
@@ -179,11 +235,7 @@ public class SubsetCreator extends Processor<File> {
 	
 					// create entity
 					if (entities.size() > 0) {
-						if (!globalWriter) {
-							processEntities(entities, writerLocal);
-						} else {
-							processEntities(entities, writer);
-						}
+						writeEntities(entities, writerLocal);
 					}
 					// clear list
 					entities.clear();
@@ -203,15 +255,14 @@ public class SubsetCreator extends Processor<File> {
 		}
 		// create entity
 		if (entities.size() > 0) {
-			if (!globalWriter) {
-				processEntities(entities, writerLocal);
-			} else {
-				processEntities(entities, writer);
-			}
+			writeEntities(entities, writerLocal);
 		}
 		quads = null;
 		entities = null;
-		br.close();
+		lines.close();
+		PipelineMetrics.add(Counter.LINES, lineCount);
+		PipelineMetrics.add(Counter.QUADS, quadCount);
+		PipelineMetrics.add(Counter.PARSE_ERRORS, lineCount - quadCount);
 
 		if (!globalWriter) {
 			for (BufferedWriter w : writerLocal.values()) {				
@@ -221,7 +272,22 @@ public class SubsetCreator extends Processor<File> {
 		}
 	}
 
-	protected void processEntities(List<Entity> entities, Map<String, BufferedWriter> writer) {
+	// writes the entities of one page, the global writers time their writes
+	// themselves
+	private void writeEntities(List<Entity> entities, Map<String, BufferedWriter> writerLocal) {
+		PipelineMetrics.increment(Counter.PAGES);
+		PipelineMetrics.add(Counter.ENTITIES, entities.size());
+		if (!globalWriter) {
+			long start = System.nanoTime();
+			processEntities(entities, writerLocal);
+			PipelineMetrics.addTime(Stage.WRITE, System.nanoTime() - start);
+		} else {
+			appendEntities(entities);
+		}
+	}
+
+	// the types of the entities of one page which are written
+	private Set<String> getTypes(List<Entity> entities, Map<String, ?> writer) {
 		Set<String> types = new HashSet<String>();
 		for (Entity e : entities) {
 			if (e.getType() != null) {
@@ -230,11 +296,14 @@ public class SubsetCreator extends Processor<File> {
 				}
 			}
 		}
-		for (String type : types) {
-			// writer.get(type).append(entities);
+		return types;
+	}
+
+	protected void processEntities(List<Entity> entities, Map<String, BufferedWriter> writer) {
+		for (String type : getTypes(entities, writer)) {
 			for (Entity e : entities) {
 				try {
-					writer.get(type).write(e.toLines());
+					e.writeTo(writer.get(type));
 				} catch (IOException e1) {
 					// TODO Auto-generated catch block
 					e1.printStackTrace();
@@ -243,29 +312,42 @@ public class SubsetCreator extends Processor<File> {
 		}
 	}
 
+	// hands the entities of one page to the global writers, blocks if they
+	// cannot write fast enough
+	protected void appendEntities(List<Entity> entities) {
+		for (String type : getTypes(entities, writer)) {
+			writer.get(type).append(entities);
+		}
+	}
+
 	@Override
 	protected void afterProcess() {
+		if (splitPool != null) {
+			splitPool.shutdown();
+		}
 		if (globalWriter) {
 			for (String s : writer.keySet()) {
 				try {
 					writer.get(s).close();
 				} catch (IOException e) {
-					// TODO Auto-generated catch block
+					System.out.println("Could not write the entities of " + s);
 					e.printStackTrace();
 				}
 			}
 		} else {
 			// we need combine the data
+			long start = System.nanoTime();
 			for (String s : names.values()) {
 				try {
-					BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
-							new GZIPOutputStream(new FileOutputStream(new File(this.outputDirectory, s + ".gz")))));
+					File merged = OutputStreamFactory.getFile(this.outputDirectory, s);
+					BufferedWriter bw = OutputStreamFactory.getBufferedWriter(merged);
 
 					for (File f : outputDirectory.listFiles()) {
 						if (!f.isDirectory()) {
 							if (filePrefix.length() > 0) {
-								if (f.getName().startsWith(s)) {
-									BufferedReader br = InputUtil.getBufferedReader(f);
+								// the parts of the threads, not the merged file
+								if (f.getName().startsWith(s + "_")) {
+									BufferedReader br = InputStreamFactory.getBufferedReader(f);
 									while (br.ready()) {
 										bw.write(br.readLine() + "\n");
 									}
@@ -284,6 +366,7 @@ public class SubsetCreator extends Processor<File> {
 					e.printStackTrace();
 				}
 			}
+			PipelineMetrics.addTime(Stage.MERGE, System.nanoTime() - start);
 		}
 		System.out.println("Error Lines: "+errorCount);
 		System.out.println("Parsed Lines: " + parsedLines);
@@ -11,7 +11,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import de.dwslab.dwslib.util.io.InputUtil;
+import org.webdatacommons.structureddata.io.InputStreamFactory;
+
 
 public class SubsetsUtils {
 
@@ -53,7 +54,7 @@ public class SubsetsUtils {
 		File[] listOfFiles = folder.listFiles();
 
 	    for (int i = 0; i < listOfFiles.length; i++) {
-	    	BufferedReader br = InputUtil.getBufferedReader(listOfFiles[i]);
+	    	BufferedReader br = InputStreamFactory.getBufferedReader(listOfFiles[i]);
 	    	int lines = 0;
 			while (br.readLine() != null) lines++;
 			
@@ -0,0 +1,76 @@
+package org.webdatacommons.structureddata.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps terms (IRIs, pay level domains, ...) to dense int ids, so that
+ * statistics can be kept in int keyed structures (see {@link IntHashSet} and
+ * {@link IntObjectHashMap}) and each term is stored only once. The terms are
+ * only resolved again when the statistics are written.
+ * <p>
+ * The dictionary can be shared by all threads. Looking up a known term does
+ * not lock.
+ *
+ */
+public class TermDictionary {
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	private volatile String[] terms = new String[1024];
+	// guarded by this
+	private int size = 0;
+
+	/**
+	 * @param term
+	 *            the term
+	 * @return the id of the term, which is created if the term is not known
+	 *         yet
+	 */
+	public int getId(String term) {
+		Integer id = ids.get(term);
+		if (id != null) {
+			return id;
+		}
+		return add(term);
+	}
+
+	/**
+	 * @return the id of the term, or -1 if it is not known
+	 */
+	public int lookup(String term) {
+		Integer id = ids.get(term);
+		return id == null ? -1 : id;
+	}
+
+	private synchronized int add(String term) {
+		Integer id = ids.get(term);
+		if (id != null) {
+			return id;
+		}
+		int n = size;
+		if (n == terms.length) {
+			terms = Arrays.copyOf(terms, n * 2);
+		}
+		// the term has to be stored before its id is visible to other threads
+		terms[n] = term;
+		size = n + 1;
+		ids.put(term, n);
+		return n;
+	}
+
+	/**
+	 * @param id
+	 *            an id returned by {@link #getId(String)}
+	 * @return the term
+	 */
+	public String getTerm(int id) {
+		return terms[id];
+	}
+
+	/**
+	 * @return the number of terms
+	 */
+	public synchronized int size() {
+		return size;
+	}
+}
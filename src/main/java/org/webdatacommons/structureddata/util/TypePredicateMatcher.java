@@ -0,0 +1,172 @@
+package org.webdatacommons.structureddata.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.webdatacommons.structureddata.io.QuadView;
+
+/**
+ * Decides if a predicate is one of the type properties (e.g. rdf:type), either
+ * by its exact IRI or by regular expressions. The expressions are combined
+ * into one pattern, which is compiled once. As there are only a few distinct
+ * predicates, the result of each predicate is remembered, so most calls are a
+ * single hash lookup. Predicates of a {@link QuadView} are checked on their
+ * bytes, without creating a {@link String}.
+ * <p>
+ * The matcher can be shared by all threads.
+ *
+ */
+public class TypePredicateMatcher {
+
+	/**
+	 * Default number of predicates whose result is remembered.
+	 */
+	public static final int DEFAULT_MEMO_SIZE = 1 << 16;
+
+	private final Set<String> properties;
+	// the exact IRIs as UTF-8 bytes
+	private final byte[][] propertyBytes;
+	// all expressions as alternatives, null if the properties are exact IRIs
+	private final Pattern pattern;
+	private final ConcurrentHashMap<String, Boolean> memo = new ConcurrentHashMap<String, Boolean>();
+	// the same results by the bytes of the predicate
+	private final ConcurrentHashMap<Term, Boolean> termMemo = new ConcurrentHashMap<Term, Boolean>();
+	// reused to look up the bytes of a predicate
+	private final ThreadLocal<Term> probe = ThreadLocal.withInitial(Term::new);
+	private final int memoSize;
+
+	public TypePredicateMatcher(List<String> typeProperties, boolean regex) {
+		this(typeProperties, regex, DEFAULT_MEMO_SIZE);
+	}
+
+	/**
+	 * @param typeProperties
+	 *            the IRIs or expressions of the type properties
+	 * @param regex
+	 *            true if the properties are regular expressions, which have to
+	 *            match the whole predicate
+	 * @param memoSize
+	 *            maximal number of predicates whose result is remembered, the
+	 *            results of further predicates are computed each time
+	 */
+	public TypePredicateMatcher(List<String> typeProperties, boolean regex, int memoSize) {
+		this.properties = new HashSet<String>(typeProperties);
+		this.propertyBytes = new byte[properties.size()][];
+		int i = 0;
+		for (String p : properties) {
+			propertyBytes[i++] = p.getBytes(StandardCharsets.UTF_8);
+		}
+		this.memoSize = memoSize;
+		if (regex && !typeProperties.isEmpty()) {
+			StringBuilder sb = new StringBuilder();
+			for (String p : typeProperties) {
+				if (sb.length() > 0) {
+					sb.append('|');
+				}
+				// each expression in its own group, so the alternatives and
+				// inline flags stay within it
+				sb.append("(?:").append(p).append(')');
+			}
+			pattern = Pattern.compile(sb.toString());
+		} else {
+			pattern = null;
+		}
+	}
+
+	/**
+	 * @param predicate
+	 *            the predicate
+	 * @return true if its a type predicate, false if not.
+	 */
+	public boolean isType(String predicate) {
+		if (pattern == null) {
+			return properties.contains(predicate);
+		}
+		Boolean type = memo.get(predicate);
+		if (type == null) {
+			type = pattern.matcher(predicate).matches();
+			if (memo.size() < memoSize) {
+				memo.put(predicate, type);
+			}
+		}
+		return type;
+	}
+
+	/**
+	 * @param view
+	 *            a parsed quad
+	 * @return true if its predicate is a type predicate, false if not.
+	 */
+	public boolean isType(QuadView view) {
+		if (pattern == null) {
+			for (byte[] p : propertyBytes) {
+				if (view.termEquals(QuadView.PREDICATE, p, p.length)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		Term key = probe.get().set(view.buffer(), view.start(QuadView.PREDICATE), view.end(QuadView.PREDICATE));
+		Boolean type = termMemo.get(key);
+		if (type == null) {
+			type = isType(view.predicate());
+			if (termMemo.size() < memoSize) {
+				termMemo.put(key.copy(), type);
+			}
+		}
+		return type;
+	}
+
+	/**
+	 * A range of bytes as key of the memo.
+	 */
+	private static class Term {
+		private byte[] bytes;
+		private int from;
+		private int to;
+		private int hash;
+
+		Term set(byte[] bytes, int from, int to) {
+			this.bytes = bytes;
+			this.from = from;
+			this.to = to;
+			int h = 1;
+			for (int i = from; i < to; i++) {
+				h = 31 * h + bytes[i];
+			}
+			this.hash = h;
+			return this;
+		}
+
+		Term copy() {
+			return new Term().set(Arrays.copyOfRange(bytes, from, to), 0, to - from);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Term)) {
+				return false;
+			}
+			Term t = (Term) o;
+			if (t.hash != hash || t.to - t.from != to - from) {
+				return false;
+			}
+			for (int i = 0; i < to - from; i++) {
+				if (bytes[from + i] != t.bytes[t.from + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
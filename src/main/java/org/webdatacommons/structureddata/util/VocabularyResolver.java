@@ -0,0 +1,82 @@
+package org.webdatacommons.structureddata.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.wbsg.loddesc.util.VocabularyUtils;
+
+/**
+ * Resolves the vocabulary of classes and properties by their id in a
+ * {@link TermDictionary}. The vocabulary of each term is only computed once
+ * (with {@link VocabularyUtils#getVocabularyUrl(String)}), afterwards it is
+ * an array lookup.
+ * <p>
+ * The resolver can be shared by all threads. Two threads may resolve the same
+ * term at the same time, which leads to the same result.
+ *
+ */
+public class VocabularyResolver {
+
+	private final TermDictionary terms;
+	// id of the vocabulary + 1 by the id of the term, 0 if not resolved yet
+	private volatile int[] vocabularies = new int[1024];
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param terms
+	 *            the dictionary of the terms and of the vocabularies
+	 */
+	public VocabularyResolver(TermDictionary terms) {
+		this.terms = terms;
+	}
+
+	/**
+	 * @param term
+	 *            the id of a class or property
+	 * @return the id of its vocabulary in the dictionary
+	 */
+	public int getVocabularyId(int term) {
+		int[] v = vocabularies;
+		if (term < v.length && v[term] != 0) {
+			hits.increment();
+			return v[term] - 1;
+		}
+		misses.increment();
+		int vocabulary = terms.getId(VocabularyUtils.getVocabularyUrl(terms.getTerm(term)));
+		store(term, vocabulary);
+		return vocabulary;
+	}
+
+	private void store(int term, int vocabulary) {
+		int[] v = vocabularies;
+		if (term >= v.length) {
+			synchronized (this) {
+				v = vocabularies;
+				if (term >= v.length) {
+					v = Arrays.copyOf(v, Math.max(v.length * 2, term + 1));
+					vocabularies = v;
+				}
+			}
+		}
+		// an entry written to a replaced array is lost, so the term is
+		// resolved again later
+		v[term] = vocabulary + 1;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@Override
+	public String toString() {
+		long h = getHits();
+		long m = getMisses();
+		return h + " hits, " + m + " misses (" + (h + m == 0 ? 0 : h * 100 / (h + m)) + "% hit rate)";
+	}
+}